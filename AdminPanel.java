@@ -1,16 +1,20 @@
 import java.awt.*;
+import java.io.File;
+import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 
 public class AdminPanel extends JPanel implements ParkingObserver {
     private JLabel lblRevenue;
     private JLabel lblOccupancy;
     private JComboBox<String> schemeSelector;
     private JTable vehicleTable;
-    private DefaultTableModel tableModel;
+    private KeyedRowTableModel tableModel;
     private ParkingLot lot;
+    //same text as Date.toString(), but one formatter reused for every row
+    private final SimpleDateFormat entryFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
 
     public AdminPanel(ParkingLot lot) {
         this.lot = lot;
@@ -35,11 +39,11 @@ public class AdminPanel extends JPanel implements ParkingObserver {
         add(statsPanel, BorderLayout.NORTH);
 
         String[] columns = {"Spot ID", "License Plate", "Type", "Entry Time"};
-        tableModel = new DefaultTableModel(columns, 0);
+        tableModel = new KeyedRowTableModel(columns);
         vehicleTable = new JTable(tableModel);
         add(new JScrollPane(vehicleTable), BorderLayout.CENTER);
 
-        JPanel controlsPanel = new JPanel(new GridLayout(3, 1, 5, 5));
+        JPanel controlsPanel = new JPanel(new GridLayout(4, 1, 5, 5));
         controlsPanel.setBorder(BorderFactory.createTitledBorder("System Configuration & Database"));
 
         //1. Fine Scheme Selector
@@ -106,37 +110,101 @@ public class AdminPanel extends JPanel implements ParkingObserver {
         reservedPanel.add(btnRegisterReserved);
         controlsPanel.add(reservedPanel);
 
+        //4. Bulk Import Permits from File (db)
+        JPanel importPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        importPanel.add(new JLabel("Bulk Import Permits (CSV/TXT):"));
+        JComboBox<String> importType = new JComboBox<>(new String[]{"Handicapped", "VIP Reserved"});
+        JButton btnImport = new JButton("Import File...");
+        JLabel lblImportStatus = new JLabel(" ");
+
+        btnImport.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+            File file = chooser.getSelectedFile();
+            boolean handicapped = importType.getSelectedIndex() == 0;
+            btnImport.setEnabled(false);
+            startPermitImport(file, handicapped, lblImportStatus, btnImport);
+        });
+
+        importPanel.add(importType);
+        importPanel.add(btnImport);
+        importPanel.add(lblImportStatus);
+        controlsPanel.add(importPanel);
+
         add(controlsPanel, BorderLayout.SOUTH);
 
+        //initial table load (afterwards rows change one spot at a time)
+        for (ParkingSpot s : lot.getSpots()) {
+            applySpot(s);
+        }
         onParkingDataChanged();
     }
 
+    //runs the import off the EDT and reports progress in the status label
+    private void startPermitImport(File file, boolean handicapped, JLabel status, JButton button) {
+        SwingWorker<Integer, Integer> worker = new SwingWorker<Integer, Integer>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                if (handicapped) {
+                    return DatabaseHelper.importHandicappedPlates(file, this::publish);
+                }
+                return DatabaseHelper.importReservedPlates(file, this::publish);
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                status.setText("Imported " + chunks.get(chunks.size() - 1) + " plates...");
+            }
+
+            @Override
+            protected void done() {
+                button.setEnabled(true);
+                try {
+                    int count = get();
+                    status.setText("Done: " + count + " plates.");
+                    JOptionPane.showMessageDialog(AdminPanel.this, count + " plates imported from " + file.getName() + ".");
+                } catch (Exception ex) {
+                    status.setText("Import failed.");
+                    JOptionPane.showMessageDialog(AdminPanel.this, "Error: Import failed, no plates were saved.\n" + ex.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
     @Override
     public void onParkingDataChanged() {
         if (lot == null) return;
 
-        //revenue display
+        //revenue & occupancy come from running counters, no history/spot scan
         lblRevenue.setText(String.format("Total Revenue: RM %.2f", lot.getTotalRevenue()));
+        lblOccupancy.setText("Occupancy: " + lot.getOccupiedCount() + " / " + lot.getSpots().size());
+    }
 
-        //occupancy & table data
-        List<ParkingSpot> spots = lot.getSpots();
-        if (spots != null) {
-            //calculate occupancy
-            long occupiedCount = spots.stream().filter(ParkingSpot::isOccupied).count();
-            lblOccupancy.setText("Occupancy: " + occupiedCount + " / " + spots.size());
-
-            tableModel.setRowCount(0); 
-            for (ParkingSpot s : spots) {
-                if (s.isOccupied() && s.getCurrentVehicle() != null) {
-                    Vehicle v = s.getCurrentVehicle();
-                    tableModel.addRow(new Object[]{
-                        s.getSpotID(),
-                        v.getLicensePlate(),
-                        v.getType(),
-                        new Date(v.getEntryTime()).toString()
-                    });
-                }
+    //one EDT hop per batch: touched rows first, then the summary labels
+    @Override
+    public void onParkingEvents(List<ParkingEvent> events) {
+        SwingUtilities.invokeLater(() -> {
+            for (ParkingEvent e : events) {
+                if (e.getSpot() != null) applySpot(e.getSpot());
             }
+            onParkingDataChanged();
+        });
+    }
+
+    //add, refresh or drop the one row for this spot
+    private void applySpot(ParkingSpot s) {
+        Vehicle v = s.getCurrentVehicle();
+        if (s.isOccupied() && v != null) {
+            tableModel.put(s.getSpotID(), new Object[]{
+                s.getSpotID(),
+                v.getLicensePlate(),
+                v.getType(),
+                entryFormat.format(new Date(v.getEntryTime()))
+            });
+        } else {
+            tableModel.remove(s.getSpotID());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+//Holds the compiled Tariff for the current fine scheme and lot. Readers take the current
+//tariff with one volatile read; a scheme change (or a new lot layout) compiles a fresh one
+//and swaps it in, so a bill is always priced by a single consistent tariff.
+public class BillingEngine {
+    private static volatile BillingEngine instance;
+
+    private final AtomicReference<Tariff> current = new AtomicReference<>();
+
+    private BillingEngine() {
+    }
+
+    public static BillingEngine getInstance() {
+        if (instance == null) {
+            synchronized (BillingEngine.class) {
+                if (instance == null) {
+                    instance = new BillingEngine();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public Tariff getTariff() {
+        Tariff tariff = current.get();
+        if (tariff == null || tariff.getScheme() != FineManager.getCurrentScheme()
+                || !tariff.isCompiledFor(ParkingLot.getInstance().getSpotTable())) {
+            tariff = recompile();
+        }
+        return tariff;
+    }
+
+    //compiles the active scheme and rate table and publishes it
+    public synchronized Tariff recompile() {
+        Tariff tariff = Tariff.compile(FineManager.getCurrentScheme(), ParkingLot.getInstance().getSpotTable());
+        current.set(tariff);
+        return tariff;
+    }
+
+    //bills every parked vehicle as if it left at exitTime; arrays must hold one entry per spot.
+    //Returns the number of stays written to rowsOut/feeOut/fineOut (cents).
+    public int quoteOccupied(long exitTime, long millisPerHour, int[] rowsOut, long[] feeOut, long[] fineOut) {
+        Tariff tariff = getTariff();
+        SpotTable table = ParkingLot.getInstance().getSpotTable();
+        int count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            String plate;
+            long entryTime;
+            synchronized (table.lockFor(row)) {
+                plate = table.getPlate(row);
+                entryTime = table.getEntryTime(row);
+            }
+            if (plate == null) continue;
+
+            long hours = Tariff.billedHours(entryTime, exitTime, millisPerHour);
+            rowsOut[count] = row;
+            feeOut[count] = tariff.parkingFeeCents(row, hours, PermitCache.hasHandicappedPermit(plate));
+            fineOut[count] = tariff.fineCents(row, hours, PermitCache.hasReservedPermit(plate));
+            count++;
+        }
+        return count;
+    }
+}
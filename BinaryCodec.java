@@ -0,0 +1,474 @@
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+//Compact, versioned binary files for spots, fines, transactions and checkpoints
+//(replaces Java serialization).
+//
+//File layout: MAGIC, kind, VERSION (varint), record count (varint), records, then a trailer
+//of CRC32 over everything before it and END_MAGIC. Numbers are LEB128 varints (signed ones
+//zigzag-encoded), money is whole cents, times are deltas from the previous record, and
+//repeated strings (spot types, spot IDs, payment methods, plates) are written once and then
+//referenced by their index in a per-file dictionary. Files are written through a 64 KB
+//direct buffer on a FileChannel into a .tmp file and renamed into place.
+public class BinaryCodec {
+    private static final int MAGIC = 0x504B424E;     // "PKBN"
+    private static final int END_MAGIC = 0x454E4442; // "ENDB"
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static final byte KIND_SPOTS = 1;
+    static final byte KIND_FINES = 2;
+    static final byte KIND_HISTORY = 3;
+    static final byte KIND_CHECKPOINT = 4;
+
+    //checkpoint = seq, createdAt, history base, then the spot, history, fine and ticket sections
+    private static final int CHECKPOINT_SECTIONS = 4;
+
+    // ---- spots: type dictionary, ID, rate in cents, vehicle code, plate, entry-time delta ----
+
+    public static void writeSpots(File file, List<ParkingSpot> spots) throws IOException {
+        try (Out out = new Out(file, KIND_SPOTS, spots.size())) {
+            encodeSpots(out, spots);
+            out.commit();
+        }
+    }
+
+    public static List<ParkingSpot> readSpots(File file) throws IOException {
+        try (In in = new In(file, KIND_SPOTS)) {
+            List<ParkingSpot> spots = decodeSpots(in, in.count);
+            in.finish();
+            return spots;
+        }
+    }
+
+    private static void encodeSpots(Out out, List<ParkingSpot> spots) throws IOException {
+        Dictionary types = new Dictionary();
+        long lastEntry = 0;
+        for (ParkingSpot spot : spots) {
+            out.writeString(spot.getSpotID());
+            types.write(out, spot.getType());
+            out.writeSignedVarLong(FineLedger.toCents(spot.getHourlyRate()));
+
+            //unknown vehicle kinds cannot be rebuilt, so they are saved as empty
+            Vehicle v = spot.getCurrentVehicle();
+            byte code = v == null ? 0 : SpotTable.vehicleCode(v.getType());
+            out.writeByte(code);
+            if (code != 0) {
+                out.writeString(v.getLicensePlate());
+                out.writeSignedVarLong(v.getEntryTime() - lastEntry);
+                lastEntry = v.getEntryTime();
+            }
+        }
+    }
+
+    private static List<ParkingSpot> decodeSpots(In in, int count) throws IOException {
+        List<ParkingSpot> spots = new ArrayList<>(count);
+        List<String> types = new ArrayList<>();
+        long lastEntry = 0;
+        for (int i = 0; i < count; i++) {
+            String id = in.readString();
+            String type = Dictionary.read(in, types);
+            ParkingSpot spot = new ParkingSpot(id, type, in.readSignedVarLong() / 100.0);
+            byte code = in.readByte();
+            if (code != 0) {
+                String plate = in.readString();
+                lastEntry += in.readSignedVarLong();
+                Vehicle v = SpotTable.vehicleFor(code, plate, lastEntry);
+                if (v != null) spot.park(v);
+            }
+            spots.add(spot);
+        }
+        return spots;
+    }
+
+    // ---- fines: plate, cents ----
+
+    public static void writeFines(File file, Map<String, Double> fines) throws IOException {
+        try (Out out = new Out(file, KIND_FINES, fines.size())) {
+            encodeFines(out, fines);
+            out.commit();
+        }
+    }
+
+    public static Map<String, Double> readFines(File file) throws IOException {
+        try (In in = new In(file, KIND_FINES)) {
+            Map<String, Double> fines = decodeFines(in, in.count);
+            in.finish();
+            return fines;
+        }
+    }
+
+    private static void encodeFines(Out out, Map<String, Double> fines) throws IOException {
+        for (Map.Entry<String, Double> e : fines.entrySet()) {
+            out.writeString(e.getKey());
+            out.writeSignedVarLong(FineLedger.toCents(e.getValue()));
+        }
+    }
+
+    private static Map<String, Double> decodeFines(In in, int count) throws IOException {
+        Map<String, Double> fines = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+        for (int i = 0; i < count; i++) {
+            String plate = in.readString();
+            fines.put(plate, in.readSignedVarLong() / 100.0);
+        }
+        return fines;
+    }
+
+    // ---- history: exit-time delta, cents, then plate / spot ID / method dictionary refs ----
+
+    public static void writeHistory(File file, List<Transaction> history) throws IOException {
+        try (Out out = new Out(file, KIND_HISTORY, history.size())) {
+            encodeHistory(out, history);
+            out.commit();
+        }
+    }
+
+    public static List<Transaction> readHistory(File file) throws IOException {
+        try (In in = new In(file, KIND_HISTORY)) {
+            List<Transaction> history = decodeHistory(in, in.count);
+            in.finish();
+            return history;
+        }
+    }
+
+    private static void encodeHistory(Out out, List<Transaction> history) throws IOException {
+        Dictionary plates = new Dictionary();
+        Dictionary spotIDs = new Dictionary();
+        Dictionary methods = new Dictionary();
+        long lastExit = 0;
+        for (Transaction t : history) {
+            out.writeSignedVarLong(t.getExitTimeMillis() - lastExit);
+            lastExit = t.getExitTimeMillis();
+            out.writeSignedVarLong(FineLedger.toCents(t.getAmount()));
+            plates.write(out, t.getPlate());
+            spotIDs.write(out, t.getSpotID());
+            methods.write(out, t.getMethod());
+        }
+    }
+
+    private static List<Transaction> decodeHistory(In in, int count) throws IOException {
+        List<Transaction> history = new ArrayList<>(count);
+        List<String> plates = new ArrayList<>();
+        List<String> spotIDs = new ArrayList<>();
+        List<String> methods = new ArrayList<>();
+        long lastExit = 0;
+        for (int i = 0; i < count; i++) {
+            lastExit += in.readSignedVarLong();
+            double amount = in.readSignedVarLong() / 100.0;
+            String plate = Dictionary.read(in, plates);
+            String spotID = Dictionary.read(in, spotIDs);
+            String method = Dictionary.read(in, methods);
+            history.add(new Transaction(plate, spotID, lastExit, amount, method));
+        }
+        return history;
+    }
+
+    // ---- tickets (checkpoint section): ID, plate, spot ID, spot type / vehicle type dictionary refs, entry-time delta ----
+
+    private static void encodeTickets(Out out, List<Ticket> tickets) throws IOException {
+        Dictionary spotTypes = new Dictionary();
+        Dictionary vehicleTypes = new Dictionary();
+        long lastEntry = 0;
+        for (Ticket t : tickets) {
+            out.writeString(t.getTicketID());
+            out.writeString(t.getLicensePlate());
+            out.writeString(t.getSpotID());
+            spotTypes.write(out, t.getSpotType());
+            vehicleTypes.write(out, t.getVehicleType());
+            out.writeSignedVarLong(t.getEntryTime() - lastEntry);
+            lastEntry = t.getEntryTime();
+        }
+    }
+
+    private static List<Ticket> decodeTickets(In in, int count) throws IOException {
+        List<Ticket> tickets = new ArrayList<>(count);
+        List<String> spotTypes = new ArrayList<>();
+        List<String> vehicleTypes = new ArrayList<>();
+        long lastEntry = 0;
+        for (int i = 0; i < count; i++) {
+            String id = in.readString();
+            String plate = in.readString();
+            String spotID = in.readString();
+            String spotType = Dictionary.read(in, spotTypes);
+            String vehicleType = Dictionary.read(in, vehicleTypes);
+            lastEntry += in.readSignedVarLong();
+            tickets.add(new Ticket(id, plate, spotID, spotType, vehicleType, lastEntry));
+        }
+        return tickets;
+    }
+
+    // ---- checkpoint: header fields, then each section as a count and its records ----
+
+    //writes to file.tmp, forces it and renames it over file (see Out.commit)
+    public static void writeCheckpoint(File file, CheckpointManager.Snapshot snapshot) throws IOException {
+        try (Out out = new Out(file, KIND_CHECKPOINT, CHECKPOINT_SECTIONS)) {
+            out.writeVarLong(snapshot.seq);
+            out.writeVarLong(snapshot.createdAt);
+            out.writeVarLong(snapshot.historyBase);
+            out.writeVarLong(snapshot.spots.size());
+            encodeSpots(out, snapshot.spots);
+            out.writeVarLong(snapshot.history.size());
+            encodeHistory(out, snapshot.history);
+            out.writeVarLong(snapshot.fines.size());
+            encodeFines(out, snapshot.fines);
+            out.writeVarLong(snapshot.tickets.size());
+            encodeTickets(out, snapshot.tickets);
+            out.commit();
+        }
+    }
+
+    public static CheckpointManager.Snapshot readCheckpoint(File file) throws IOException {
+        try (In in = new In(file, KIND_CHECKPOINT)) {
+            if (in.count != CHECKPOINT_SECTIONS) throw new IOException(file.getName() + " has " + in.count + " sections");
+            long seq = in.readVarLong();
+            long createdAt = in.readVarLong();
+            int historyBase = (int) in.readVarLong();
+            List<ParkingSpot> spots = decodeSpots(in, in.readCount());
+            List<Transaction> history = decodeHistory(in, in.readCount());
+            Map<String, Double> fines = decodeFines(in, in.readCount());
+            List<Ticket> tickets = decodeTickets(in, in.readCount());
+            in.finish();
+            CheckpointManager.Snapshot snapshot = new CheckpointManager.Snapshot(spots, history, historyBase, fines, tickets);
+            snapshot.seq = seq;
+            snapshot.createdAt = createdAt;
+            return snapshot;
+        }
+    }
+
+    //string -> index, assigned in order of first appearance; new strings are written inline
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        void write(Out out, String value) throws IOException {
+            Integer code = codes.get(value);
+            if (code != null) {
+                out.writeVarLong(code + 1);
+                return;
+            }
+            codes.put(value, codes.size());
+            out.writeVarLong(0);
+            out.writeString(value);
+        }
+
+        static String read(In in, List<String> values) throws IOException {
+            long ref = in.readVarLong();
+            if (ref == 0) {
+                String value = in.readString();
+                values.add(value);
+                return value;
+            }
+            if (ref > values.size()) throw new IOException("bad dictionary reference " + ref);
+            return values.get((int) ref - 1);
+        }
+    }
+
+    //buffered writer over a FileChannel; the CRC covers every byte before the trailer
+    private static final class Out implements AutoCloseable {
+        private final File target;
+        private final File tmp;
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private boolean committed;
+
+        Out(File target, byte kind, int count) throws IOException {
+            this.target = target;
+            this.tmp = new File(target.getPath() + ".tmp");
+            this.channel = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buf.putInt(MAGIC);
+            buf.put(kind);
+            writeVarLong(VERSION);
+            writeVarLong(count);
+        }
+
+        void writeByte(byte b) throws IOException {
+            ensure(1);
+            buf.put(b);
+        }
+
+        void writeVarLong(long v) throws IOException {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        void writeSignedVarLong(long v) throws IOException {
+            writeVarLong((v << 1) ^ (v >> 63));
+        }
+
+        //length + 1 (0 means null), then UTF-8 bytes
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            int off = 0;
+            while (off < bytes.length) {
+                ensure(1);
+                int n = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, n);
+                off += n;
+            }
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() < n) drain();
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while (buf.hasRemaining()) channel.write(buf);
+            buf.clear();
+        }
+
+        //trailer, force to disk, rename over the target; without this close() discards the file
+        void commit() throws IOException {
+            drain();
+            buf.putInt((int) crc.getValue());
+            buf.putInt(END_MAGIC);
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+            channel.force(false);
+            channel.close();
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!committed) tmp.delete();
+        }
+    }
+
+    //buffered reader over a FileChannel; checks header, CRC and trailer
+    private static final class In implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private final long bodyEnd;
+        private long position;
+        final int count;
+
+        In(File file, byte kind) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                bodyEnd = channel.size() - TRAILER_SIZE;
+                if (bodyEnd < 5) throw new IOException(file.getName() + " is too short");
+                buf.limit(0);
+                if (readInt() != MAGIC) throw new IOException(file.getName() + " is not a binary data file");
+                if (readByte() != kind) throw new IOException(file.getName() + " holds a different kind of data");
+                long version = readVarLong();
+                if (version > VERSION) throw new IOException(file.getName() + " has unsupported version " + version);
+                count = readCount();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        byte readByte() throws IOException {
+            if (!buf.hasRemaining()) fill();
+            return buf.get();
+        }
+
+        private int readInt() throws IOException {
+            int v = 0;
+            for (int i = 0; i < 4; i++) {
+                v = (v << 8) | (readByte() & 0xFF);
+            }
+            return v;
+        }
+
+        long readVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("malformed varint");
+        }
+
+        long readSignedVarLong() throws IOException {
+            long v = readVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        //a section's record count; bounded by the body so a damaged count fails fast
+        int readCount() throws IOException {
+            long n = readVarLong();
+            if (n > bodyEnd) throw new IOException("bad record count " + n);
+            return (int) n;
+        }
+
+        String readString() throws IOException {
+            long len = readVarLong();
+            if (len == 0) return null;
+            if (len - 1 > bodyEnd) throw new IOException("bad string length " + (len - 1));
+            byte[] bytes = new byte[(int) (len - 1)];
+            int off = 0;
+            while (off < bytes.length) {
+                if (!buf.hasRemaining()) fill();
+                int n = Math.min(buf.remaining(), bytes.length - off);
+                buf.get(bytes, off, n);
+                off += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        //reads the next chunk of the body (never the trailer) and adds it to the CRC
+        private void fill() throws IOException {
+            if (position >= bodyEnd) throw new EOFException("unexpected end of data");
+            buf.clear();
+            buf.limit((int) Math.min(BUFFER_SIZE, bodyEnd - position));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, position + buf.position()) < 0) throw new EOFException("unexpected end of data");
+            }
+            buf.flip();
+            crc.update(buf.duplicate());
+            position += buf.limit();
+        }
+
+        //all records read: the body must be used up and the trailer must match
+        void finish() throws IOException {
+            if (buf.hasRemaining() || position != bodyEnd) throw new IOException("trailing bytes after last record");
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            while (trailer.hasRemaining()) {
+                if (channel.read(trailer, bodyEnd + trailer.position()) < 0) throw new EOFException("missing trailer");
+            }
+            if (trailer.getInt(4) != END_MAGIC) throw new IOException("missing end marker");
+            if (trailer.getInt(0) != (int) crc.getValue()) throw new IOException("checksum mismatch");
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -1,11 +1,16 @@
 
 
 public class Car extends Vehicle {
+    private static final long serialVersionUID = -5543411495891964778L;
 
     public Car(String licensePlate) {
         super(licensePlate);
     }
 
+    public Car(String licensePlate, long entryTime) {
+        super(licensePlate, entryTime);
+    }
+
     @Override
     public String getType() {
         return "Car";
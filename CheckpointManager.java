@@ -0,0 +1,247 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+//Background checkpoints of lot, history, fines and open tickets.
+//All four are copied under ParkingLot's snapshot lock, which every park (with its ticket) and
+//every exit (with its fines and transaction) holds shared, so a checkpoint is one consistent cut.
+//History already sealed into the history file is not copied again: a checkpoint carries
+//only the unsealed tail and the position it starts at (historyBase).
+//A checkpoint is taken every intervalMillis, or as soon as changeThreshold parking events
+//have been seen, and only if something changed. Each checkpoint is one file written to
+//a .tmp name, forced to disk and atomically renamed to checkpoint-<seq>.ckpt, so a crash
+//leaves either the old or the new file, never a torn one. The newest few are kept.
+//
+//Files are BinaryCodec checkpoint files (seq, createdAt, history base, then spot, history,
+//fine and ticket sections, with a CRC32 trailer). Recovery checks the newest file's trailer
+//and CRC and falls back to older ones if it is damaged.
+//
+//  -Dparking.checkpoint.dir=checkpoints  -Dparking.checkpoint.intervalMillis=60000
+//  -Dparking.checkpoint.changes=500  -Dparking.checkpoint.keep=3
+public class CheckpointManager implements ParkingObserver {
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".ckpt";
+
+    private static volatile CheckpointManager instance;
+
+    //everything a checkpoint restores
+    public static class Snapshot {
+        final List<ParkingSpot> spots;
+        final List<Transaction> history;
+        final int historyBase; // records already sealed into the history file
+        final Map<String, Double> fines;
+        final List<Ticket> tickets;
+        long seq;
+        long createdAt;
+
+        Snapshot(List<ParkingSpot> spots, List<Transaction> history, int historyBase,
+                 Map<String, Double> fines, List<Ticket> tickets) {
+            this.spots = spots;
+            this.history = history;
+            this.historyBase = historyBase;
+            this.fines = fines;
+            this.tickets = tickets;
+        }
+
+        public List<ParkingSpot> getSpots() { return spots; }
+        public List<Transaction> getHistory() { return history; }
+        public int getHistoryBase() { return historyBase; }
+        public Map<String, Double> getFines() { return fines; }
+        public List<Ticket> getTickets() { return tickets; }
+        public long getSeq() { return seq; }
+        public long getCreatedAt() { return createdAt; }
+    }
+
+    private final File dir;
+    private final long intervalMillis;
+    private final long changeThreshold;
+    private final int keep;
+
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final AtomicLong nextSeq = new AtomicLong(1);
+    private ScheduledExecutorService scheduler;
+
+    CheckpointManager(File dir, long intervalMillis, long changeThreshold, int keep) {
+        this.dir = dir;
+        this.intervalMillis = intervalMillis;
+        this.changeThreshold = changeThreshold;
+        this.keep = Math.max(1, keep);
+    }
+
+    public static CheckpointManager getInstance() {
+        if (instance == null) {
+            synchronized (CheckpointManager.class) {
+                if (instance == null) {
+                    instance = new CheckpointManager(
+                        new File(System.getProperty("parking.checkpoint.dir", "checkpoints")),
+                        Long.getLong("parking.checkpoint.intervalMillis", 60_000L),
+                        Long.getLong("parking.checkpoint.changes", 500L),
+                        Integer.getInteger("parking.checkpoint.keep", 3));
+                }
+            }
+        }
+        return instance;
+    }
+
+    //starts the periodic checkpoints and change counting
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkpointIfDirty, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        ParkingLot.getInstance().addObserver(this);
+        System.out.println("System: Checkpoints every " + intervalMillis + " ms or " + changeThreshold + " changes.");
+    }
+
+    //stops the scheduler and writes a final checkpoint if anything changed since the last one
+    public void shutdown() {
+        ScheduledExecutorService s;
+        synchronized (this) {
+            s = scheduler;
+            scheduler = null;
+        }
+        try {
+            //let queued events reach the change counter first
+            ParkingEventDispatcher.getInstance().awaitIdle(2_000);
+            if (s != null) {
+                s.shutdown();
+                s.awaitTermination(30, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpointIfDirty();
+    }
+
+    @Override
+    public void onParkingDataChanged() {
+    }
+
+    //counts changes on the dispatcher thread; crossing the threshold schedules a checkpoint now
+    @Override
+    public void onParkingEvents(List<ParkingEvent> events) {
+        if (changes.addAndGet(events.size()) >= changeThreshold && pending.compareAndSet(false, true)) {
+            ScheduledExecutorService s = scheduler;
+            if (s == null) {
+                pending.set(false);
+                return;
+            }
+            try {
+                s.execute(this::checkpointIfDirty);
+            } catch (RuntimeException e) {
+                pending.set(false);
+            }
+        }
+    }
+
+    public synchronized void checkpointIfDirty() {
+        pending.set(false);
+        long seen = changes.get();
+        if (seen == 0) return;
+        if (checkpoint()) changes.addAndGet(-seen);
+    }
+
+    //writes one checkpoint of the current state; false if it could not be written
+    public synchronized boolean checkpoint() {
+        long start = System.nanoTime();
+        ParkingLot lot = ParkingLot.getInstance();
+        TransactionStore history = lot.getHistory();
+        Snapshot snapshot;
+        //one consistent cut: gates wait only while the state is copied, not while it is written
+        Lock cut = lot.snapshotLock();
+        cut.lock();
+        long locked = System.nanoTime();
+        List<ParkingSpot> spots;
+        Map<String, Double> fines;
+        List<Ticket> tickets;
+        int historyBase;
+        int historyEnd;
+        try {
+            spots = lot.copySpots();
+            fines = FineManager.getAllOutstandingFines();
+            tickets = new ArrayList<>(TicketRegistry.getInstance().getAll());
+            //history is append-only: its position is enough, the rows are read after the cut
+            synchronized (history) {
+                historyBase = history.getSealedCount();
+                historyEnd = history.size();
+            }
+        } finally {
+            cut.unlock();
+        }
+        long copied = System.nanoTime();
+        snapshot = new Snapshot(spots, history.getRange(historyBase, historyEnd), historyBase, fines, tickets);
+
+        long seq = nextSeq.getAndIncrement();
+        snapshot.seq = seq;
+        snapshot.createdAt = System.currentTimeMillis();
+        File target = new File(dir, PREFIX + String.format("%012d", seq) + SUFFIX);
+        try {
+            if (!dir.exists() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+            //written to <name>.tmp, forced and renamed into place
+            BinaryCodec.writeCheckpoint(target, snapshot);
+            prune();
+            System.out.println("System: Checkpoint " + seq + " written (" + target.length() / 1024 + " KB, "
+                + (System.nanoTime() - start) / 1_000_000 + " ms, gates paused " + (copied - locked) / 1_000 + " us).");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing checkpoint: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void prune() {
+        File[] files = listCheckpoints();
+        for (int i = keep; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+    //newest first
+    private File[] listCheckpoints() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return new File[0];
+        Arrays.sort(files, Comparator.comparing(File::getName).reversed());
+        return files;
+    }
+
+    //newest checkpoint that passes its checks, or null; leftover .tmp files are removed
+    public Snapshot recoverLatest() {
+        File[] tmps = dir.listFiles((d, name) -> name.endsWith(SUFFIX + ".tmp"));
+        if (tmps != null) {
+            for (File t : tmps) t.delete();
+        }
+
+        for (File file : listCheckpoints()) {
+            Snapshot snapshot = read(file);
+            if (snapshot != null) {
+                nextSeq.set(snapshot.seq + 1);
+                System.out.println("System: Recovered checkpoint " + snapshot.seq + " from " + file.getName() + ".");
+                return snapshot;
+            }
+            System.err.println("System: Skipping damaged checkpoint " + file.getName() + ".");
+        }
+        return null;
+    }
+
+    private static Snapshot read(File file) {
+        try {
+            return BinaryCodec.readCheckpoint(file);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -4,73 +4,199 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+//Spots, fines and history are kept in compact binary files (see BinaryCodec).
+//The old serialized .dat files are still read when no binary file exists yet;
+//migrateLegacyFiles() converts them once and keeps the originals as .dat.bak.
+//Live state is saved by CheckpointManager; these files are only read at startup when there
+//is no checkpoint, and only written by the migration (and the persistence benchmarks).
 public class DataManager {
-    private static final String PARKING_FILE = "parking_system_data.dat";
-    private static final String FINES_FILE = "fines.dat";
-    private static final String REVENUE_FILE = "revenue.dat";
+    private static final String PARKING_FILE = "parking_system_data.bin";
+    private static final String FINES_FILE = "fines.bin";
+    private static final String REVENUE_FILE = "revenue.bin";
 
-    public static void saveState(List<ParkingSpot> spots) {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(PARKING_FILE))) {
-            out.writeObject(spots);
+    private static final String LEGACY_PARKING_FILE = "parking_system_data.dat";
+    private static final String LEGACY_FINES_FILE = "fines.dat";
+    private static final String LEGACY_REVENUE_FILE = "revenue.dat";
+
+    private static final Metrics.Timer SAVE_STATE_TIME = Metrics.timer("data.saveState");
+    private static final Metrics.Timer LOAD_STATE_TIME = Metrics.timer("data.loadState");
+    private static final Metrics.Timer SAVE_FINES_TIME = Metrics.timer("data.saveFines");
+    private static final Metrics.Timer LOAD_FINES_TIME = Metrics.timer("data.loadFines");
+    private static final Metrics.Timer SAVE_HISTORY_TIME = Metrics.timer("data.saveHistory");
+    private static final Metrics.Timer LOAD_HISTORY_TIME = Metrics.timer("data.loadHistory");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("data.bytesWritten");
+    private static final Metrics.Counter BYTES_READ = Metrics.counter("data.bytesRead");
+    private static final Metrics.Counter ERRORS = Metrics.counter("data.errors");
+
+    static void saveState(List<ParkingSpot> spots) {
+        long start = System.nanoTime();
+        File file = new File(PARKING_FILE);
+        try {
+            BinaryCodec.writeSpots(file, spots);
+            BYTES_WRITTEN.add(file.length());
             System.out.println("System: Parking state successfully saved.");
         } catch (IOException e) {
+            ERRORS.increment();
             System.err.println("Error saving parking state: " + e.getMessage());
+        } finally {
+            SAVE_STATE_TIME.recordSince(start);
         }
     }
 
-    @SuppressWarnings("unchecked")
     public static List<ParkingSpot> loadState() {
+        long start = System.nanoTime();
         File file = new File(PARKING_FILE);
-        
-        if (!file.exists()) {
-            System.out.println("System: No previous parking data found. Starting fresh.");
-            return new ArrayList<>(); 
-        }
+        try {
+            if (!file.exists()) return loadLegacyState();
 
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
-            List<ParkingSpot> loadedSpots = (List<ParkingSpot>) in.readObject();
+            List<ParkingSpot> loadedSpots = BinaryCodec.readSpots(file);
+            BYTES_READ.add(file.length());
             System.out.println("System: Parking state successfully loaded.");
             return loadedSpots;
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
+            ERRORS.increment();
             System.err.println("Error loading parking state: " + e.getMessage());
             return new ArrayList<>();
+        } finally {
+            LOAD_STATE_TIME.recordSince(start);
         }
     }
 
-    public static void saveFines(Map<String, Double> fines) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(FINES_FILE))) {
-            oos.writeObject(fines);
+    static void saveFines(Map<String, Double> fines) {
+        long start = System.nanoTime();
+        File file = new File(FINES_FILE);
+        try {
+            BinaryCodec.writeFines(file, fines);
+            BYTES_WRITTEN.add(file.length());
             System.out.println("System: Fine records saved.");
         } catch (IOException e) {
+            ERRORS.increment();
             System.err.println("Error saving fines: " + e.getMessage());
+        } finally {
+            SAVE_FINES_TIME.recordSince(start);
         }
     }
 
-    @SuppressWarnings("unchecked")
     public static Map<String, Double> loadFines() {
+        long start = System.nanoTime();
         File file = new File(FINES_FILE);
-        if (!file.exists()) return new HashMap<>();
+        try {
+            if (!file.exists()) return loadLegacyFines();
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            return (Map<String, Double>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+            Map<String, Double> fines = BinaryCodec.readFines(file);
+            BYTES_READ.add(file.length());
+            return fines;
+        } catch (IOException e) {
+            ERRORS.increment();
             System.err.println("Error loading fines: " + e.getMessage());
             return new HashMap<>();
+        } finally {
+            LOAD_FINES_TIME.recordSince(start);
         }
     }
 
-    public static void saveHistory(List<Transaction> history) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(REVENUE_FILE))) {
-            oos.writeObject(history);
+    static void saveHistory(List<Transaction> history) {
+        long start = System.nanoTime();
+        File file = new File(REVENUE_FILE);
+        try {
+            BinaryCodec.writeHistory(file, history);
+            BYTES_WRITTEN.add(file.length());
             System.out.println("Data Saved: Transaction history written to file.");
         } catch (IOException e) {
-            e.printStackTrace();
+            ERRORS.increment();
+            System.err.println("Error saving history: " + e.getMessage());
+        } finally {
+            SAVE_HISTORY_TIME.recordSince(start);
         }
     }
 
-    @SuppressWarnings("unchecked")
     public static List<Transaction> loadHistory() {
+        long start = System.nanoTime();
         File file = new File(REVENUE_FILE);
+        try {
+            if (!file.exists()) return loadLegacyHistory();
+
+            List<Transaction> history = BinaryCodec.readHistory(file);
+            BYTES_READ.add(file.length());
+            return history;
+        } catch (IOException e) {
+            ERRORS.increment();
+            System.err.println("Error loading history: " + e.getMessage());
+            return new ArrayList<>();
+        } finally {
+            LOAD_HISTORY_TIME.recordSince(start);
+        }
+    }
+
+    //one-shot conversion of the serialized .dat files; each is renamed to .dat.bak once its
+    //binary file is written, so this does nothing on later starts
+    public static void migrateLegacyFiles() {
+        if (needsMigration(LEGACY_PARKING_FILE, PARKING_FILE)) {
+            List<ParkingSpot> spots = loadLegacyState();
+            saveState(spots);
+            retire(LEGACY_PARKING_FILE, PARKING_FILE);
+        }
+        if (needsMigration(LEGACY_FINES_FILE, FINES_FILE)) {
+            Map<String, Double> fines = loadLegacyFines();
+            saveFines(fines);
+            retire(LEGACY_FINES_FILE, FINES_FILE);
+        }
+        if (needsMigration(LEGACY_REVENUE_FILE, REVENUE_FILE)) {
+            List<Transaction> history = loadLegacyHistory();
+            saveHistory(history);
+            retire(LEGACY_REVENUE_FILE, REVENUE_FILE);
+        }
+    }
+
+    private static boolean needsMigration(String legacy, String binary) {
+        return new File(legacy).exists() && !new File(binary).exists();
+    }
+
+    private static void retire(String legacy, String binary) {
+        if (!new File(binary).exists()) return; // write failed, keep reading the old file
+        File old = new File(legacy);
+        if (old.renameTo(new File(legacy + ".bak"))) {
+            System.out.println("System: Migrated " + legacy + " to " + binary + ".");
+        }
+    }
+
+    // ---- legacy Java-serialized files ----
+
+    @SuppressWarnings("unchecked")
+    private static List<ParkingSpot> loadLegacyState() {
+        File file = new File(LEGACY_PARKING_FILE);
+
+        if (!file.exists()) {
+            System.out.println("System: No previous parking data found. Starting fresh.");
+            return new ArrayList<>();
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            List<ParkingSpot> loadedSpots = (List<ParkingSpot>) in.readObject();
+            System.out.println("System: Parking state successfully loaded.");
+            return loadedSpots;
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Error loading parking state: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Double> loadLegacyFines() {
+        File file = new File(LEGACY_FINES_FILE);
+        if (!file.exists()) return new HashMap<>();
+
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+            return (Map<String, Double>) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            System.err.println("Error loading fines: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Transaction> loadLegacyHistory() {
+        File file = new File(LEGACY_REVENUE_FILE);
         if (!file.exists()) return new ArrayList<>();
 
         try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
@@ -79,4 +205,4 @@ public class DataManager {
             return new ArrayList<>();
         }
     }
-}
\ No newline at end of file
+}
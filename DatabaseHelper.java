@@ -1,81 +1,359 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 public class DatabaseHelper {
+    private static final Metrics.Timer QUERY_TIME = Metrics.timer("db.query");
+    private static final Metrics.Timer UPDATE_TIME = Metrics.timer("db.update");
+    private static final Metrics.Counter ERRORS = Metrics.counter("db.errors");
+
     private static final String URL = "jdbc:sqlite:parking.db";
 
+    private static final String SQL_INSERT_RESERVED = "INSERT INTO ReservedPermits(plate_number) VALUES(?)";
+    private static final String SQL_FIND_RESERVED = "SELECT plate_number FROM ReservedPermits WHERE plate_number = ?";
+    private static final String SQL_INSERT_HANDICAPPED = "INSERT INTO HandicappedPermits(plate_number) VALUES(?)";
+    private static final String SQL_FIND_HANDICAPPED = "SELECT plate_number FROM HandicappedPermits WHERE plate_number = ?";
+
+    //bulk import: re-importing a plate that is already registered is not an error
+    private static final String SQL_UPSERT_RESERVED = "INSERT OR IGNORE INTO ReservedPermits(plate_number) VALUES(?)";
+    private static final String SQL_UPSERT_HANDICAPPED = "INSERT OR IGNORE INTO HandicappedPermits(plate_number) VALUES(?)";
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    //small fixed pool of long-lived connections, each with its own prepared statement cache.
+    //Callers borrow a connection for one call and hand it back, so short-lived threads
+    //(SwingWorkers, gate threads) never pin a connection of their own.
+    private static final int POOL_SIZE = 4;
+    private static final long BORROW_TIMEOUT_SECONDS = 10;
+    private static final BlockingQueue<PooledConnection> idleConnections = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final List<PooledConnection> openConnections = new CopyOnWriteArrayList<>();
+
+    private static class PooledConnection {
+        final Connection conn;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        PooledConnection(Connection conn) {
+            this.conn = conn;
+        }
+
+        //statements stay open and are reused by later borrowers of this connection
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement pstmt = statements.get(sql);
+            if (pstmt == null || pstmt.isClosed()) {
+                pstmt = conn.prepareStatement(sql);
+                statements.put(sql, pstmt);
+            }
+            return pstmt;
+        }
+    }
+
+    //takes an idle connection, opens a new one while the pool is below POOL_SIZE, else waits for one
+    private static PooledConnection borrow() throws SQLException {
+        while (true) {
+            PooledConnection pooled = idleConnections.poll();
+            if (pooled == null) {
+                synchronized (openConnections) {
+                    if (openConnections.size() < POOL_SIZE) {
+                        pooled = open();
+                        openConnections.add(pooled);
+                        return pooled;
+                    }
+                }
+                try {
+                    pooled = idleConnections.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection");
+                }
+                if (pooled == null) throw new SQLException("Timed out waiting for a database connection");
+            }
+            if (!pooled.conn.isClosed()) return pooled;
+            openConnections.remove(pooled);
+        }
+    }
+
+    private static void release(PooledConnection pooled) {
+        if (pooled == null) return;
+        try {
+            if (pooled.conn.isClosed()) {
+                openConnections.remove(pooled);
+                return;
+            }
+        } catch (SQLException e) {
+            openConnections.remove(pooled);
+            return;
+        }
+        idleConnections.offer(pooled);
+    }
+
+    //opens a connection tuned for many short reads/writes
+    private static PooledConnection open() throws SQLException {
+        Connection conn = DriverManager.getConnection(URL);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL;");     // readers don't block the writer
+            stmt.execute("PRAGMA synchronous=NORMAL;");   // safe with WAL, far fewer fsyncs
+            stmt.execute("PRAGMA busy_timeout=5000;");    // wait for other gates instead of failing
+            stmt.execute("PRAGMA temp_store=MEMORY;");
+            stmt.execute("PRAGMA cache_size=-8000;");     // ~8 MB page cache
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return new PooledConnection(conn);
+    }
+
+    //closes every pooled connection (called from the shutdown hook in MainSystem)
+    public static void shutdown() {
+        synchronized (openConnections) {
+            for (PooledConnection pooled : openConnections) {
+                try {
+                    pooled.conn.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing database connection: " + e.getMessage());
+                }
+            }
+            openConnections.clear();
+            idleConnections.clear();
+        }
+        System.out.println("System: Database connections closed.");
+    }
+
     public static void initializeDatabase() {
         String sqlHandicapped = "CREATE TABLE IF NOT EXISTS HandicappedPermits (plate_number VARCHAR(20) PRIMARY KEY);";
         String sqlReserved = "CREATE TABLE IF NOT EXISTS ReservedPermits (plate_number VARCHAR(20) PRIMARY KEY);";
         
-        try (Connection conn = DriverManager.getConnection(URL);
-             Statement stmt = conn.createStatement()) {
-            
-            stmt.execute(sqlHandicapped);
-            stmt.execute(sqlReserved);
-            
+        PooledConnection db = null;
+        try {
+            db = borrow();
+            try (Statement stmt = db.conn.createStatement()) {
+                stmt.execute(sqlHandicapped);
+                stmt.execute(sqlReserved);
+            }
             System.out.println("System: Database initialized successfully.");
         } catch (SQLException e) {
             System.err.println("Database Initialization Error: " + e.getMessage());
+        } finally {
+            release(db);
         }
     }
 
     //register vip
     public static boolean registerReservedPlate(String plate) {
-        String sql = "INSERT INTO ReservedPermits(plate_number) VALUES(?)";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        long start = System.nanoTime();
+        PooledConnection db = null;
+        try {
+            db = borrow();
+            PreparedStatement pstmt = db.prepare(SQL_INSERT_RESERVED);
             pstmt.setString(1, plate.toUpperCase().trim());
             pstmt.executeUpdate();
+            PermitCache.addReserved(plate);
             return true;
         } catch (SQLException e) {
+            ERRORS.increment();
             System.err.println("Error registering Reserved plate: " + e.getMessage());
             return false; 
+        } finally {
+            release(db);
+            UPDATE_TIME.recordSince(start);
         }
     }
 
     //check if the vehicle in vip database
     public static boolean hasReservedPermit(String plate) {
-        String sql = "SELECT plate_number FROM ReservedPermits WHERE plate_number = ?";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        long start = System.nanoTime();
+        PooledConnection db = null;
+        try {
+            db = borrow();
+            PreparedStatement pstmt = db.prepare(SQL_FIND_RESERVED);
             pstmt.setString(1, plate.toUpperCase().trim());
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next(); 
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
         } catch (SQLException e) {
+            ERRORS.increment();
             System.err.println("Error checking Reserved permit: " + e.getMessage());
             return false;
+        } finally {
+            release(db);
+            QUERY_TIME.recordSince(start);
         }
     }
 
     //register handicapped permit
     public static boolean registerHandicappedPlate(String plate) {
-        String sql = "INSERT INTO HandicappedPermits(plate_number) VALUES(?)";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        long start = System.nanoTime();
+        PooledConnection db = null;
+        try {
+            db = borrow();
+            PreparedStatement pstmt = db.prepare(SQL_INSERT_HANDICAPPED);
             pstmt.setString(1, plate.toUpperCase().trim());
             pstmt.executeUpdate();
+            PermitCache.addHandicapped(plate);
             return true;
         } catch (SQLException e) {
+            ERRORS.increment();
             System.err.println("Error registering Handicapped plate: " + e.getMessage());
             return false;
+        } finally {
+            release(db);
+            UPDATE_TIME.recordSince(start);
         }
     }
 
     //check if the vehicle in handicapped database
     public static boolean hasHandicappedPermit(String plate) {
-        String sql = "SELECT plate_number FROM HandicappedPermits WHERE plate_number = ?";
-        try (Connection conn = DriverManager.getConnection(URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+        long start = System.nanoTime();
+        PooledConnection db = null;
+        try {
+            db = borrow();
+            PreparedStatement pstmt = db.prepare(SQL_FIND_HANDICAPPED);
             pstmt.setString(1, plate.toUpperCase().trim());
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next(); 
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
         } catch (SQLException e) {
+            ERRORS.increment();
             System.err.println("Error checking Handicapped permit: " + e.getMessage());
             return false;
+        } finally {
+            release(db);
+            QUERY_TIME.recordSince(start);
         }
     }
+
+    //full table reads for PermitCache
+    public static Set<String> loadHandicappedPlates() {
+        return loadPlates("SELECT plate_number FROM HandicappedPermits");
+    }
+
+    public static Set<String> loadReservedPlates() {
+        return loadPlates("SELECT plate_number FROM ReservedPermits");
+    }
+
+    private static Set<String> loadPlates(String sql) {
+        long start = System.nanoTime();
+        Set<String> plates = new HashSet<>();
+        PooledConnection db = null;
+        try {
+            db = borrow();
+            try (Statement stmt = db.conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    plates.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            ERRORS.increment();
+            System.err.println("Error loading permits: " + e.getMessage());
+        } finally {
+            release(db);
+            QUERY_TIME.recordSince(start);
+        }
+        return plates;
+    }
+
+    //bulk import from a plain-text or CSV file (plate in the first column, one per line)
+    public static int importHandicappedPlates(File file, IntConsumer progress) throws IOException, SQLException {
+        int count = importPlates(file, SQL_UPSERT_HANDICAPPED, progress);
+        PermitCache.load();
+        return count;
+    }
+
+    public static int importReservedPlates(File file, IntConsumer progress) throws IOException, SQLException {
+        int count = importPlates(file, SQL_UPSERT_RESERVED, progress);
+        PermitCache.load();
+        return count;
+    }
+
+    //streams the file into batched inserts inside a single transaction (all or nothing)
+    //returns (and reports to progress, once per batch) the number of plates actually inserted;
+    //plates that were already registered are skipped by INSERT OR IGNORE and not counted
+    private static int importPlates(File file, String sql, IntConsumer progress) throws IOException, SQLException {
+        long start = System.nanoTime();
+        PooledConnection db = borrow();
+        int count = 0;
+        try {
+            Connection conn = db.conn;
+            PreparedStatement pstmt = db.prepare(sql);
+            int pending = 0;
+
+            conn.setAutoCommit(false);
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String plate = parsePlate(line);
+                    if (plate == null) continue;
+
+                    pstmt.setString(1, plate);
+                    pstmt.addBatch();
+
+                    if (++pending == IMPORT_BATCH_SIZE) {
+                        count += insertedRows(pstmt.executeBatch());
+                        pending = 0;
+                        if (progress != null) progress.accept(count);
+                    }
+                }
+                if (pending > 0) count += insertedRows(pstmt.executeBatch());
+                conn.commit();
+                if (progress != null) progress.accept(count);
+            } catch (IOException | SQLException e) {
+                ERRORS.increment();
+                //a failing rollback must not hide why the import failed
+                try {
+                    pstmt.clearBatch();
+                    conn.rollback();
+                } catch (SQLException rollbackError) {
+                    e.addSuppressed(rollbackError);
+                }
+                throw e;
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    //don't hand a connection stuck in a transaction back to the pool
+                    System.err.println("Error restoring auto-commit, dropping connection: " + e.getMessage());
+                    try {
+                        conn.close();
+                    } catch (SQLException closeError) {
+                        System.err.println("Error closing database connection: " + closeError.getMessage());
+                    }
+                }
+            }
+        } finally {
+            release(db);
+            UPDATE_TIME.recordSince(start);
+        }
+
+        System.out.println("System: Imported " + count + " plates from " + file.getName());
+        return count;
+    }
+
+    //sums a batch's update counts (0 for a plate INSERT OR IGNORE skipped)
+    private static int insertedRows(int[] updateCounts) {
+        int inserted = 0;
+        for (int n : updateCounts) {
+            if (n > 0) inserted += n;
+        }
+        return inserted;
+    }
+
+    //first CSV column, normalized; skips blank lines, comments and a "plate" header
+    private static String parsePlate(String line) {
+        int comma = line.indexOf(',');
+        String plate = (comma >= 0 ? line.substring(0, comma) : line).replace("\"", "").toUpperCase().trim();
+        if (plate.isEmpty() || plate.startsWith("#") || plate.equals("PLATE") || plate.equals("PLATE_NUMBER")) return null;
+        return plate;
+    }
 }
\ No newline at end of file
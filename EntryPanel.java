@@ -119,8 +119,16 @@ public class EntryPanel extends JPanel {
                 return;
             }
 
+            if (!ParkingLot.isValidPlate(plate)) {
+                JOptionPane.showMessageDialog(this,
+                    "Error: License plate is too long (max " + ParkingLot.MAX_PLATE_LENGTH + " characters).",
+                    "Entry Denied",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
             //Verify that the vehicle is not already currently parked
-            if (ParkingLot.getInstance().findSpotByPlate(plate) != null) {
+            if (ParkingEngine.getInstance().isParked(plate)) {
                 JOptionPane.showMessageDialog(this, 
                     "Error: Vehicle with plate " + plate + " is already inside the parking lot!", 
                     "Duplicate Entry", 
@@ -128,11 +136,8 @@ public class EntryPanel extends JPanel {
                 return;
             }
 
-            Vehicle v = createVehicle(plate, type);
-            if (v == null) return;
-
             //Attempt to park the vehicle in the backend
-            Ticket ticket = ParkingLot.getInstance().parkVehicleAtSpot(spotID, v);
+            Ticket ticket = ParkingEngine.getInstance().enter(plate, type, spotID);
 
             if (ticket != null) {
                 JOptionPane.showMessageDialog(this, 
@@ -156,7 +161,7 @@ public class EntryPanel extends JPanel {
         
         if (selectedType == null || selectedType.equals("Select Vehicle Type:-")) return;
 
-        Vehicle dummy = createVehicle("CHECK", selectedType);
+        Vehicle dummy = ParkingEngine.createVehicle("CHECK", selectedType);
         if (dummy == null) return;
 
         List<ParkingSpot> allSpots = ParkingLot.getInstance().getSpots();
@@ -172,13 +177,4 @@ public class EntryPanel extends JPanel {
             }
         }
     }
-
-    //Factory method to create specific Vehicle objects based on selection
-    private Vehicle createVehicle(String plate, String type) {
-        if (type == null) return null;
-        if (type.equals("Car") || type.equals("VIP Car") || type.equals("Handicapped Vehicle")) return new Car(plate);
-        if (type.equals("Motorcycle")) return new Motorcycle(plate);
-        if (type.equals("SUV/Truck")) return new SUV(plate);
-        return null;
-    }
 }
\ No newline at end of file
@@ -1,6 +1,4 @@
 import java.awt.*;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import javax.swing.*;
 
 public class ExitPanel extends JPanel {
@@ -14,21 +12,19 @@ public class ExitPanel extends JPanel {
     private JButton buttonOpenGate;
     
     //LOGIC VARIABLES
-    private ParkingSpot foundSpot;
+    private ExitQuote currentQuote;
+    private Settlement lastSettlement;
     private double totalAmountDue; 
     private double hoursParked;
     private double parkingFee;
     private double newFines;
     private double oldDebts;
     private double rate;
-    private long exitTimeMillis;
     
     //Payment State
     private double amountToPay;    
     private boolean isFineDeferred;
     private String savedPlate;       
-    private long savedEntryTime;     
-    private String savedMethod;
     private String savedSpotID;
 
     public ExitPanel() {
@@ -39,7 +35,7 @@ public class ExitPanel extends JPanel {
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
         searchPanel.setBackground(new Color(255, 255, 204));
         
-        searchPanel.add(new JLabel("Enter License Plate:"));
+        searchPanel.add(new JLabel("Enter License Plate / Ticket ID:"));
         textSearchPlate = new JTextField(12);
         searchPanel.add(textSearchPlate);
         
@@ -85,51 +81,29 @@ public class ExitPanel extends JPanel {
             return;
         }
 
-        //Find Vehicle
-        foundSpot = ParkingLot.getInstance().findSpotByPlate(plate);
+        //a ticket ID works too
+        Ticket ticket = TicketRegistry.getInstance().findById(plate);
+        if (ticket != null) plate = ticket.getLicensePlate();
 
-        if (foundSpot == null) {
+        //Find Vehicle & bill it (ParkingEngine does permits, fees and fines)
+        currentQuote = ParkingEngine.getInstance().quote(plate);
+
+        if (currentQuote == null) {
             JOptionPane.showMessageDialog(this, "Vehicle not found! Is it currently parked?");
             textReceiptArea.setText("Vehicle not found.");
             disableAllButtons();
             return;
         }
 
-        Vehicle v = foundSpot.getCurrentVehicle();
-
         //Save State (Critical for receipt generation later)
-        savedPlate = v.getLicensePlate();
-        savedEntryTime = v.getEntryTime();
-        savedSpotID = foundSpot.getSpotID();
-
-        //Calculate Duration
-        exitTimeMillis = System.currentTimeMillis();
-        double durationMs = exitTimeMillis - savedEntryTime;
-        
-        //for demo: 1 Minute = 1 Hour
-        //hoursParked = durationMs / (1000.0 * 60 * 60); --> original real-time calculation
-        double rawHours = durationMs / (1000.0 * 60); 
-
-        //ceiling rounding
-        hoursParked = Math.ceil(rawHours);
-        
-        if (hoursParked < 1.0) hoursParked = 1.0; // Minimum charge 1 hour
-
-        //Check Permits
-        boolean hasCard = DatabaseHelper.hasHandicappedPermit(savedPlate);
-        boolean isReservedSpot = foundSpot.getType().equalsIgnoreCase("Reserved");
-        boolean hasVIPPermit = DatabaseHelper.hasReservedPermit(savedPlate);
-        boolean isReservedViolation = isReservedSpot && !hasVIPPermit;
-        
-        //Calculate Fees (FineManager)
-        rate = foundSpot.getHourlyRate();
-        
-        //Passing the rounded hoursParked to ensure billing reflects full hours
-        parkingFee = FineManager.calculateParkingFee(hoursParked, rate, foundSpot.getType(), hasCard);
-        newFines = FineManager.calculateFine(hoursParked, isReservedViolation);
-        oldDebts = FineManager.getUnpaidFines(savedPlate);
-        
-        totalAmountDue = parkingFee + newFines + oldDebts;
+        savedPlate = currentQuote.getPlate();
+        savedSpotID = currentQuote.getSpotID();
+        hoursParked = currentQuote.getHoursParked();
+        rate = currentQuote.getRate();
+        parkingFee = currentQuote.getParkingFee();
+        newFines = currentQuote.getNewFines();
+        oldDebts = currentQuote.getOldDebts();
+        totalAmountDue = currentQuote.getTotalDue();
         
         //Initialize Payment State
         amountToPay = totalAmountDue; 
@@ -173,7 +147,7 @@ public class ExitPanel extends JPanel {
 
     //LOGIC: STEP 3 - SHOW PAYMENT GATEWAY
     private void showPaymentPopup() {
-        if (foundSpot == null) return;
+        if (currentQuote == null) return;
 
         JPanel panel = new JPanel(new GridLayout(0, 1));
         panel.add(new JLabel("Amount to Pay: RM " + String.format("%.2f", amountToPay)));
@@ -208,33 +182,19 @@ public class ExitPanel extends JPanel {
 
     //LOGIC: STEP 4 - PROCESS PAYMENT & UPDATE BACKEND
     private void processPaymentSuccess(String method) {
-        Vehicle v = foundSpot.getCurrentVehicle();
-        String plate = v.getLicensePlate();
-
-        Transaction record = new Transaction(
-            plate, 
-            foundSpot.getSpotID(), 
-            amountToPay, 
-            method
-        );
+        Settlement settlement = ParkingEngine.getInstance().settle(currentQuote, method, isFineDeferred);
+        if (settlement == null) {
+            JOptionPane.showMessageDialog(this, "Vehicle has already exited.", "Error", JOptionPane.ERROR_MESSAGE);
+            disableAllButtons();
+            return;
+        }
+        lastSettlement = settlement;
 
-        //Handle Fines Logic
         if (isFineDeferred) {
-            //User deferred -> Add NEW fines to debt, keep OLD fines
-            if (newFines > 0) {
-                FineManager.addFineToAccount(savedPlate, newFines);
-            }
             JOptionPane.showMessageDialog(this, "Payment Approved.\nFines have been recorded for future.");
         } else {
-            //User paid full -> Clear ALL fines
-            FineManager.clearFines(savedPlate);
             JOptionPane.showMessageDialog(this, "Payment Approved via "+ method +"!\nAll fines cleared.");
         }
-
-        //Backend Processing
-        ParkingLot.getInstance().addRevenue(amountToPay);
-        ParkingLot.getInstance().addTransaction(record);
-        ParkingLot.getInstance().removeVehicle(foundSpot.getSpotID()); // Frees the spot
         
         //Generate Official Receipt
         updateReceiptArea(true, method);
@@ -247,32 +207,9 @@ public class ExitPanel extends JPanel {
 
     //LOGIC: STEP 5 - PRINT RECEIPT POPUP
     private void simulatePrintReceipt() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        
-        double balance = isFineDeferred ? (newFines + oldDebts) : 0.00;
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("============= OFFICIAL RECEIPT =============\n");
-        sb.append("Entry Time:   ").append(sdf.format(new Date(savedEntryTime))).append("\n");
-        sb.append("Exit Time:    ").append(sdf.format(new Date(exitTimeMillis))).append("\n");
-        sb.append("Duration:     ").append(String.format("%.2f", hoursParked)).append(" hours\n");
-        sb.append("--------------------------------------------\n");
-        sb.append("Fee Breakdown:\n");
-        sb.append("  Rate:       RM ").append(String.format("%.2f", rate)).append(" /hr\n");
-        sb.append("  Parking Fee: RM ").append(String.format("%6.2f", parkingFee)).append("\n");
-        
-        if (newFines + oldDebts > 0) {
-            sb.append("  Fines Due:   RM ").append(String.format("%6.2f", newFines + oldDebts)).append("\n");
-        }
-        
-        sb.append("--------------------------------------------\n");
-        sb.append("Total Paid:   RM ").append(String.format("%6.2f", amountToPay)).append("\n");
-        sb.append("Method:       ").append(savedMethod).append("\n");
-        
-        sb.append("Rem. Balance: RM ").append(String.format("%6.2f", balance)).append("\n");
-        sb.append("============================================");
+        if (lastSettlement == null) return;
 
-        JTextArea textArea = new JTextArea(sb.toString());
+        JTextArea textArea = new JTextArea(ReceiptRenderer.official(lastSettlement));
         textArea.setEditable(false);
         textArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         
@@ -287,7 +224,8 @@ public class ExitPanel extends JPanel {
         textSearchPlate.setText("");
         textReceiptArea.setText("Enter plate to calculate fee...");
         disableAllButtons();
-        foundSpot = null;
+        currentQuote = null;
+        lastSettlement = null;
     }
 
     //HELPERS
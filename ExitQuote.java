@@ -0,0 +1,51 @@
+//Bill for a parked vehicle at a given exit time (produced by ParkingEngine.quote)
+public class ExitQuote {
+    private final String plate;
+    private final String spotID;
+    private final String spotType;
+    private final long entryTime;
+    private final long exitTime;
+    private final double hoursParked;
+    private final double rate;
+    private final double parkingFee;
+    private final double newFines;
+    private final double oldDebts;
+
+    public ExitQuote(String plate, String spotID, String spotType, long entryTime, long exitTime,
+                     double hoursParked, double rate, double parkingFee, double newFines, double oldDebts) {
+        this.plate = plate;
+        this.spotID = spotID;
+        this.spotType = spotType;
+        this.entryTime = entryTime;
+        this.exitTime = exitTime;
+        this.hoursParked = hoursParked;
+        this.rate = rate;
+        this.parkingFee = parkingFee;
+        this.newFines = newFines;
+        this.oldDebts = oldDebts;
+    }
+
+    public String getPlate() { return plate; }
+    public String getSpotID() { return spotID; }
+    public String getSpotType() { return spotType; }
+    public long getEntryTime() { return entryTime; }
+    public long getExitTime() { return exitTime; }
+    public double getHoursParked() { return hoursParked; }
+    public double getRate() { return rate; }
+    public double getParkingFee() { return parkingFee; }
+    public double getNewFines() { return newFines; }
+    public double getOldDebts() { return oldDebts; }
+
+    public double getTotalFines() {
+        return newFines + oldDebts;
+    }
+
+    public double getTotalDue() {
+        return parkingFee + newFines + oldDebts;
+    }
+
+    //deferring fines means only the parking fee is paid now
+    public double getAmountToPay(boolean deferFines) {
+        return deferFines ? parkingFee : getTotalDue();
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.HashMap;
+import java.util.Map;
+
+//Outstanding fines per plate, in whole cents.
+//Lock-striped open-addressing table (linear probing, backward-shift delete): plates and
+//amounts sit in parallel String[]/long[] arrays, so accruing or settling a fine boxes nothing
+//and allocates nothing (except when a stripe grows). Each operation locks one stripe only.
+public class FineLedger {
+    private static final int STRIPES = 64; // power of two
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    //called for every plate that owes money (see forEach)
+    public interface Visitor {
+        void visit(String plate, long cents);
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public FineLedger() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    //amounts loaded from a Map<String, Double> file (RM), rounded to the cent
+    public static FineLedger fromMap(Map<String, Double> fines) {
+        FineLedger ledger = new FineLedger();
+        for (Map.Entry<String, Double> entry : fines.entrySet()) {
+            if (entry.getValue() != null) ledger.add(entry.getKey(), toCents(entry.getValue()));
+        }
+        return ledger;
+    }
+
+    public static long toCents(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    //adds to the plate's balance and returns the new balance
+    public long add(String plate, long cents) {
+        int h = hash(plate);
+        return stripeFor(h).add(plate, h, cents);
+    }
+
+    public long get(String plate) {
+        int h = hash(plate);
+        return stripeFor(h).get(plate, h);
+    }
+
+    //removes the plate and returns what it owed (0 if nothing)
+    public long clear(String plate) {
+        int h = hash(plate);
+        return stripeFor(h).clear(plate, h);
+    }
+
+    public int size() {
+        int total = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                total += s.size;
+            }
+        }
+        return total;
+    }
+
+    public long getTotalCents() {
+        long total = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                for (int i = 0; i < s.plates.length; i++) {
+                    if (s.plates[i] != null) total += s.cents[i];
+                }
+            }
+        }
+        return total;
+    }
+
+    //walks the live table one stripe at a time (no copy); each stripe is consistent,
+    //the whole walk is not a single point-in-time snapshot
+    public void forEach(Visitor visitor) {
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                for (int i = 0; i < s.plates.length; i++) {
+                    if (s.plates[i] != null) visitor.visit(s.plates[i], s.cents[i]);
+                }
+            }
+        }
+    }
+
+    //RM amounts, for the existing fines.dat format
+    public Map<String, Double> toMap() {
+        Map<String, Double> map = new HashMap<>();
+        forEach((plate, cents) -> map.put(plate, cents / 100.0));
+        return map;
+    }
+
+    private static int hash(String plate) {
+        int h = plate.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    //stripe from the high bits, slot from the low bits
+    private Stripe stripeFor(int h) {
+        return stripes[(h >>> 26) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        String[] plates = new String[INITIAL_STRIPE_CAPACITY];
+        long[] cents = new long[INITIAL_STRIPE_CAPACITY];
+        int size;
+
+        synchronized long add(String plate, int h, long amount) {
+            int slot = find(plate, h);
+            if (plates[slot] != null) {
+                cents[slot] += amount;
+                return cents[slot];
+            }
+            plates[slot] = plate;
+            cents[slot] = amount;
+            if (++size * 4 > plates.length * 3) grow();
+            return amount;
+        }
+
+        synchronized long get(String plate, int h) {
+            int slot = find(plate, h);
+            return plates[slot] != null ? cents[slot] : 0L;
+        }
+
+        synchronized long clear(String plate, int h) {
+            int slot = find(plate, h);
+            if (plates[slot] == null) return 0L;
+            long owed = cents[slot];
+            delete(slot);
+            return owed;
+        }
+
+        //slot holding plate, or the empty slot where it would go
+        private int find(String plate, int h) {
+            int mask = plates.length - 1;
+            int slot = h & mask;
+            while (plates[slot] != null && !plates[slot].equals(plate)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        //backward-shift delete: pull later entries of the probe run into the hole
+        private void delete(int hole) {
+            int mask = plates.length - 1;
+            int slot = hole;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (plates[slot] == null) break;
+                int home = hash(plates[slot]) & mask;
+                //move the entry back unless its home lies cyclically in (hole, slot]
+                boolean stays = hole <= slot ? (home > hole && home <= slot) : (home > hole || home <= slot);
+                if (!stays) {
+                    plates[hole] = plates[slot];
+                    cents[hole] = cents[slot];
+                    hole = slot;
+                }
+            }
+            plates[hole] = null;
+            cents[hole] = 0L;
+            size--;
+        }
+
+        private void grow() {
+            String[] oldPlates = plates;
+            long[] oldCents = cents;
+            plates = new String[oldPlates.length * 2];
+            cents = new long[oldCents.length * 2];
+            for (int i = 0; i < oldPlates.length; i++) {
+                if (oldPlates[i] != null) {
+                    int slot = find(oldPlates[i], hash(oldPlates[i]));
+                    plates[slot] = oldPlates[i];
+                    cents[slot] = oldCents[i];
+                }
+            }
+        }
+    }
+}
@@ -1,14 +1,15 @@
-import java.util.HashMap;
 import java.util.Map;
 
 public class FineManager {
 
-    private static Map<String, Double> outstandingFines = new HashMap<>();
+    //unpaid fines per plate, in cents
+    private static volatile FineLedger outstandingFines = new FineLedger();
     public enum FineScheme { FIXED, PROGRESSIVE, HOURLY }
-    private static FineScheme currentScheme = FineScheme.FIXED;
+    private static volatile FineScheme currentScheme = FineScheme.FIXED;
 
     public static void setFineScheme(FineScheme scheme) {
         currentScheme = scheme;
+        BillingEngine.getInstance().recompile();
         System.out.println("System: Fine Scheme changed to " + scheme);
     }
 
@@ -16,90 +17,59 @@ public class FineManager {
         return currentScheme;
     }
 
-    //calculate parking fee (ceiling rounding)
+    //calculate parking fee (ceiling rounding), priced by the compiled tariff
     public static double calculateParkingFee(double hours, double hourlyRate, String spotType, boolean hasHandicappedCard) {
-        //free parking for valid permit holders in Handicapped spots
-        if (spotType.equalsIgnoreCase("Handicapped") && hasHandicappedCard) {
-            return 0.0;
-        }
-        
-        int roundedHours = (int) Math.ceil(hours);  
-        if (roundedHours == 0) roundedHours = 1; // Minimum charge is 1 hour
-        return roundedHours * hourlyRate;
+        long cents = BillingEngine.getInstance().getTariff().parkingFeeCents((long) Math.ceil(hours),
+            FineLedger.toCents(hourlyRate), Tariff.SpotClass.of(spotType), hasHandicappedCard);
+        return cents / 100.0;
     }
 
-    //calculate fine
+    //calculate fine (FIXED: flat penalty, PROGRESSIVE: tiered, HOURLY: per hour), see Tariff
     public static double calculateFine(double hours, boolean isReservedViolation) {
-        boolean isOverstay = hours > 24.0;
-        
-        if (!isOverstay && !isReservedViolation) {
-            return 0.0;
-        }
-
-        double fineAmount = 0.0;
-        double overstayHours = (hours > 24) ? (hours - 24) : 0;
-
-        switch (currentScheme) {
-            case FIXED:
-                //flat penalty
-                fineAmount = 50.0;
-                break;
-
-            case PROGRESSIVE:
-                //tiered fines
-                if (hours <= 24) {
-                    fineAmount = 50.0; 
-                } else if (hours <= 48) {
-                    fineAmount = 50.0 + 100.0; 
-                } else if (hours <= 72) {
-                    fineAmount = 50.0 + 100.0 + 150.0; 
-                } else {
-                    fineAmount = 50.0 + 100.0 + 150.0 + 200.0; 
-                }
-                break;
-
-            case HOURLY:
-                if (isReservedViolation) {
-                    fineAmount = Math.ceil(hours) * 20.0;
-                } else {
-                    fineAmount = Math.ceil(overstayHours) * 20.0;
-                }
-                break;
-        }
-        return fineAmount;
+        return BillingEngine.getInstance().getTariff().fineCents((long) Math.ceil(hours), isReservedViolation) / 100.0;
     }
 
     public static double calculateTotalDue(String plate, double hours, double hourlyRate, boolean isReservedViolation, String spotType, boolean hasHandicappedCard) {
         double parkingFee = calculateParkingFee(hours, hourlyRate, spotType, hasHandicappedCard);
         double newFine = calculateFine(hours, isReservedViolation);
-        double oldDebt = outstandingFines.getOrDefault(plate, 0.0);
+        double oldDebt = getUnpaidFines(plate);
 
         return parkingFee + newFine + oldDebt;
     }
 
     public static void clearFines(String plate) {
-        if (outstandingFines.containsKey(plate)) {
-            outstandingFines.remove(plate);
+        if (outstandingFines.clear(plate) != 0) {
             System.out.println("System: Fines cleared for " + plate);
+            ParkingEventDispatcher.getInstance().publish(ParkingEvent.fineChanged(plate));
         }
     }
 
     public static void addFineToAccount(String plate, double amount) {
-        double current = outstandingFines.getOrDefault(plate, 0.0);
-        outstandingFines.put(plate, current + amount);
+        outstandingFines.add(plate, FineLedger.toCents(amount));
         System.out.println("System: Fine of RM " + amount + " recorded for " + plate);
+        ParkingEventDispatcher.getInstance().publish(ParkingEvent.fineChanged(plate));
     }
 
     public static double getUnpaidFines(String plate) {
-        return outstandingFines.getOrDefault(plate, 0.0);
+        return outstandingFines.get(plate) / 100.0;
+    }
+
+    public static long getUnpaidFineCents(String plate) {
+        return outstandingFines.get(plate);
+    }
+
+    //live ledger, for reports that walk it without copying (FineLedger.forEach)
+    public static FineLedger getLedger() {
+        return outstandingFines;
     }
 
+    //copy in RM, for saving to fines.dat
     public static Map<String, Double> getAllOutstandingFines() {
-        return new HashMap<>(outstandingFines);
+        return outstandingFines.toMap();
     }
 
     public static void setOutstandingFines(Map<String, Double> loadedFines) {
-        outstandingFines = loadedFines;
+        outstandingFines = FineLedger.fromMap(loadedFines);
         System.out.println("System: Fines data loaded (" + loadedFines.size() + " records).");
     }
 
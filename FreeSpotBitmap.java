@@ -0,0 +1,91 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Lock-free free-spot pool: one bit per spot index plus a summary bit per 64-spot word,
+//so the lowest free spot is found by scanning ~n/4096 summary words.
+//A spot is claimed by the one thread whose CAS clears its bit.
+public class FreeSpotBitmap {
+    private final AtomicLongArray bits;
+    private final AtomicLongArray summary;
+    private final AtomicInteger freeCount = new AtomicInteger();
+
+    public FreeSpotBitmap(int capacity) {
+        int words = Math.max(1, (capacity + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.summary = new AtomicLongArray(Math.max(1, (words + 63) >>> 6));
+    }
+
+    //true if the spot was not already free
+    public boolean release(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long old = bits.get(word);
+            if ((old & mask) != 0) return false;
+            if (bits.compareAndSet(word, old, old | mask)) break;
+        }
+        setSummary(word);
+        freeCount.incrementAndGet();
+        return true;
+    }
+
+    //true only for the caller that actually took the spot out of the pool
+    public boolean claim(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long old = bits.get(word);
+            if ((old & mask) == 0) return false;
+            long now = old & ~mask;
+            if (bits.compareAndSet(word, old, now)) {
+                if (now == 0) clearSummary(word);
+                freeCount.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    //lowest free index, or -1 (a hint: claim() decides who gets it)
+    public int first() {
+        for (int s = 0; s < summary.length(); s++) {
+            long sum = summary.get(s);
+            while (sum != 0) {
+                int word = (s << 6) + Long.numberOfTrailingZeros(sum);
+                long w = bits.get(word);
+                if (w != 0) return (word << 6) + Long.numberOfTrailingZeros(w);
+                sum &= sum - 1;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isFree(int index) {
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public int getFreeCount() {
+        return freeCount.get();
+    }
+
+    private void setSummary(int word) {
+        int s = word >>> 6;
+        long mask = 1L << word;
+        long old;
+        do {
+            old = summary.get(s);
+            if ((old & mask) != 0) return;
+        } while (!summary.compareAndSet(s, old, old | mask));
+    }
+
+    //clear, then re-set if a release slipped in meanwhile (summary may over-report, never under-report)
+    private void clearSummary(int word) {
+        int s = word >>> 6;
+        long mask = 1L << word;
+        long old;
+        do {
+            old = summary.get(s);
+            if ((old & mask) == 0) break;
+        } while (!summary.compareAndSet(s, old, old & ~mask));
+        if (bits.get(word) != 0) setSummary(word);
+    }
+}
@@ -0,0 +1,468 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+//Segmented, append-only transaction history on disk (history.seg).
+//
+//  header  : MAGIC, VERSION
+//  segment : SEGMENT_MAGIC, record count, payload length, CRC32, payload (records)
+//  ...
+//  footer  : segment index (offset, length, count, first/last exit time, cents per segment)
+//            + summary totals (count, cents, by method, by spot type, by day)
+//  trailer : footer offset, footer length, footer CRC32, FOOTER_MAGIC
+//
+//Opening the file reads only the trailer and footer, so startup cost does not grow with
+//history. Records are read a segment at a time (readSegment) when something asks for them.
+//Appending a segment overwrites the old footer and writes a new one; if the trailer is bad
+//after a crash the segments are scanned once to rebuild the footer.
+public class HistoryFile {
+    public static final String DEFAULT_FILE = "history.seg";
+
+    private static final int MAGIC = 0x50485346;          // "PHSF"
+    private static final int SEGMENT_MAGIC = 0x5345474D;  // "SEGM"
+    private static final int FOOTER_MAGIC = 0x46545246;   // "FTRF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int SEGMENT_HEADER_SIZE = 20;
+    private static final int TRAILER_SIZE = 24;
+
+    //index entry for one segment
+    static class Segment {
+        final long offset;
+        final int length;
+        final int count;
+        final long minExitTime;   // exits from several gates can land slightly out of order
+        final long maxExitTime;
+        final long cents;
+
+        Segment(long offset, int length, int count, long minExitTime, long maxExitTime, long cents) {
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.minExitTime = minExitTime;
+            this.maxExitTime = maxExitTime;
+            this.cents = cents;
+        }
+    }
+
+    //totals over every record in the file
+    public static class Summary {
+        long count;
+        long cents;
+        final Map<String, Long> byMethod = new HashMap<>();
+        final Map<String, Long> bySpotType = new HashMap<>();
+        final Map<Long, Long> byEpochDay = new HashMap<>();
+
+        void add(String method, String spotType, long exitTime, long amountCents) {
+            count++;
+            cents += amountCents;
+            byMethod.merge(method == null ? "Unknown" : method, amountCents, Long::sum);
+            bySpotType.merge(spotType == null ? "Unknown" : spotType, amountCents, Long::sum);
+            byEpochDay.merge(RevenueAggregates.dayOf(exitTime).toEpochDay(), amountCents, Long::sum);
+        }
+
+        //takes a record back out (segments dropped at recovery); emptied keys go away
+        void remove(String method, String spotType, long exitTime, long amountCents) {
+            count--;
+            cents -= amountCents;
+            byMethod.merge(method == null ? "Unknown" : method, -amountCents, Summary::sumOrDrop);
+            bySpotType.merge(spotType == null ? "Unknown" : spotType, -amountCents, Summary::sumOrDrop);
+            byEpochDay.merge(RevenueAggregates.dayOf(exitTime).toEpochDay(), -amountCents, Summary::sumOrDrop);
+        }
+
+        private static Long sumOrDrop(Long a, Long b) {
+            long sum = a + b;
+            return sum == 0 ? null : sum;
+        }
+
+        Summary copy() {
+            Summary c = new Summary();
+            c.count = count;
+            c.cents = cents;
+            c.byMethod.putAll(byMethod);
+            c.bySpotType.putAll(bySpotType);
+            c.byEpochDay.putAll(byEpochDay);
+            return c;
+        }
+
+        public long getCount() { return count; }
+        public long getCents() { return cents; }
+        public Map<String, Long> getByMethod() { return byMethod; }
+        public Map<String, Long> getBySpotType() { return bySpotType; }
+        public Map<Long, Long> getByEpochDay() { return byEpochDay; }
+    }
+
+    //decoded columns of one segment
+    static class Page {
+        final long[] exitTimes;
+        final long[] amountCents;
+        final String[] plates;
+        final String[] spotIDs;
+        final String[] methods;
+
+        Page(int count) {
+            exitTimes = new long[count];
+            amountCents = new long[count];
+            plates = new String[count];
+            spotIDs = new String[count];
+            methods = new String[count];
+        }
+
+        long minExitTime(int count) {
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) min = Math.min(min, exitTimes[i]);
+            return min;
+        }
+
+        long maxExitTime(int count) {
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) max = Math.max(max, exitTimes[i]);
+            return max;
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<Segment> segments = new ArrayList<>();
+    private Summary summary = new Summary();
+    private long footerOffset;
+
+    private HistoryFile(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    //opens (or creates) the file; spotTypes maps a spot ID to its type if the footer must be rebuilt
+    public static HistoryFile open(String fileName, Function<String, String> spotTypes) throws IOException {
+        Path path = Paths.get(fileName);
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        HistoryFile file = new HistoryFile(channel);
+
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            channel.write(header, 0);
+            file.footerOffset = HEADER_SIZE;
+            file.writeFooter();
+        } else if (!file.readFooter()) {
+            System.out.println("System: History footer missing or damaged, rebuilding from segments...");
+            file.rebuildFooter(spotTypes);
+        }
+        return file;
+    }
+
+    public synchronized int getRecordCount() {
+        return (int) summary.count;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    //records in segment i (segments before the last are full)
+    public synchronized int getSegmentSize(int i) {
+        return segments.get(i).count;
+    }
+
+    //true if segment i may hold exits in [from, to)
+    public synchronized boolean segmentOverlaps(int i, long from, long to) {
+        Segment s = segments.get(i);
+        return s.maxExitTime >= from && s.minExitTime < to;
+    }
+
+    public synchronized Summary getSummary() {
+        return summary;
+    }
+
+    //appends one segment, then a new footer; spotType feeds the per-type summary.
+    //If either write fails the file keeps its previous index, so the caller can simply retry.
+    public synchronized void append(Page page, int count, Function<String, String> spotType) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < count; i++) {
+            out.writeLong(page.exitTimes[i]);
+            out.writeLong(page.amountCents[i]);
+            out.writeUTF(page.plates[i]);
+            out.writeUTF(page.spotIDs[i]);
+            out.writeUTF(page.methods[i] == null ? "" : page.methods[i]);
+        }
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer buf = ByteBuffer.allocate(SEGMENT_HEADER_SIZE + payload.length);
+        buf.putInt(SEGMENT_MAGIC).putInt(count).putInt(payload.length).putLong(crc.getValue()).put(payload);
+        buf.flip();
+        long offset = footerOffset;
+        writeFully(buf, offset);
+
+        Summary before = summary.copy();
+        long cents = 0;
+        for (int i = 0; i < count; i++) {
+            cents += page.amountCents[i];
+            summary.add(page.methods[i], spotType.apply(page.spotIDs[i]), page.exitTimes[i], page.amountCents[i]);
+        }
+        segments.add(new Segment(offset, buf.capacity(), count, page.minExitTime(count), page.maxExitTime(count), cents));
+        footerOffset = offset + buf.capacity();
+        try {
+            writeFooter();
+        } catch (IOException e) {
+            segments.remove(segments.size() - 1);
+            summary = before;
+            footerOffset = offset;
+            throw e;
+        }
+    }
+
+    //drops every segment from the one starting at record `records` on, which must be a segment
+    //boundary (recovery goes back to a checkpoint that was taken with this many records sealed).
+    //The footer is rewritten over the first dropped segment; a crash half way leaves a trailer
+    //that fails its check, and the rebuild on the next open stops at that segment.
+    public synchronized void truncateTo(int records, Function<String, String> spotType) throws IOException {
+        int keep = 0;
+        int kept = 0;
+        while (keep < segments.size() && kept < records) {
+            kept += segments.get(keep++).count;
+        }
+        if (kept != records) throw new IOException("record " + records + " is not at a segment boundary");
+        if (keep == segments.size()) return;
+
+        long cut = segments.get(keep).offset;
+        Summary before = summary.copy();
+        try {
+            for (int i = keep; i < segments.size(); i++) {
+                Page page = readSegment(i);
+                for (int r = 0; r < segments.get(i).count; r++) {
+                    summary.remove(page.methods[r], spotType.apply(page.spotIDs[r]), page.exitTimes[r], page.amountCents[r]);
+                }
+            }
+        } catch (IOException e) {
+            //a dropped segment is unreadable: recount what is left instead
+            summary = before;
+            channel.truncate(cut);
+            rebuildFooter(spotType);
+            return;
+        }
+        segments.subList(keep, segments.size()).clear();
+        footerOffset = cut;
+        writeFooter();
+    }
+
+    //positional read outside the file's lock, so it does not wait for a segment being appended
+    public Page readSegment(int index) throws IOException {
+        Segment s;
+        synchronized (this) {
+            s = segments.get(index);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(s.length);
+        readFully(buf, s.offset);
+        buf.flip();
+        Page page = decode(buf, s.count);
+        if (page == null) throw new IOException("history segment " + index + " is damaged");
+        return page;
+    }
+
+    public synchronized void close() {
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing history file: " + e.getMessage());
+        }
+    }
+
+    // ---- footer ----
+
+    private void writeFooter() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + segments.size() * 44);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(segments.size());
+        for (Segment s : segments) {
+            out.writeLong(s.offset);
+            out.writeInt(s.length);
+            out.writeInt(s.count);
+            out.writeLong(s.minExitTime);
+            out.writeLong(s.maxExitTime);
+            out.writeLong(s.cents);
+        }
+        out.writeLong(summary.count);
+        out.writeLong(summary.cents);
+        writeStringMap(out, summary.byMethod);
+        writeStringMap(out, summary.bySpotType);
+        out.writeInt(summary.byEpochDay.size());
+        for (Map.Entry<Long, Long> e : summary.byEpochDay.entrySet()) {
+            out.writeLong(e.getKey());
+            out.writeLong(e.getValue());
+        }
+        out.flush();
+        byte[] footer = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(footer);
+
+        ByteBuffer buf = ByteBuffer.allocate(footer.length + TRAILER_SIZE);
+        buf.put(footer).putLong(footerOffset).putInt(footer.length).putLong(crc.getValue()).putInt(FOOTER_MAGIC);
+        buf.flip();
+        writeFully(buf, footerOffset);
+        channel.truncate(footerOffset + buf.capacity());
+        channel.force(false);
+    }
+
+    private boolean readFooter() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE + TRAILER_SIZE) return false;
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        readFully(trailer, size - TRAILER_SIZE);
+        trailer.flip();
+        long offset = trailer.getLong();
+        int length = trailer.getInt();
+        long expectedCrc = trailer.getLong();
+        if (trailer.getInt() != FOOTER_MAGIC || offset + length + TRAILER_SIZE != size || length < 0) return false;
+
+        ByteBuffer footer = ByteBuffer.allocate(length);
+        readFully(footer, offset);
+        CRC32 crc = new CRC32();
+        crc.update(footer.array());
+        if (crc.getValue() != expectedCrc) return false;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer.array()));
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            segments.add(new Segment(in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong()));
+        }
+        summary.count = in.readLong();
+        summary.cents = in.readLong();
+        readStringMap(in, summary.byMethod);
+        readStringMap(in, summary.bySpotType);
+        int days = in.readInt();
+        for (int i = 0; i < days; i++) {
+            summary.byEpochDay.put(in.readLong(), in.readLong());
+        }
+        footerOffset = offset;
+        return true;
+    }
+
+    //crash recovery: walk the segments from the start, keep every intact one
+    private void rebuildFooter(Function<String, String> spotTypes) throws IOException {
+        segments.clear();
+        summary = new Summary();
+        long offset = HEADER_SIZE;
+        long size = channel.size();
+        ByteBuffer head = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        while (offset + SEGMENT_HEADER_SIZE <= size) {
+            head.clear();
+            readFully(head, offset);
+            head.flip();
+            if (head.getInt(0) != SEGMENT_MAGIC) break;
+            int count = head.getInt(4);
+            int length = SEGMENT_HEADER_SIZE + head.getInt(8);
+            if (count <= 0 || offset + length > size) break;
+
+            ByteBuffer buf = ByteBuffer.allocate(length);
+            readFully(buf, offset);
+            buf.flip();
+            Page page = decode(buf, count);
+            if (page == null) break;
+
+            long cents = 0;
+            for (int i = 0; i < count; i++) {
+                cents += page.amountCents[i];
+                summary.add(page.methods[i], spotTypes.apply(page.spotIDs[i]), page.exitTimes[i], page.amountCents[i]);
+            }
+            segments.add(new Segment(offset, length, count, page.minExitTime(count), page.maxExitTime(count), cents));
+            offset += length;
+        }
+        footerOffset = offset;
+        writeFooter();
+        System.out.println("System: History footer rebuilt (" + summary.count + " records in " + segments.size() + " segments).");
+    }
+
+    //null if the segment's magic, count or CRC do not check out
+    private static Page decode(ByteBuffer buf, int expectedCount) {
+        if (buf.getInt() != SEGMENT_MAGIC) return null;
+        int count = buf.getInt();
+        int length = buf.getInt();
+        long expectedCrc = buf.getLong();
+        if (count != expectedCount || length != buf.remaining()) return null;
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), buf.position(), length);
+        if (crc.getValue() != expectedCrc) return null;
+
+        //parsed straight from the array (same bytes DataOutput wrote); a full scan of a big
+        //history is mostly this loop, and nearly every string here is plain ASCII
+        try {
+            Page page = new Page(count);
+            for (int i = 0; i < count; i++) {
+                page.exitTimes[i] = buf.getLong();
+                page.amountCents[i] = buf.getLong();
+                page.plates[i] = readUTF(buf);
+                page.spotIDs[i] = readUTF(buf);
+                page.methods[i] = readUTF(buf);
+            }
+            return page;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String readUTF(ByteBuffer buf) throws IOException {
+        int len = buf.getShort() & 0xFFFF;
+        byte[] array = buf.array();
+        int start = buf.arrayOffset() + buf.position();
+        for (int i = start; i < start + len; i++) {
+            if (array[i] < 0) {
+                //non-ASCII: let DataInputStream handle modified UTF-8
+                buf.position(buf.position() - 2);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(array, start - 2, len + 2));
+                String value = in.readUTF();
+                buf.position(buf.position() + 2 + len);
+                return value;
+            }
+        }
+        buf.position(buf.position() + len);
+        return new String(array, start, len, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeStringMap(DataOutputStream out, Map<String, Long> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Long> e : map.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeLong(e.getValue());
+        }
+    }
+
+    private static void readStringMap(DataInputStream in, Map<String, Long> map) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            map.put(in.readUTF(), in.readLong());
+        }
+    }
+
+    private void writeFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) throw new IOException("unexpected end of history file");
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+//Transaction history view reading straight from ParkingLot's TransactionStore.
+//Unfiltered and in time order, row r maps straight to a store index, so nothing is copied.
+//With a filter or another sort column the store's select() builds the ordered index list
+//on a background thread; until it finishes the previous rows stay on screen.
+//Cells are formatted when JTable asks for them and kept in a small cache keyed by store index.
+//Rows of sealed segments that are not paged in are fetched by a background worker (the cells
+//read "Loading..." until then), so the EDT never waits on the history file. EDT only.
+public class HistoryTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Time", "Plate", "Spot", "Method", "Amount (RM)"};
+    private static final TransactionStore.Column[] SORT_COLUMNS = {
+        TransactionStore.Column.TIME, TransactionStore.Column.PLATE, TransactionStore.Column.SPOT,
+        TransactionStore.Column.METHOD, TransactionStore.Column.AMOUNT
+    };
+    private static final int CACHE_ROWS = 512;
+
+    private final SimpleDateFormat sdf;
+    private int rowCount;
+    private int storeSize;
+
+    //current query; view == null means the plain time-ordered listing
+    private TransactionStore.Filter filter = TransactionStore.Filter.ALL;
+    private TransactionStore.Column sortBy = TransactionStore.Column.TIME;
+    private boolean descending = true;
+    private int[] view;
+    private SwingWorker<int[], Void> pending;
+    private boolean stale;
+
+    //store indexes waiting to be read from the history file, and the worker reading them
+    private final Set<Integer> wanted = new LinkedHashSet<>();
+    private SwingWorker<Map<Integer, Transaction>, Void> fetcher;
+
+    private final Map<Integer, Object[]> formatted = new LinkedHashMap<Integer, Object[]>(CACHE_ROWS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+            return size() > CACHE_ROWS;
+        }
+    };
+
+    public HistoryTableModel(String datePattern) {
+        this.sdf = new SimpleDateFormat(datePattern);
+        this.storeSize = ParkingLot.getInstance().getHistory().size();
+        this.rowCount = storeSize;
+    }
+
+    public void setFilter(TransactionStore.Filter filter) {
+        this.filter = filter == null ? TransactionStore.Filter.ALL : filter;
+        requery();
+    }
+
+    //clicking the same column again flips the direction
+    public void sortByColumn(int column) {
+        TransactionStore.Column col = SORT_COLUMNS[column];
+        descending = col == sortBy ? !descending : col == TransactionStore.Column.TIME;
+        sortBy = col;
+        requery();
+    }
+
+    public int getSortColumn() {
+        return sortBy.ordinal();
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    //true while a filter/sort is being computed
+    public boolean isLoading() {
+        return pending != null;
+    }
+
+    //pick up transactions appended since the last call
+    public void syncRowCount() {
+        TransactionStore store = ParkingLot.getInstance().getHistory();
+        int size = store.size();
+        if (size < storeSize) {
+            //history was replaced (e.g. reloaded) -> start over
+            storeSize = size;
+            formatted.clear();
+            requery();
+            return;
+        }
+        if (size == storeSize || pending != null) return; // a running query catches up when done
+
+        if (view == null) {
+            int added = size - storeSize;
+            storeSize = size;
+            rowCount = size;
+            if (descending) fireTableRowsInserted(0, added - 1);
+            else fireTableRowsInserted(size - added, size - 1);
+        } else if (sortBy == TransactionStore.Column.TIME) {
+            //new exits go at one end of a time-ordered view; only they need checking
+            int[] added = store.select(filter, sortBy, descending, storeSize);
+            storeSize = size;
+            if (added.length == 0) return;
+            int[] merged = new int[view.length + added.length];
+            if (descending) {
+                System.arraycopy(added, 0, merged, 0, added.length);
+                System.arraycopy(view, 0, merged, added.length, view.length);
+            } else {
+                System.arraycopy(view, 0, merged, 0, view.length);
+                System.arraycopy(added, 0, merged, view.length, added.length);
+            }
+            view = merged;
+            rowCount = merged.length;
+            if (descending) fireTableRowsInserted(0, added.length - 1);
+            else fireTableRowsInserted(rowCount - added.length, rowCount - 1);
+        } else {
+            //sorted by another column: new rows can land anywhere, so sort again
+            storeSize = size;
+            requery();
+        }
+    }
+
+    private void requery() {
+        if (filter.isAll() && sortBy == TransactionStore.Column.TIME) {
+            if (pending != null) pending.cancel(false);
+            pending = null;
+            view = null;
+            storeSize = ParkingLot.getInstance().getHistory().size();
+            rowCount = storeSize;
+            fireTableDataChanged();
+            return;
+        }
+        if (pending != null) {
+            stale = true; // run again once the current one is done
+            return;
+        }
+
+        TransactionStore store = ParkingLot.getInstance().getHistory();
+        TransactionStore.Filter f = filter;
+        TransactionStore.Column col = sortBy;
+        boolean desc = descending;
+        int size = store.size();
+        pending = new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() {
+                return store.select(f, col, desc, 0);
+            }
+
+            @Override
+            protected void done() {
+                if (pending != this) return; // superseded
+                pending = null;
+                try {
+                    int[] rows = get();
+                    if (stale) {
+                        stale = false;
+                        requery();
+                        return;
+                    }
+                    view = rows;
+                    storeSize = size;
+                    rowCount = rows.length;
+                    fireTableDataChanged();
+                    syncRowCount(); // exits recorded while the query ran
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    System.err.println("Error querying history: " + e.getCause());
+                }
+            }
+        };
+        pending.execute();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int index;
+        if (view != null) index = view[rowIndex];
+        else index = descending ? rowCount - 1 - rowIndex : rowIndex; // newest at the top by default
+        Object[] row = formatted.get(index);
+        if (row == null) {
+            Transaction t = ParkingLot.getInstance().getHistory().peek(index);
+            if (t == null) {
+                fetch(index);
+                return columnIndex == 0 ? "Loading..." : "";
+            }
+            row = format(t);
+            formatted.put(index, row);
+        }
+        return row[columnIndex];
+    }
+
+    private Object[] format(Transaction t) {
+        return new Object[]{
+            sdf.format(new Date(t.getExitTimeMillis())),
+            t.getPlate(),
+            t.getSpotID(),
+            t.getMethod(),
+            String.format("%.2f", t.getAmount())
+        };
+    }
+
+    //queues a row for the background fetch; one worker at a time drains the queue
+    private void fetch(int index) {
+        wanted.add(index);
+        if (fetcher != null) return;
+
+        TransactionStore store = ParkingLot.getInstance().getHistory();
+        List<Integer> batch = new ArrayList<>(wanted);
+        wanted.clear();
+        fetcher = new SwingWorker<Map<Integer, Transaction>, Void>() {
+            @Override
+            protected Map<Integer, Transaction> doInBackground() {
+                Map<Integer, Transaction> rows = new HashMap<>();
+                for (int i : batch) {
+                    if (i < store.size()) rows.put(i, store.get(i)); // pages the segment in off the EDT
+                }
+                return rows;
+            }
+
+            @Override
+            protected void done() {
+                fetcher = null;
+                try {
+                    Map<Integer, Transaction> rows = get();
+                    if (store == ParkingLot.getInstance().getHistory()) {
+                        for (Map.Entry<Integer, Transaction> e : rows.entrySet()) {
+                            formatted.put(e.getKey(), format(e.getValue()));
+                        }
+                        if (rowCount > 0) fireTableRowsUpdated(0, rowCount - 1);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    System.err.println("Error reading history rows: " + e.getCause());
+                }
+                if (!wanted.isEmpty()) fetch(wanted.iterator().next());
+            }
+        };
+        fetcher.execute();
+    }
+}
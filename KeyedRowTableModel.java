@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.table.AbstractTableModel;
+
+//Table model whose rows are addressed by a key (spot ID, plate, ...).
+//put/remove touch a single row, so one park/exit costs O(1) instead of a full rebuild.
+//Cells are stored already formatted. EDT only.
+public class KeyedRowTableModel extends AbstractTableModel {
+    private final String[] columns;
+    private final List<String> keys = new ArrayList<>();
+    private final List<Object[]> rows = new ArrayList<>();
+    private final Map<String, Integer> rowOf = new HashMap<>();
+
+    public KeyedRowTableModel(String[] columns) {
+        this.columns = columns;
+    }
+
+    //insert or replace the row for this key
+    public void put(String key, Object[] row) {
+        Integer index = rowOf.get(key);
+        if (index == null) {
+            int added = rows.size();
+            keys.add(key);
+            rows.add(row);
+            rowOf.put(key, added);
+            fireTableRowsInserted(added, added);
+        } else {
+            rows.set(index, row);
+            fireTableRowsUpdated(index, index);
+        }
+    }
+
+    //removes by moving the last row into the gap (no shifting of the rows below)
+    public void remove(String key) {
+        Integer index = rowOf.remove(key);
+        if (index == null) return;
+
+        int last = rows.size() - 1;
+        if (index != last) {
+            keys.set(index, keys.get(last));
+            rows.set(index, rows.get(last));
+            rowOf.put(keys.get(index), index);
+        }
+        keys.remove(last);
+        rows.remove(last);
+        fireTableRowsDeleted(last, last);
+        if (index != last) fireTableRowsUpdated(index, index);
+    }
+
+    public void clear() {
+        keys.clear();
+        rows.clear();
+        rowOf.clear();
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return rows.get(rowIndex)[columnIndex];
+    }
+}
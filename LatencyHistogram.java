@@ -0,0 +1,59 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Log-linear latency histogram (nanoseconds): 32 linear sub-buckets per power of two, so any
+//recorded value is reported within ~3%. Recording is lock-free and allocation-free.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(indexOf(Math.max(0, nanos)));
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    //value at the given percentile (0-100), in nanoseconds
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return valueOf(i);
+        }
+        return valueOf(BUCKETS - 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    //lower bound of a bucket
+    private static long valueOf(int index) {
+        if (index < SUB_COUNT) return index;
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        long sub = index % SUB_COUNT;
+        return (SUB_COUNT + sub) << (exponent - SUB_BITS);
+    }
+}
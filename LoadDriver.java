@@ -0,0 +1,255 @@
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Synthetic gate traffic against ParkingEngine (headless).
+//Each "gate" is a thread that keeps arriving/departing vehicles until the run ends, then the
+//driver reports sustained ops/sec, latency percentiles and invariant violations.
+//
+//  java -Djava.awt.headless=true -cp target/classes LoadDriver --gates=64 --seconds=10 --spots=20000
+//
+//Options (defaults in brackets): gates [8], seconds [10], spots [80 = standard lot],
+//arrivals [0.5] share of ops that are arrivals, car/moto/suv [0.6/0.25/0.15] vehicle mix,
+//permits [0.05] handicapped permit ratio, vip [0.05] reserved permit ratio,
+//overstay [0.02] share of stays older than 24 billed hours, defer [0.3] share deferring fines.
+public class LoadDriver {
+    private static final long MILLIS_PER_HOUR = 1000L;
+
+    private final Map<String, Double> options;
+    private final ParkingEngine engine;
+    private final ParkingLot lot;
+
+    //measurements
+    private final LatencyHistogram entryLatency = new LatencyHistogram();
+    private final LatencyHistogram exitLatency = new LatencyHistogram();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong exits = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong paidCents = new AtomicLong();
+    private final AtomicLong violations = new AtomicLong();
+
+    //driver-side ledger of who holds which bay, to catch double booking as it happens
+    private final Map<String, String> bookedSpots = new ConcurrentHashMap<>();
+
+    public LoadDriver(Map<String, Double> options) {
+        this.options = options;
+        this.lot = ParkingLot.getInstance();
+        //1 billed hour = 1 s of wall time; overstays are produced with back-dated entries
+        this.engine = new ParkingEngine(lot, MILLIS_PER_HOUR);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        new LoadDriver(parseOptions(args)).run();
+    }
+
+    private static Map<String, Double> parseOptions(String[] args) {
+        Map<String, Double> o = new HashMap<>();
+        o.put("gates", 8.0);
+        o.put("seconds", 10.0);
+        o.put("spots", 80.0);
+        o.put("arrivals", 0.5);
+        o.put("car", 0.6);
+        o.put("moto", 0.25);
+        o.put("suv", 0.15);
+        o.put("permits", 0.05);
+        o.put("vip", 0.05);
+        o.put("overstay", 0.02);
+        o.put("defer", 0.3);
+        for (String arg : args) {
+            String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+            if (kv.length == 2 && o.containsKey(kv[0])) {
+                o.put(kv[0], Double.parseDouble(kv[1]));
+            } else {
+                System.err.println("Ignoring unknown option: " + arg);
+            }
+        }
+        return o;
+    }
+
+    public void run() throws Exception {
+        int gates = options.get("gates").intValue();
+        long runMillis = (long) (options.get("seconds") * 1000);
+        int spots = options.get("spots").intValue();
+
+        if (spots != lot.getSpots().size()) {
+            lot.setTopology(LotTopology.generated(spots));
+        }
+        PermitCache.loadFrom(new HashSet<>(), new HashSet<>());
+        ReceiptSpooler.getInstance(); // receipt numbers reserved before the gates open
+
+        double revenueBefore = lot.getTotalRevenue();
+        int historyBefore = lot.getHistory().size();
+
+        System.out.println("System: Load run: " + gates + " gates, " + spots + " spots, " + (runMillis / 1000.0) + " s");
+        long deadline = System.currentTimeMillis() + runMillis;
+        long start = System.nanoTime();
+
+        ExecutorService pool = newGateExecutor(gates);
+        for (int g = 0; g < gates; g++) {
+            int gate = g;
+            pool.submit(() -> runGate(gate, deadline));
+        }
+        pool.shutdown();
+        pool.awaitTermination(runMillis + 60_000, TimeUnit.MILLISECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        ReceiptSpooler.getInstance().close();
+
+        checkFinalState(revenueBefore, historyBefore);
+        report(seconds);
+    }
+
+    //virtual threads when the JVM has them (Java 21+), otherwise one platform thread per gate
+    private static ExecutorService newGateExecutor(int gates) {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(gates);
+        }
+    }
+
+    private void runGate(int gate, long deadline) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        List<String> parked = new ArrayList<>();
+        long serial = 0;
+
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                boolean arrive = parked.isEmpty() || rnd.nextDouble() < options.get("arrivals");
+                if (arrive) {
+                    String plate = "G" + gate + "-" + (serial++);
+                    if (arrive(plate, rnd)) parked.add(plate);
+                } else {
+                    int pick = rnd.nextInt(parked.size());
+                    String plate = parked.get(pick);
+                    parked.set(pick, parked.get(parked.size() - 1));
+                    parked.remove(parked.size() - 1);
+                    depart(plate, rnd);
+                }
+            }
+        } catch (RuntimeException e) {
+            violations.incrementAndGet();
+            System.err.println("Gate " + gate + " failed: " + e);
+        }
+    }
+
+    private boolean arrive(String plate, ThreadLocalRandom rnd) {
+        if (rnd.nextDouble() < options.get("permits")) PermitCache.addHandicapped(plate);
+        if (rnd.nextDouble() < options.get("vip")) PermitCache.addReserved(plate);
+
+        //overstays entered "25 to 96 hours" ago
+        long entryTime = System.currentTimeMillis();
+        if (rnd.nextDouble() < options.get("overstay")) entryTime -= (25 + rnd.nextInt(72)) * MILLIS_PER_HOUR;
+        Vehicle v = randomVehicle(plate, entryTime, rnd);
+
+        long t0 = System.nanoTime();
+        Ticket ticket = engine.enter(v, null);
+        entryLatency.record(System.nanoTime() - t0);
+
+        if (ticket == null) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        entries.incrementAndGet();
+        String previous = bookedSpots.putIfAbsent(ticket.getSpotID(), plate);
+        if (previous != null) {
+            violations.incrementAndGet();
+            System.err.println("VIOLATION: " + ticket.getSpotID() + " issued to " + plate + " while held by " + previous);
+        }
+        return true;
+    }
+
+    private void depart(String plate, ThreadLocalRandom rnd) {
+        boolean defer = rnd.nextDouble() < options.get("defer");
+        String method = rnd.nextBoolean() ? "Cash" : "Debit/Credit Card";
+
+        long t0 = System.nanoTime();
+        ExitQuote quote = engine.quote(plate);
+        Settlement settlement = null;
+        if (quote != null) {
+            //release our ledger entry before settling: the spot may be re-issued as soon as it is freed
+            if (!bookedSpots.remove(quote.getSpotID(), plate)) {
+                violations.incrementAndGet();
+                System.err.println("VIOLATION: " + plate + " found in " + quote.getSpotID() + " which it was never issued");
+            }
+            settlement = engine.settle(quote, method, defer);
+        }
+        exitLatency.record(System.nanoTime() - t0);
+
+        if (settlement == null) {
+            violations.incrementAndGet();
+            System.err.println("VIOLATION: " + plate + " could not exit (lost vehicle)");
+            return;
+        }
+        exits.incrementAndGet();
+        paidCents.addAndGet(Math.round(settlement.getAmountPaid() * 100));
+    }
+
+    private Vehicle randomVehicle(String plate, long entryTime, ThreadLocalRandom rnd) {
+        double r = rnd.nextDouble() * (options.get("car") + options.get("moto") + options.get("suv"));
+        if (r < options.get("car")) return new Car(plate, entryTime);
+        if (r < options.get("car") + options.get("moto")) return new Motorcycle(plate, entryTime);
+        return new SUV(plate, entryTime);
+    }
+
+    //end-of-run consistency: indexes agree with the spots, and every payment reached the books
+    private void checkFinalState(double revenueBefore, int historyBefore) {
+        int occupied = 0;
+        Set<String> plates = new HashSet<>();
+        for (ParkingSpot s : lot.getSpots()) {
+            if (!s.isOccupied()) continue;
+            occupied++;
+            String plate = s.getCurrentVehicle().getLicensePlate();
+            if (!plates.add(plate) || !s.equals(lot.findSpotByPlate(plate))) {
+                violations.incrementAndGet();
+                System.err.println("VIOLATION: plate index disagrees for " + plate + " at " + s.getSpotID());
+            }
+        }
+        if (occupied != TicketRegistry.getInstance().size()) {
+            violations.incrementAndGet();
+            System.err.println("VIOLATION: " + occupied + " vehicles parked but " + TicketRegistry.getInstance().size() + " open tickets");
+        }
+        if (occupied != lot.getOccupiedCount() || occupied != bookedSpots.size()) {
+            violations.incrementAndGet();
+            System.err.println("VIOLATION: occupancy " + occupied + " vs counter " + lot.getOccupiedCount()
+                + " vs driver ledger " + bookedSpots.size());
+        }
+
+        long bookedCents = Math.round((lot.getTotalRevenue() - revenueBefore) * 100);
+        int recorded = lot.getHistory().size() - historyBefore;
+        if (bookedCents != paidCents.get() || recorded != exits.get()) {
+            violations.incrementAndGet();
+            System.err.println("VIOLATION: lost revenue, paid RM " + paidCents.get() / 100.0 + " in " + exits.get()
+                + " exits but books show RM " + bookedCents / 100.0 + " in " + recorded + " transactions");
+        }
+    }
+
+    private void report(double seconds) {
+        long ops = entries.get() + exits.get() + rejected.get();
+        System.out.println("================ LOAD REPORT ================");
+        System.out.printf("Duration      : %.2f s%n", seconds);
+        System.out.printf("Throughput    : %.0f ops/s (%d entries, %d exits, %d rejected)%n",
+            ops / seconds, entries.get(), exits.get(), rejected.get());
+        printLatency("Entry latency ", entryLatency);
+        printLatency("Exit latency  ", exitLatency);
+        System.out.printf("Revenue       : RM %.2f%n", paidCents.get() / 100.0);
+        System.out.println("Violations    : " + violations.get());
+        System.out.println("=============================================");
+    }
+
+    private static void printLatency(String label, LatencyHistogram h) {
+        System.out.printf("%s: p50 %.1f us, p99 %.1f us, p999 %.1f us%n", label,
+            h.getPercentile(50) / 1000.0, h.getPercentile(99) / 1000.0, h.getPercentile(99.9) / 1000.0);
+    }
+}
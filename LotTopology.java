@@ -0,0 +1,138 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//Lot layout as a list of blocks: consecutive spots on one floor of one zone sharing a type and rate.
+//Config file format (one block per line, # comments):
+//
+//  # zone  floor  count  type         rate
+//  -       1      15     Reserved     10.0
+//  -       1      5      Handicapped  2.0
+//  B2      3      400    Regular      5.0
+//
+//Zone "-" means a single-building lot (IDs like F1-S01); any other zone prefixes the ID (B2-F3-S001).
+//Spot numbers continue across blocks on the same zone/floor.
+public class LotTopology {
+    public static final String DEFAULT_FILE = "lot_topology.txt";
+    public static final String NO_ZONE = "-";
+
+    public static class Block {
+        final String zone;
+        final int floor;
+        final int count;
+        final String type;
+        final double rate;
+
+        public Block(String zone, int floor, int count, String type, double rate) {
+            this.zone = zone;
+            this.floor = floor;
+            this.count = count;
+            this.type = type;
+            this.rate = rate;
+        }
+    }
+
+    private final List<Block> blocks;
+
+    public LotTopology(List<Block> blocks) {
+        this.blocks = Collections.unmodifiableList(new ArrayList<>(blocks));
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    public int getSpotCount() {
+        int total = 0;
+        for (Block b : blocks) {
+            total += b.count;
+        }
+        return total;
+    }
+
+    //topology from -Dparking.topology (or lot_topology.txt) if present, else the standard 4 x 20 lot
+    public static LotTopology loadOrDefault() {
+        File file = new File(System.getProperty("parking.topology", DEFAULT_FILE));
+        if (file.exists()) {
+            try {
+                LotTopology topology = load(file);
+                System.out.println("System: Lot topology loaded from " + file.getName() + " (" + topology.getSpotCount() + " spots).");
+                return topology;
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error loading lot topology, using default layout: " + e.getMessage());
+            }
+        }
+        return defaultLayout();
+    }
+
+    public static LotTopology load(File file) throws IOException {
+        List<Block> blocks = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\\s+");
+                if (parts.length != 5) {
+                    throw new IllegalArgumentException("line " + lineNo + ": expected zone floor count type rate");
+                }
+                int floor;
+                int count;
+                double rate;
+                try {
+                    floor = Integer.parseInt(parts[1]);
+                    count = Integer.parseInt(parts[2]);
+                    rate = Double.parseDouble(parts[4]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("line " + lineNo + ": " + e.getMessage());
+                }
+                if (floor <= 0) throw new IllegalArgumentException("line " + lineNo + ": floor must be 1 or higher, got " + floor);
+                if (count <= 0) throw new IllegalArgumentException("line " + lineNo + ": count must be 1 or higher, got " + count);
+                if (!(rate >= 0) || Double.isInfinite(rate)) {
+                    throw new IllegalArgumentException("line " + lineNo + ": rate must be a non-negative number, got " + parts[4]);
+                }
+                blocks.add(new Block(parts[0], floor, count, parts[3], rate));
+            }
+        }
+        if (blocks.isEmpty()) throw new IllegalArgumentException("no spots defined");
+        return new LotTopology(blocks);
+    }
+
+    //FLOOR 1: VIP (S01-S15) & HANDICAPPED (S16-S20), FLOORS 2 & 3: STANDARD, FLOOR 4: COMPACT
+    public static LotTopology defaultLayout() {
+        List<Block> blocks = new ArrayList<>();
+        blocks.add(new Block(NO_ZONE, 1, 15, "Reserved", 10.0));
+        blocks.add(new Block(NO_ZONE, 1, 5, "Handicapped", 2.0));
+        blocks.add(new Block(NO_ZONE, 2, 20, "Regular", 5.0));
+        blocks.add(new Block(NO_ZONE, 3, 20, "Regular", 5.0));
+        blocks.add(new Block(NO_ZONE, 4, 20, "Compact", 2.0));
+        return new LotTopology(blocks);
+    }
+
+    //synthetic lot of about spotCount spots, 100 per floor, with the default floor mix (load tests/benchmarks)
+    public static LotTopology generated(int spotCount) {
+        List<Block> blocks = new ArrayList<>();
+        int floor = 1;
+        for (int left = spotCount; left > 0; left -= 100, floor++) {
+            int onFloor = Math.min(100, left);
+            if (floor % 4 == 1) {
+                int reserved = Math.min(onFloor, 75);
+                blocks.add(new Block(NO_ZONE, floor, reserved, "Reserved", 10.0));
+                if (onFloor > reserved) blocks.add(new Block(NO_ZONE, floor, onFloor - reserved, "Handicapped", 2.0));
+            } else if (floor % 4 == 0) {
+                blocks.add(new Block(NO_ZONE, floor, onFloor, "Compact", 2.0));
+            } else {
+                blocks.add(new Block(NO_ZONE, floor, onFloor, "Regular", 5.0));
+            }
+        }
+        return new LotTopology(blocks);
+    }
+}
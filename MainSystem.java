@@ -1,7 +1,5 @@
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.util.List;
-import java.util.Map;
 import javax.swing.*;
 
 public class MainSystem {
@@ -12,30 +10,31 @@ public class MainSystem {
             e.printStackTrace();
         }
 
+        //counters and latency timers show up in JConsole/VisualVM under "parking"
+        Metrics.exportToJmx();
+
         DatabaseHelper.initializeDatabase();
+        PermitCache.load();
+        Runtime.getRuntime().addShutdownHook(new Thread(DatabaseHelper::shutdown, "db-shutdown"));
         ParkingLot lot = ParkingLot.getInstance();
         System.out.println("System: Backend Services Initialized.");
 
         
-        //load Parking Spots (Occupancy & Reservations)
-        List<ParkingSpot> savedSpots = DataManager.loadState();
-        if (savedSpots != null && !savedSpots.isEmpty()) {
-            lot.setSpots(savedSpots);
-            System.out.println("System: Previous parking data loaded.");
-        }
-
-        List<Transaction> savedHistory = DataManager.loadHistory();
-        if (savedHistory != null) {
-            lot.setHistory(savedHistory);
-            System.out.println("System: Revenue history loaded.");
-        }   
-
-        //load Financial Data (Unpaid Fines)
-        Map<String, Double> savedFines = DataManager.loadFines();
-        if (savedFines != null && !savedFines.isEmpty()) {
-            FineManager.setOutstandingFines(savedFines);
-            System.out.println("System: Previous fine records loaded.");
-        }
+        //serialized .dat files from older versions are converted to the binary format once
+        DataManager.migrateLegacyFiles();
+
+        //newest consistent background checkpoint, else the files from the last clean shutdown;
+        //the history and spot state files are brought back to the same cut
+        //(-Dparking.spotState.fsync=true forces every slot write to disk)
+        CheckpointManager checkpoints = CheckpointManager.getInstance();
+        StateRecovery recovered = StateRecovery.restore(lot, checkpoints, HistoryFile.DEFAULT_FILE,
+            SpotStateFile.DEFAULT_FILE, Boolean.getBoolean("parking.spotState.fsync"));
+        final HistoryFile openHistory = recovered.getHistoryFile();
+        final SpotStateFile mappedState = recovered.getSpotStateFile();
+
+        //reserves the first block of receipt numbers now, so no exit waits for it
+        ReceiptSpooler.getInstance();
+        checkpoints.start();
 
         //role selection (Access Control)
         String[] options = {"Driver / User", "Administrator"};
@@ -93,10 +92,19 @@ public class MainSystem {
                 if (confirm == JOptionPane.YES_OPTION) {
                     System.out.println("System: Saving data before shutting down...");
                     
-                    //save all currently parked cars and fines to file
-                    DataManager.saveState(ParkingLot.getInstance().getSpots());
-                    DataManager.saveHistory(ParkingLot.getInstance().getHistory()); 
-                    DataManager.saveFines(FineManager.getAllOutstandingFines());
+                    //final checkpoint of parked cars, history, fines and tickets (skipped if nothing changed)
+                    CheckpointManager.getInstance().shutdown();
+                    ReceiptSpooler.getInstance().close();
+                    if (mappedState != null) mappedState.close();
+                    if (openHistory != null) {
+                        //full history chunks are written by a background sealer; let it finish first
+                        try {
+                            lot.getHistory().flush(30_000);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        openHistory.close();
+                    }
                     
                     System.out.println("System: Data saved. Goodbye!");
                     System.exit(0); 
@@ -0,0 +1,220 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+//Counters, gauges and latency timers for the parking core, exported over JMX.
+//Metric names are "<group>.<name>" (e.g. "lot.park"); each group becomes one MBean,
+//parking:type=Metrics,name=<group>, whose attributes are the group's metrics (timers expand
+//to .count, .meanMicros, .p50Micros, .p99Micros, .p999Micros and .maxMicros).
+//Callers keep the Counter/Timer they were handed in a static final field, so recording is
+//one LongAdder/histogram update with no lookups or allocation.
+public class Metrics {
+    private static final String DOMAIN = "parking";
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static final Map<String, ObjectName> registered = new ConcurrentHashMap<>();
+    private static volatile boolean exporting;
+
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    public static class Timer {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        public void record(long nanos) {
+            histogram.record(nanos);
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        //records the time since a System.nanoTime() taken before the operation
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getMeanMicros() {
+            long n = count.sum();
+            return n == 0 ? 0.0 : totalNanos.sum() / 1000.0 / n;
+        }
+
+        public double getPercentileMicros(double percentile) {
+            return histogram.getPercentile(percentile) / 1000.0;
+        }
+
+        public double getMaxMicros() {
+            return maxNanos.get() / 1000.0;
+        }
+    }
+
+    public static Counter counter(String name) {
+        Counter c = counters.computeIfAbsent(name, k -> new Counter());
+        exportGroupOf(name);
+        return c;
+    }
+
+    public static Timer timer(String name) {
+        Timer t = timers.computeIfAbsent(name, k -> new Timer());
+        exportGroupOf(name);
+        return t;
+    }
+
+    //replaces any gauge of the same name
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+        exportGroupOf(name);
+    }
+
+    //drops every gauge whose name starts with prefix (e.g. when the lot layout changes)
+    public static void removeGauges(String prefix) {
+        gauges.keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    //registers one MBean per group on the platform MBean server (idempotent)
+    public static void exportToJmx() {
+        exporting = true;
+        List<String> names = new ArrayList<>();
+        names.addAll(counters.keySet());
+        names.addAll(timers.keySet());
+        names.addAll(gauges.keySet());
+        for (String name : names) {
+            exportGroupOf(name);
+        }
+        System.out.println("System: Metrics exported over JMX (" + registered.size() + " groups under " + DOMAIN + ":type=Metrics).");
+    }
+
+    private static void exportGroupOf(String name) {
+        if (!exporting) return;
+        String group = groupOf(name);
+        if (registered.containsKey(group)) return;
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(group));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (registered.putIfAbsent(group, objectName) == null && !server.isRegistered(objectName)) {
+                server.registerMBean(new GroupMBean(group), objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Error exporting metrics group " + group + ": " + e.getMessage());
+        }
+    }
+
+    private static String groupOf(String name) {
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    //attribute name -> current value for one group
+    static Map<String, Object> snapshot(String group) {
+        String prefix = group + ".";
+        Map<String, Object> values = new TreeMap<>();
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            if (e.getKey().startsWith(prefix)) values.put(e.getKey().substring(prefix.length()), e.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            if (e.getKey().startsWith(prefix)) values.put(e.getKey().substring(prefix.length()), e.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            if (!e.getKey().startsWith(prefix)) continue;
+            String n = e.getKey().substring(prefix.length());
+            Timer t = e.getValue();
+            values.put(n + ".count", t.getCount());
+            values.put(n + ".meanMicros", t.getMeanMicros());
+            values.put(n + ".p50Micros", t.getPercentileMicros(50));
+            values.put(n + ".p99Micros", t.getPercentileMicros(99));
+            values.put(n + ".p999Micros", t.getPercentileMicros(99.9));
+            values.put(n + ".maxMicros", t.getMaxMicros());
+        }
+        return values;
+    }
+
+    //read-only view of one group; attributes are worked out on each call, so metrics
+    //added after registration show up too
+    private static final class GroupMBean implements DynamicMBean {
+        private final String group;
+
+        GroupMBean(String group) {
+            this.group = group;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = snapshot(group).get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = snapshot(group);
+            AttributeList list = new AttributeList();
+            for (String a : attributes) {
+                if (values.containsKey(a)) list.add(new Attribute(a, values.get(a)));
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Object> values = snapshot(group);
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> e : values.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(),
+                    group + "." + e.getKey(), true, false, false);
+            }
+            return new MBeanInfo(GroupMBean.class.getName(), "Parking metrics: " + group, attributes, null, null, null);
+        }
+    }
+}
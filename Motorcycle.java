@@ -1,10 +1,16 @@
 
 
 public class Motorcycle extends Vehicle {
+    private static final long serialVersionUID = 5435906288522810750L;
+
     public Motorcycle(String licensePlate) {
         super(licensePlate);
     }
 
+    public Motorcycle(String licensePlate, long entryTime) {
+        super(licensePlate, entryTime);
+    }
+
     @Override
     public String getType() {
         return "Motorcycle";
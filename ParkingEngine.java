@@ -0,0 +1,136 @@
+import java.util.concurrent.locks.Lock;
+
+//Headless entry/exit service: vehicle creation, billing, permit checks, fine deferral and
+//the payment sequence, with no Swing dependency. The entry and exit panels call into this,
+//and load tests or gate controllers can drive it directly (java.awt.headless=true is fine).
+public class ParkingEngine {
+    //for demo: 1 minute = 1 hour (-Dparking.millisPerHour=3600000 for real time)
+    public static final long DEFAULT_MILLIS_PER_HOUR = 60_000L;
+
+    private static volatile ParkingEngine instance;
+
+    private final ParkingLot lot;
+    private final long millisPerHour;
+
+    public ParkingEngine(ParkingLot lot, long millisPerHour) {
+        this.lot = lot;
+        this.millisPerHour = millisPerHour;
+    }
+
+    public static ParkingEngine getInstance() {
+        if (instance == null) {
+            synchronized (ParkingEngine.class) {
+                if (instance == null) {
+                    instance = new ParkingEngine(ParkingLot.getInstance(),
+                        Long.getLong("parking.millisPerHour", DEFAULT_MILLIS_PER_HOUR));
+                }
+            }
+        }
+        return instance;
+    }
+
+    public ParkingLot getLot() {
+        return lot;
+    }
+
+    //Factory method to create specific Vehicle objects based on selection
+    public static Vehicle createVehicle(String plate, String type) {
+        if (type == null) return null;
+        if (type.equals("Car") || type.equals("VIP Car") || type.equals("Handicapped Vehicle")) return new Car(plate);
+        if (type.equals("Motorcycle")) return new Motorcycle(plate);
+        if (type.equals("SUV/Truck") || type.equals("SUV")) return new SUV(plate);
+        return null;
+    }
+
+    public boolean isParked(String plate) {
+        return lot.findSpotByPlate(plate) != null;
+    }
+
+    //ENTRY: parks at spotID, or at the first suitable free spot when spotID is null.
+    //Returns null if the type is unknown, the plate is blank or too long (ParkingLot.isValidPlate),
+    //already inside, or no spot could be claimed.
+    public Ticket enter(String plate, String type, String spotID) {
+        return enter(createVehicle(plate.trim().toUpperCase(), type), spotID);
+    }
+
+    //same, for a vehicle built by the caller (e.g. with an earlier entry time)
+    public Ticket enter(Vehicle v, String spotID) {
+        if (v == null) return null;
+        return spotID == null ? lot.parkVehicle(v) : lot.parkVehicleAtSpot(spotID, v);
+    }
+
+    //EXIT STEP 1: bill for the vehicle as of now (null if it is not parked)
+    public ExitQuote quote(String plate) {
+        return quote(plate, System.currentTimeMillis());
+    }
+
+    public ExitQuote quote(String plate, long exitTime) {
+        ParkingSpot spot = lot.findSpotByPlate(plate);
+        if (spot == null) return null;
+        Vehicle v = spot.getCurrentVehicle();
+        if (v == null) return null;
+
+        String savedPlate = v.getLicensePlate();
+
+        //ceiling rounding, minimum charge 1 hour
+        long hoursParked = Tariff.billedHours(v.getEntryTime(), exitTime, millisPerHour);
+
+        //Check Permits
+        boolean hasCard = PermitCache.hasHandicappedPermit(savedPlate);
+        boolean hasReservedPermit = PermitCache.hasReservedPermit(savedPlate);
+
+        //Calculate Fees (compiled tariff, in cents)
+        Tariff tariff = BillingEngine.getInstance().getTariff();
+        int row = spot.getIndex();
+        double rate = tariff.rateCentsOf(row) / 100.0;
+        double parkingFee = tariff.parkingFeeCents(row, hoursParked, hasCard) / 100.0;
+        double newFines = tariff.fineCents(row, hoursParked, hasReservedPermit) / 100.0;
+        double oldDebts = FineManager.getUnpaidFineCents(savedPlate) / 100.0;
+
+        return new ExitQuote(savedPlate, spot.getSpotID(), spot.getType(), v.getEntryTime(), exitTime,
+            hoursParked, rate, parkingFee, newFines, oldDebts);
+    }
+
+    //EXIT STEP 2: take payment for a fresh quote
+    public Settlement settle(String plate, String method, boolean deferFines) {
+        ExitQuote quote = quote(plate);
+        return quote == null ? null : settle(quote, method, deferFines);
+    }
+
+    //settles a quote the driver has already seen; null if the vehicle already left
+    public Settlement settle(ExitQuote quote, String method, boolean deferFines) {
+        double amountToPay = quote.getAmountToPay(deferFines);
+        Transaction record;
+
+        //the exit, its fines and its transaction reach a checkpoint together or not at all
+        Lock update = lot.updateLock();
+        update.lock();
+        try {
+            //freeing the spot is the claim: a second settle for the same stay gets null
+            if (!lot.removeVehicle(quote.getSpotID(), quote.getPlate())) return null;
+            record = new Transaction(quote.getPlate(), quote.getSpotID(), amountToPay, method);
+
+            //Handle Fines Logic
+            if (deferFines) {
+                //deferred -> add NEW fines to debt, keep OLD fines
+                if (quote.getNewFines() > 0) {
+                    FineManager.addFineToAccount(quote.getPlate(), quote.getNewFines());
+                }
+            } else {
+                //paid in full -> clear ALL fines
+                FineManager.clearFines(quote.getPlate());
+            }
+
+            //Backend Processing
+            lot.addTransaction(record);
+        } finally {
+            update.unlock();
+        }
+
+        //archive the receipt (queued, written by the spooler thread)
+        ReceiptSpooler spooler = ReceiptSpooler.getInstance();
+        Settlement settlement = new Settlement(quote, method, deferFines, amountToPay, record, spooler.nextReceiptNo());
+        spooler.submit(settlement);
+        return settlement;
+    }
+}
@@ -0,0 +1,45 @@
+//Typed change notification delivered to ParkingObservers by ParkingEventDispatcher
+public class ParkingEvent {
+    public enum Type { VEHICLE_PARKED, VEHICLE_EXITED, TRANSACTION_RECORDED, FINE_CHANGED }
+
+    private final Type type;
+    private final ParkingSpot spot;         // parked/exited
+    private final String plate;
+    private final Transaction transaction;  // transaction recorded
+    private final long timestamp;
+
+    private ParkingEvent(Type type, ParkingSpot spot, String plate, Transaction transaction) {
+        this.type = type;
+        this.spot = spot;
+        this.plate = plate;
+        this.transaction = transaction;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public static ParkingEvent vehicleParked(ParkingSpot spot, String plate) {
+        return new ParkingEvent(Type.VEHICLE_PARKED, spot, plate, null);
+    }
+
+    public static ParkingEvent vehicleExited(ParkingSpot spot, String plate) {
+        return new ParkingEvent(Type.VEHICLE_EXITED, spot, plate, null);
+    }
+
+    public static ParkingEvent transactionRecorded(Transaction t) {
+        return new ParkingEvent(Type.TRANSACTION_RECORDED, null, t.getPlate(), t);
+    }
+
+    public static ParkingEvent fineChanged(String plate) {
+        return new ParkingEvent(Type.FINE_CHANGED, null, plate, null);
+    }
+
+    public Type getType() { return type; }
+    public ParkingSpot getSpot() { return spot; }
+    public String getPlate() { return plate; }
+    public Transaction getTransaction() { return transaction; }
+    public long getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        return type + "[" + (spot != null ? spot.getSpotID() + " " : "") + plate + "]";
+    }
+}
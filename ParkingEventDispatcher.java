@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Delivers ParkingEvents to observers on a background thread.
+//After the first event of a burst it waits for the coalescing window, then hands every
+//pending event to each observer as one batch, so a busy gate causes one refresh, not dozens.
+//Spot and fine events are state changes that observers re-read, so while an event is pending
+//a newer one for the same spot (or plate) replaces it instead of queueing behind it.
+//Transactions are never merged. The pending list is bounded: when it is full, publish waits
+//for the worker to take the next batch.
+//Window: -Dparking.events.coalesceMs (default 50, 0 = deliver as soon as possible).
+//Bound: -Dparking.events.maxPending (default 10000).
+public class ParkingEventDispatcher {
+    private static final ParkingEventDispatcher instance = new ParkingEventDispatcher();
+    private static final Metrics.Timer FANOUT_TIME = Metrics.timer("events.fanout");
+    private static final Metrics.Counter BATCHES = Metrics.counter("events.batches");
+    private static final Metrics.Counter DELIVERED = Metrics.counter("events.delivered");
+    private static final Metrics.Counter COALESCED = Metrics.counter("events.coalesced");
+    private static final Metrics.Counter ERRORS = Metrics.counter("events.errors");
+
+    private final List<ParkingObserver> observers = new CopyOnWriteArrayList<>();
+    private final int maxPending = Math.max(1, Integer.getInteger("parking.events.maxPending", 10_000));
+    private volatile long coalesceWindowMillis = Long.getLong("parking.events.coalesceMs", 50L);
+
+    //pending batch in publish order, plus where each spot/fine key sits in it
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasEvents = lock.newCondition();  // first event arrived, or the batch filled up
+    private final Condition hasRoom = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private List<ParkingEvent> pending = new ArrayList<>();
+    private final Map<String, Integer> pendingIndex = new HashMap<>();
+    private boolean delivering;
+    private volatile Thread worker;
+
+    private ParkingEventDispatcher() {
+    }
+
+    public static ParkingEventDispatcher getInstance() {
+        return instance;
+    }
+
+    public void addObserver(ParkingObserver obs) {
+        observers.add(obs);
+    }
+
+    public void removeObserver(ParkingObserver obs) {
+        observers.remove(obs);
+    }
+
+    public void setCoalesceWindowMillis(long millis) {
+        this.coalesceWindowMillis = Math.max(0, millis);
+    }
+
+    public long getCoalesceWindowMillis() {
+        return coalesceWindowMillis;
+    }
+
+    //only waits when maxPending events are already pending; events are dropped when nobody is listening
+    public void publish(ParkingEvent event) {
+        if (observers.isEmpty()) return;
+        ensureStarted();
+        String key = keyOf(event);
+        lock.lock();
+        try {
+            Integer at = key == null ? null : pendingIndex.get(key);
+            if (at != null) {
+                pending.set(at, event);
+                COALESCED.increment();
+                return;
+            }
+            //an observer publishing from the worker thread must not wait on itself
+            while (pending.size() >= maxPending && Thread.currentThread() != worker) {
+                hasRoom.awaitUninterruptibly();
+            }
+            if (key != null) pendingIndex.put(key, pending.size());
+            pending.add(event);
+            if (pending.size() == 1 || pending.size() >= maxPending) hasEvents.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //waits until everything published so far has been delivered (tests/shutdown)
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (!pending.isEmpty() || delivering) {
+                if (remaining <= 0) return false;
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //spot events merge per spot, fine events per plate, transactions never
+    private static String keyOf(ParkingEvent event) {
+        switch (event.getType()) {
+            case VEHICLE_PARKED:
+            case VEHICLE_EXITED:
+                return event.getSpot() == null ? null : "spot:" + event.getSpot().getSpotID();
+            case FINE_CHANGED:
+                return "fine:" + event.getPlate();
+            default:
+                return null;
+        }
+    }
+
+    private synchronized void ensureStarted() {
+        if (worker != null) return;
+        Thread t = new Thread(this::runLoop, "parking-events");
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+    }
+
+    private void runLoop() {
+        while (true) {
+            List<ParkingEvent> batch;
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    hasEvents.await();
+                }
+                //later events for the same keys merge into the pending batch while we wait
+                long remaining = TimeUnit.MILLISECONDS.toNanos(coalesceWindowMillis);
+                while (remaining > 0 && pending.size() < maxPending) {
+                    remaining = hasEvents.awaitNanos(remaining);
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                pendingIndex.clear();
+                delivering = true;
+                hasRoom.signalAll();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                deliver(Collections.unmodifiableList(batch));
+            } finally {
+                lock.lock();
+                try {
+                    delivering = false;
+                    if (pending.isEmpty()) idle.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void deliver(List<ParkingEvent> batch) {
+        long start = System.nanoTime();
+        for (ParkingObserver obs : observers) {
+            try {
+                obs.onParkingEvents(batch);
+            } catch (RuntimeException e) {
+                ERRORS.increment();
+                System.err.println("Error delivering parking events: " + e.getMessage());
+            }
+        }
+        FANOUT_TIME.recordSince(start);
+        BATCHES.increment();
+        DELIVERED.add(batch.size());
+    }
+}
@@ -1,196 +1,513 @@
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class ParkingLot implements Serializable {
     private static final long serialVersionUID = 1L;
     
-    //singleton instance
-    private static ParkingLot instance;
+    //singleton instance (volatile for the double-checked init below)
+    private static volatile ParkingLot instance;
+
+    //longest plate accepted at the gate, in UTF-8 bytes (the spot state file sizes its plate field from it)
+    public static final int MAX_PLATE_LENGTH = 20;
+
+    private static final Metrics.Timer PARK_TIME = Metrics.timer("lot.park");
+    private static final Metrics.Timer EXIT_TIME = Metrics.timer("lot.exit");
+    private static final Metrics.Counter PARKED = Metrics.counter("lot.parked");
+    private static final Metrics.Counter PARK_REJECTED = Metrics.counter("lot.parkRejected");
+    private static final Metrics.Counter EXITED = Metrics.counter("lot.exited");
 
     //data fields
-    private List<ParkingSpot> spots;
-    private double totalRevenue;
-    private transient List<ParkingObserver> observers = new ArrayList<>();
-    private List<Transaction> transactionHistory;
+    private transient volatile SpotTable table;
+    private transient TransactionStore transactionHistory;
+    private transient RevenueAggregates revenue = new RevenueAggregates();
+    private transient volatile Rollups rollups;
+    private transient volatile SpotStateFile stateFile;
+
+    //normalized plate -> spot row
+    private transient Map<String, Integer> plateIndex = new ConcurrentHashMap<>();
+    //plateIndex value while claimSpot holds the plate but has not written the row yet
+    private static final int PLATE_RESERVED = -1;
+
+    //free-spot pools (spot type code -> bitmap of free rows, level -> free count)
+    //clearing a row's bit is how a gate claims that spot; a level is one floor of one zone
+    private transient FreeSpotBitmap[] freeByType;
+    private transient AtomicInteger[] freeByLevel;
+
+    //consistent cut for checkpoints: each change that must be saved whole (a park and its ticket,
+    //an exit with its fines and transaction) holds the shared side; a checkpoint holds the
+    //exclusive side only while it copies state, so it never sees half an operation
+    private final transient ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
 
     private ParkingLot() {
-        this.spots = new ArrayList<>();
-        this.transactionHistory = new ArrayList<>();
-        this.observers = new ArrayList<>();
-        this.totalRevenue = 0.0;
-        initializeSpots();
+        this.transactionHistory = new TransactionStore();
+        this.table = new SpotTable(LotTopology.loadOrDefault());
+        rebuildIndexes();
     }
 
     public static ParkingLot getInstance() {
         if (instance == null) {
-            instance = new ParkingLot();
+            synchronized (ParkingLot.class) {
+                if (instance == null) {
+                    instance = new ParkingLot();
+                }
+            }
         }
         return instance;
     }
 
-    //initialize floors and spots
-    private void initializeSpots() {
-        int floors = 4;
-        int spotsPerFloor = 20;
-
-        for (int f = 1; f <= floors; f++) {
-            for (int s = 1; s <= spotsPerFloor; s++) {
-                String id = String.format("F%d-S%02d", f, s);
-                String type = "Regular";
-                double rate = 5.0;
-
-                //FLOOR 1: VIP & HANDICAPPED
-                if (f == 1) {
-                    if (s <= 15) { 
-                        //S01 - S15: VIP Reserved
-                        type = "Reserved"; 
-                        rate = 10.0; 
-                    } else { 
-                        //S16 - S20: Handicapped
-                        type = "Handicapped"; 
-                        rate = 2.0; 
-                    }
-                } 
-                //FLOOR 4: COMPACT
-                else if (f == 4) {
-                    type = "Compact"; 
-                    rate = 2.0;
-                }
-                //FLOORS 2 & 3: STANDARD (Default)
+    //replaces the whole lot with an empty one of the given layout (startup, load tests)
+    public synchronized void setTopology(LotTopology topology) {
+        this.table = new SpotTable(topology);
+        rebuildIndexes();
+    }
+
+    //only meant for startup/restore, before the gates start taking traffic:
+    //copies the occupancy of saved spots onto the matching spots of this lot
+    public synchronized void setSpots(List<ParkingSpot> newSpots) {
+        int unknown = 0;
+        for (ParkingSpot saved : newSpots) {
+            if (saved.isViewOf(table)) continue; // already our own row
+            int row = table.indexOf(saved.getSpotID());
+            if (row < 0) {
+                unknown++;
+                continue;
+            }
+            table.clear(row);
+            Vehicle v = saved.getCurrentVehicle();
+            if (saved.isOccupied() && v != null) table.park(row, v);
+        }
+        if (unknown > 0) {
+            System.out.println("System: " + unknown + " saved spots are not part of the current lot layout and were skipped.");
+        }
+        rebuildIndexes();
+    }
 
-                spots.add(new ParkingSpot(id, type, rate));
+    //rebuild plate index and free pools from the spot table
+    private synchronized void rebuildIndexes() {
+        Map<String, Integer> plates = new ConcurrentHashMap<>();
+        FreeSpotBitmap[] pools = new FreeSpotBitmap[table.getTypeCount()];
+        AtomicInteger[] levels = new AtomicInteger[table.getLevelCount()];
+        for (int t = 0; t < pools.length; t++) {
+            pools[t] = new FreeSpotBitmap(table.size());
+        }
+        for (int l = 0; l < levels.length; l++) {
+            levels[l] = new AtomicInteger();
+        }
+
+        for (int i = 0; i < table.size(); i++) {
+            String plate = table.getPlate(i);
+            if (plate != null) {
+                plates.put(normalizePlate(plate), i);
+            } else {
+                pools[table.getTypeCode(i)].release(i);
+                levels[table.getLevel(i)].incrementAndGet();
             }
         }
+        plateIndex = plates;
+        freeByType = pools;
+        freeByLevel = levels;
+        registerOccupancyGauges();
+    }
+
+    //occupancy.total / occupancy.[<zone>.]floor<N> / occupancy.type.<Type>, each .free and .occupied
+    private void registerOccupancyGauges() {
+        Metrics.removeGauges("occupancy.");
+        Metrics.gauge("occupancy.total.occupied", this::getOccupiedCount);
+        Metrics.gauge("occupancy.total.free", () -> table.size() - getOccupiedCount());
+
+        int[] levelTotals = new int[table.getLevelCount()];
+        int[] typeTotals = new int[table.getTypeCount()];
+        for (int i = 0; i < table.size(); i++) {
+            levelTotals[table.getLevel(i)]++;
+            typeTotals[table.getTypeCode(i)]++;
+        }
+        for (int l = 0; l < levelTotals.length; l++) {
+            int level = l;
+            int total = levelTotals[l];
+            String zone = table.getLevelZone(l);
+            String name = "occupancy." + (LotTopology.NO_ZONE.equals(zone) ? "" : zone.replaceAll("[^A-Za-z0-9]", "") + ".")
+                + "floor" + table.getLevelFloor(l);
+            Metrics.gauge(name + ".free", () -> getFreeCountByLevel(level));
+            Metrics.gauge(name + ".occupied", () -> total - getFreeCountByLevel(level));
+        }
+        for (int t = 0; t < typeTotals.length; t++) {
+            int code = t;
+            int total = typeTotals[t];
+            String name = "occupancy.type." + table.getTypeName(t).replaceAll("[^A-Za-z0-9]", "");
+            Metrics.gauge(name + ".free", () -> freeByType[code].getFreeCount());
+            Metrics.gauge(name + ".occupied", () -> total - freeByType[code].getFreeCount());
+        }
     }
 
-    public void setSpots(List<ParkingSpot> newSpots) {
-        this.spots = newSpots;
+    private void markFree(int row) {
+        if (freeByType[table.getTypeCode(row)].release(row)) {
+            freeByLevel[table.getLevel(row)].incrementAndGet();
+        }
     }
 
+    //true only for the one caller that actually took the row out of the pool
+    private boolean markTaken(int row) {
+        if (freeByType[table.getTypeCode(row)].claim(row)) {
+            freeByLevel[table.getLevel(row)].decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public int getFreeCountByType(String spotType) {
+        int code = table.typeCodeOf(spotType);
+        return code < 0 ? 0 : freeByType[code].getFreeCount();
+    }
+
+    //total - free, summed over the per-level counters (no spot scan)
+    public int getOccupiedCount() {
+        int free = 0;
+        for (AtomicInteger count : freeByLevel) {
+            free += count.get();
+        }
+        return table.size() - free;
+    }
+
+    //see SpotTable.getLevel
+    public int getFreeCountByLevel(int level) {
+        AtomicInteger[] levels = freeByLevel;
+        return level < 0 || level >= levels.length ? 0 : levels[level].get();
+    }
+
+    public int getFreeCountByFloor(String zone, int floor) {
+        return getFreeCountByLevel(table.levelOf(zone, floor));
+    }
+
+    //floor of a single-building lot (zone "-")
+    public int getFreeCountByFloor(int floor) {
+        return getFreeCountByFloor(LotTopology.NO_ZONE, floor);
+    }
+
+    private static String normalizePlate(String plate) {
+        return plate == null ? "" : plate.trim().toUpperCase();
+    }
+
+    //non-blank and at most MAX_PLATE_LENGTH bytes; other plates are turned away at entry
+    public static boolean isValidPlate(String plate) {
+        String p = normalizePlate(plate);
+        return !p.isEmpty() && p.getBytes(StandardCharsets.UTF_8).length <= MAX_PLATE_LENGTH;
+    }
+
+    //once attached, every park/remove also rewrites that spot's slot in the mapped file
+    public void attachStateFile(SpotStateFile file) {
+        this.stateFile = file;
+    }
+
+    //call with table.lockFor(row) held, so concurrent changes of a row reach the slot in order
+    private void persistSlot(int row) {
+        SpotStateFile file = stateFile;
+        if (file != null) file.writeSlot(row, table.view(row));
+    }
+
+    public ParkingSpot getSpotByID(String spotID) {
+        int row = table.indexOf(spotID);
+        return row < 0 ? null : table.view(row);
+    }
+
+    //views onto the spot table, in layout order
     public List<ParkingSpot> getSpots() {
-        if (this.spots == null) this.spots = new ArrayList<>();
-        return this.spots;
+        return table.views();
     }
 
     public List<ParkingSpot> getAllSpots() {
         return getSpots();
     }
 
+    //standalone copies of every spot (views would keep reading the live table)
+    public List<ParkingSpot> copySpots() {
+        List<ParkingSpot> copies = new ArrayList<>(table.size());
+        for (ParkingSpot spot : table.views()) {
+            copies.add(spot.detachedCopy());
+        }
+        return copies;
+    }
+
+    //held (shared) around a multi-step change that a checkpoint must see whole or not at all
+    public Lock updateLock() {
+        return stateLock.readLock();
+    }
+
+    //held (exclusive) by CheckpointManager while it copies lot, history, fines and tickets
+    Lock snapshotLock() {
+        return stateLock.writeLock();
+    }
+
+    public SpotTable getSpotTable() {
+        return table;
+    }
+
     public void addTransaction(Transaction t) {
-        if (transactionHistory == null) transactionHistory = new ArrayList<>();
-        transactionHistory.add(t);
-        notifyObservers();
+        int index = getHistory().append(t);
+        getRevenue().record(t, spotTypeOf(t.getSpotID()));
+        getRollups().recordTransaction(index, t);
+        ParkingEventDispatcher.getInstance().publish(ParkingEvent.transactionRecorded(t));
     }
 
     public double getTotalRevenue() {
-        if (transactionHistory == null) return 0.0;
-        
-        //total up transaction
-        double sum = 0;
-        for (Transaction t : transactionHistory) {
-            sum += t.getAmount();
+        return getRevenue().getTotal();
+    }
+
+    //running totals (overall, per payment method, per spot type, per day)
+    public RevenueAggregates getRevenue() {
+        if (revenue == null) rebuildRevenue();
+        return revenue;
+    }
+
+    //only needed after a load: sealed records come from the history file's footer totals,
+    //so this is one pass over the in-memory tail rather than the whole history
+    private synchronized void rebuildRevenue() {
+        RevenueAggregates fresh = new RevenueAggregates();
+        TransactionStore history = getHistory();
+        synchronized (history) {
+            if (history.getFile() != null) fresh.add(history.getFile().getSummary());
+            for (int i = history.getSealedCount(); i < history.size(); i++) {
+                fresh.record(history.get(i), spotTypeOf(history.getSpotID(i)));
+            }
         }
-        return sum;
+        revenue = fresh;
+        rollups = null;
+    }
+
+    //hourly/daily revenue and occupancy by floor, spot type and method; after a load or a
+    //layout change the revenue cubes are refilled from the recent end of history
+    public Rollups getRollups() {
+        Rollups r = rollups;
+        if (r == null || !r.isBuiltFor(table)) {
+            synchronized (this) {
+                r = rollups;
+                if (r == null || !r.isBuiltFor(table)) {
+                    r = new Rollups(table);
+                    r.backfill(getHistory());
+                    rollups = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    String spotTypeOf(String spotID) {
+        int row = table.indexOf(spotID);
+        return row < 0 ? "Unknown" : table.getType(row);
     }
 
-    public List<Transaction> getHistory() {
-        if (transactionHistory == null) transactionHistory = new ArrayList<>();
+    //columnar store: iterate inside synchronized (history) { ... }
+    public TransactionStore getHistory() {
+        if (transactionHistory == null) {
+            synchronized (this) {
+                if (transactionHistory == null) transactionHistory = new TransactionStore();
+            }
+        }
         return transactionHistory;
     }
     
+    //in-memory history (no backing file)
     public void setHistory(List<Transaction> loadedHistory) {
-        this.transactionHistory = loadedHistory;
+        TransactionStore store = new TransactionStore();
+        for (Transaction t : loadedHistory) {
+            store.add(t);
+        }
+        this.transactionHistory = store;
+        rebuildRevenue();
     }
 
-    public void addRevenue(double amount) {
-        this.totalRevenue += amount;
-        notifyObservers();
+    //history backed by a segment file: only its footer is read now, older records page in on demand
+    public void attachHistoryFile(HistoryFile file) {
+        this.transactionHistory = new TransactionStore(file, this::spotTypeOf);
+        rebuildRevenue();
     }
 
-    public void addObserver(ParkingObserver obs) {
-        if (observers == null) observers = new ArrayList<>();
-        observers.add(obs);
+    //re-adds records a checkpoint holds past position base; those the file already has are skipped
+    public void appendRecoveredHistory(int base, List<Transaction> records) {
+        TransactionStore history = getHistory();
+        synchronized (history) {
+            for (int i = Math.max(0, history.size() - base); i < records.size(); i++) {
+                history.add(records.get(i));
+            }
+        }
+        rebuildRevenue();
     }
 
-    private void notifyObservers() {
-        if (observers == null) return;
-        for (ParkingObserver obs : observers) {
-            obs.onParkingDataChanged();
-        }
+    //observers get typed, batched events asynchronously (see ParkingEventDispatcher)
+    public void addObserver(ParkingObserver obs) {
+        ParkingEventDispatcher.getInstance().addObserver(obs);
     }
 
     //user select spot
     public Ticket parkVehicleAtSpot(String spotID, Vehicle v) {
-        for (ParkingSpot spot : getSpots()) {
-            if (spot.getSpotID().equals(spotID)) {
-                if (!spot.isOccupied() && spot.isSuitableFor(v)) {
-                    spot.park(v);
-                    
-                    Ticket ticket = new Ticket(
-                        v.getLicensePlate(), 
-                        spot.getSpotID(), 
-                        spot.getType(), 
-                        v.getType(), 
-                        v.getEntryTime()
-                    );
-                    
-                    notifyObservers();
-                    return ticket;
-                }
+        long start = System.nanoTime();
+        int row = table.indexOf(spotID);
+        Ticket ticket = null;
+        Lock update = updateLock();
+        update.lock();
+        try {
+            if (row >= 0 && v != null && isValidPlate(v.getLicensePlate()) && FineManager.isVehicleAllowed(table.getType(row), v.getType())) {
+                ticket = claimSpot(row, v);
+                if (ticket != null) announcePark(row, v);
             }
+        } finally {
+            update.unlock();
         }
-        return null;
+        return recordPark(ticket, start);
     }
 
     public Ticket parkVehicle(Vehicle v) {
-        ParkingSpot spot = findAvailableSpot(v);
-        if (spot != null) {
-            spot.park(v);
-            
-            Ticket ticket = new Ticket(
-                v.getLicensePlate(), 
-                spot.getSpotID(), 
-                spot.getType(), 
-                v.getType(), 
-                v.getEntryTime()
-            );
-            
-            notifyObservers();
-            return ticket;
+        long start = System.nanoTime();
+        Ticket ticket;
+        Lock update = updateLock();
+        update.lock();
+        try {
+            ticket = findSpotAndPark(v);
+        } finally {
+            update.unlock();
+        }
+        return recordPark(ticket, start);
+    }
+
+    private static Ticket recordPark(Ticket ticket, long start) {
+        PARK_TIME.recordSince(start);
+        if (ticket != null) PARKED.increment();
+        else PARK_REJECTED.increment();
+        return ticket;
+    }
+
+    private Ticket findSpotAndPark(Vehicle v) {
+        if (v == null || !isValidPlate(v.getLicensePlate()) || isPlateInside(v.getLicensePlate())) return null;
+
+        //another gate may win the spot we picked, so keep trying the next free one
+        int row = findAvailableSpot(v);
+        while (row >= 0) {
+            Ticket ticket = claimSpot(row, v);
+            if (ticket != null) {
+                announcePark(row, v);
+                return ticket;
+            }
+            if (isPlateInside(v.getLicensePlate())) return null;
+            row = findAvailableSpot(v);
         }
         return null;
     }
 
+    //row lock held: the ticket is on record before the plate can be found, so an exit by
+    //plate always finds (and closes) it
+    private Ticket issueTicket(int row, Vehicle v) {
+        ParkingSpot spot = table.view(row);
+        Ticket ticket = new Ticket(
+            v.getLicensePlate(), 
+            spot.getSpotID(), 
+            spot.getType(), 
+            v.getType(), 
+            v.getEntryTime()
+        );
+        TicketRegistry.getInstance().register(ticket);
+        return ticket;
+    }
+
+    private void announcePark(int row, Vehicle v) {
+        getRollups().recordEntry(row, v.getEntryTime());
+        ParkingEventDispatcher.getInstance().publish(ParkingEvent.vehicleParked(table.view(row), v.getLicensePlate()));
+    }
+
+    //atomic claim: the plate is reserved first, so a plate that is already inside (or being
+    //parked at another gate) never touches a row; then only the caller that pulls the row out
+    //of its free pool may park there. Nothing is written to the row until both have succeeded,
+    //so readers never see a park that is rolled back. Returns the stay's ticket, or null.
+    private Ticket claimSpot(int row, Vehicle v) {
+        String plate = normalizePlate(v.getLicensePlate());
+        if (plateIndex.putIfAbsent(plate, PLATE_RESERVED) != null) return null;
+        if (!markTaken(row)) {
+            plateIndex.remove(plate, PLATE_RESERVED);
+            return null;
+        }
+
+        Ticket ticket;
+        synchronized (table.lockFor(row)) {
+            table.park(row, v);
+            ticket = issueTicket(row, v);
+            plateIndex.put(plate, row);
+            persistSlot(row);
+        }
+        return ticket;
+    }
+
+    //parked, or being parked at another gate right now
+    private boolean isPlateInside(String plate) {
+        return plateIndex.containsKey(normalizePlate(plate));
+    }
+
     //Exit
     //Finds a parking spot containing a specific license plate
     public ParkingSpot findSpotByPlate(String plate) {
-        for (ParkingSpot spot : getSpots()) {
-            if (spot.isOccupied() && spot.getCurrentVehicle() != null) {
-                if (spot.getCurrentVehicle().getLicensePlate().equalsIgnoreCase(plate)) {
-                    return spot;
-                }
-            }
-        }
-        return null;
+        Integer row = plateIndex.get(normalizePlate(plate));
+        return row == null || row == PLATE_RESERVED ? null : table.view(row);
     }
 
     public void removeVehicle(String spotID) {
-        for (ParkingSpot s : getSpots()) {
-            if (s.getSpotID().equals(spotID)) {
-                s.removeVehicle();
-                notifyObservers();
-                break;
-            }
+        removeVehicle(spotID, null);
+    }
+
+    //frees the spot only if it still holds expectedPlate (any vehicle when null);
+    //true for the one caller that actually freed it
+    public boolean removeVehicle(String spotID, String expectedPlate) {
+        long start = System.nanoTime();
+        boolean removed;
+        Lock update = updateLock();
+        update.lock();
+        try {
+            removed = freeSpot(spotID, expectedPlate);
+        } finally {
+            update.unlock();
         }
+        EXIT_TIME.recordSince(start);
+        if (removed) EXITED.increment();
+        return removed;
     }
 
-    private ParkingSpot findAvailableSpot(Vehicle v) {
-        for (ParkingSpot spot : getSpots()) {
-            if (!spot.isOccupied() && spot.isSuitableFor(v)) {
-                return spot;
-            }
+    private boolean freeSpot(String spotID, String expectedPlate) {
+        int row = table.indexOf(spotID);
+        if (row < 0) return false;
+
+        //row lock so two exits for the same bay cannot both free it
+        String plate;
+        long entryTime;
+        synchronized (table.lockFor(row)) {
+            plate = table.getPlate(row);
+            if (plate == null) return false;
+            if (expectedPlate != null && !normalizePlate(plate).equals(normalizePlate(expectedPlate))) return false;
+            entryTime = table.getEntryTime(row);
+            //the ticket goes while the plate is still held, so it cannot be a newer stay's
+            TicketRegistry.getInstance().close(plate);
+            plateIndex.remove(normalizePlate(plate), row);
+            table.clear(row);
+            persistSlot(row);
         }
-        return null;
+        markFree(row);
+        getRollups().recordExit(row, entryTime, System.currentTimeMillis());
+        ParkingEventDispatcher.getInstance().publish(ParkingEvent.vehicleExited(table.view(row), plate));
+        return true;
+    }
+
+    //lowest free row among the spot types this vehicle may use
+    //(same spot the old front-to-back scan would have picked)
+    private int findAvailableSpot(Vehicle v) {
+        if (v == null) return -1;
+        int best = -1;
+        for (int t = 0; t < table.getTypeCount(); t++) {
+            if (!FineManager.isVehicleAllowed(table.getTypeName(t), v.getType())) continue;
+            int first = freeByType[t].first();
+            if (first >= 0 && (best == -1 || first < best)) best = first;
+        }
+        return best;
     }
-}
\ No newline at end of file
+}
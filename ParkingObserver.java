@@ -1,3 +1,32 @@
+import java.util.List;
+
 public interface ParkingObserver {
     void onParkingDataChanged();
-}
\ No newline at end of file
+
+    //row-level hooks so views can update one row instead of rebuilding everything
+    default void onSpotChanged(ParkingSpot spot) {}
+
+    default void onTransactionAdded(Transaction t) {}
+
+    default void onFineChanged(String plate) {}
+
+    //called on the dispatcher thread with all events from one coalescing window;
+    //by default replays them through the hooks above and then refreshes once
+    default void onParkingEvents(List<ParkingEvent> events) {
+        for (ParkingEvent e : events) {
+            switch (e.getType()) {
+                case VEHICLE_PARKED:
+                case VEHICLE_EXITED:
+                    onSpotChanged(e.getSpot());
+                    break;
+                case TRANSACTION_RECORDED:
+                    onTransactionAdded(e.getTransaction());
+                    break;
+                case FINE_CHANGED:
+                    onFineChanged(e.getPlate());
+                    break;
+            }
+        }
+        onParkingDataChanged();
+    }
+}
@@ -1,59 +1,123 @@
 
 import java.io.Serializable;
 
+//A spot either holds its own fields (saved files, standalone use) or is a lightweight
+//view onto one row of the lot's SpotTable, in which case every call reads/writes the table.
 public class ParkingSpot implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private String spotID;      
-    private String type;        
-    private boolean isOccupied;
-    private Vehicle currentVehicle;
+    private String spotID;
+    private String type;
+    private volatile boolean isOccupied;
+    private volatile Vehicle currentVehicle;
     private double hourlyRate;
 
+    //set only for views
+    private final transient SpotTable table;
+    private final transient int index;
+
     public ParkingSpot(String spotID, String type, double hourlyRate) {
         this.spotID = spotID;
         this.type = type;
         this.hourlyRate = hourlyRate;
         this.isOccupied = false;
+        this.table = null;
+        this.index = -1;
+    }
+
+    ParkingSpot(SpotTable table, int index) {
+        this.table = table;
+        this.index = index;
     }
 
     public boolean isSuitableFor(Vehicle v) {
         if (v == null) return false;
-        return FineManager.isVehicleAllowed(this.type, v.getType());
+        return FineManager.isVehicleAllowed(getType(), v.getType());
     }
 
     //Parking process
+    //views are short-lived objects, so locking one would exclude nothing: the table
+    //writes the row under its own row lock (lockFor), shared by every view of that row
     public void park(Vehicle v) {
-        this.currentVehicle = v;
-        this.isOccupied = true;
+        if (table != null) {
+            table.park(index, v);
+            return;
+        }
+        synchronized (this) {
+            this.currentVehicle = v;
+            this.isOccupied = true;
+        }
     }
 
     public void removeVehicle() {
-        this.currentVehicle = null;
-        this.isOccupied = false;
+        if (table != null) {
+            table.clear(index);
+            return;
+        }
+        synchronized (this) {
+            this.currentVehicle = null;
+            this.isOccupied = false;
+        }
     }
 
     public boolean isOccupied() {
-        return isOccupied;
+        return table != null ? table.isOccupied(index) : isOccupied;
     }
 
     public String getSpotID() {
+        if (table != null && spotID == null) spotID = table.getSpotID(index);
         return spotID;
     }
 
     public String getType() {
-        return type;
+        return table != null ? table.getType(index) : type;
     }
 
     public double getHourlyRate() {
-        return hourlyRate;
+        return table != null ? table.getHourlyRate(index) : hourlyRate;
     }
 
     public Vehicle getCurrentVehicle() {
-        return currentVehicle;
+        return table != null ? table.getVehicle(index) : currentVehicle;
     }
 
     public Vehicle getVehicle() {
-        return this.currentVehicle;
+        return getCurrentVehicle();
+    }
+
+    //true if this is a view onto the given table
+    boolean isViewOf(SpotTable t) {
+        return table != null && table == t;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    //two views of the same row are the same spot
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (table == null || !(o instanceof ParkingSpot)) return false;
+        ParkingSpot other = (ParkingSpot) o;
+        return other.table == table && other.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return table == null ? System.identityHashCode(this) : System.identityHashCode(table) * 31 + index;
+    }
+
+    //standalone copy of this spot and its current vehicle
+    ParkingSpot detachedCopy() {
+        ParkingSpot copy = new ParkingSpot(getSpotID(), getType(), getHourlyRate());
+        Vehicle v = getCurrentVehicle();
+        if (v != null) copy.park(v);
+        return copy;
+    }
+
+    //views are saved as standalone copies, so save files keep the old format
+    private Object writeReplace() {
+        return table == null ? this : detachedCopy();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,154 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//In-memory copy of the two permit tables so exit checks don't hit SQLite.
+//A Bloom filter in front of each set answers most "no permit" lookups without hashing into the set.
+public class PermitCache {
+    private static final PermitSet handicapped = new PermitSet();
+    private static final PermitSet reserved = new PermitSet();
+    private static volatile boolean loaded = false;
+
+    //load both tables once (call after DatabaseHelper.initializeDatabase)
+    public static void load() {
+        loadFrom(DatabaseHelper.loadHandicappedPlates(), DatabaseHelper.loadReservedPlates());
+    }
+
+    //fills the cache from given sets (load tests run without a database)
+    public static synchronized void loadFrom(Set<String> handicappedPlates, Set<String> reservedPlates) {
+        handicapped.reset(handicappedPlates);
+        reserved.reset(reservedPlates);
+        loaded = true;
+        System.out.println("System: Permit cache loaded (" + handicapped.size() + " handicapped, "
+            + reserved.size() + " reserved).");
+    }
+
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    public static boolean hasHandicappedPermit(String plate) {
+        if (!loaded) return DatabaseHelper.hasHandicappedPermit(plate);
+        return handicapped.contains(normalize(plate));
+    }
+
+    public static boolean hasReservedPermit(String plate) {
+        if (!loaded) return DatabaseHelper.hasReservedPermit(plate);
+        return reserved.contains(normalize(plate));
+    }
+
+    //write-through hooks used by DatabaseHelper after a successful insert
+    static void addHandicapped(String plate) {
+        handicapped.add(normalize(plate));
+    }
+
+    static void addReserved(String plate) {
+        reserved.add(normalize(plate));
+    }
+
+    private static String normalize(String plate) {
+        return plate == null ? "" : plate.toUpperCase().trim();
+    }
+
+    //plate set + Bloom filter, resized when it outgrows the filter.
+    //Both live in one Contents object that readers fetch once; reset and resize publish a new one
+    //with a single volatile write, so a reader never pairs a half-filled set with a stale filter.
+    private static class PermitSet {
+        private static final int MIN_EXPECTED = 1024;
+
+        private volatile Contents contents = new Contents(ConcurrentHashMap.newKeySet());
+
+        synchronized void reset(Set<String> loadedPlates) {
+            Set<String> fresh = ConcurrentHashMap.newKeySet();
+            fresh.addAll(loadedPlates);
+            contents = new Contents(fresh);
+        }
+
+        //writes are rare (one per permit registration), so they share the reset/resize monitor;
+        //a put can then never land in a filter that a concurrent resize is about to drop
+        synchronized void add(String plate) {
+            Contents c = contents;
+            if (c.plates.add(plate)) {
+                c.filter.put(plate);
+                if (c.plates.size() > c.filter.expected) {
+                    contents = new Contents(c.plates);
+                }
+            }
+        }
+
+        boolean contains(String plate) {
+            Contents c = contents;
+            //no false negatives, so a miss here is a definite "no permit"
+            if (!c.filter.mightContain(plate)) return false;
+            return c.plates.contains(plate);
+        }
+
+        int size() {
+            return contents.plates.size();
+        }
+    }
+
+    //a plate set and the filter built over it
+    private static class Contents {
+        final Set<String> plates;
+        final BloomFilter filter;
+
+        Contents(Set<String> plates) {
+            this.plates = plates;
+            this.filter = new BloomFilter(Math.max(PermitSet.MIN_EXPECTED, plates.size() * 2));
+            for (String p : plates) {
+                filter.put(p);
+            }
+        }
+    }
+
+    //~10 bits per expected entry and 7 probes (about 1% false positives)
+    private static class BloomFilter {
+        private static final int PROBES = 7;
+
+        private final int expected;
+        private final int bitCount;
+        private final AtomicLongArray bits;
+
+        BloomFilter(int expected) {
+            this.expected = expected;
+            this.bitCount = expected * 10;
+            this.bits = new AtomicLongArray((bitCount + 63) / 64);
+        }
+
+        void put(String value) {
+            int h1 = value.hashCode();
+            int h2 = mix(h1);
+            for (int i = 0; i < PROBES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bitCount);
+                int word = bit >>> 6;
+                long mask = 1L << (bit & 63);
+                long old;
+                do {
+                    old = bits.get(word);
+                    if ((old & mask) != 0) break;
+                } while (!bits.compareAndSet(word, old, old | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            int h1 = value.hashCode();
+            int h2 = mix(h1);
+            for (int i = 0; i < PROBES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) return false;
+            }
+            return true;
+        }
+
+        //second hash derived from the first (murmur3 finalizer), forced odd
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h | 1;
+        }
+    }
+}
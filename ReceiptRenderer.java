@@ -0,0 +1,46 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+//Text of the official receipt for a settled exit. Used by the exit screen's print dialog
+//and by ReceiptSpooler for the archive. Thread-safe, nothing shared is mutable.
+public class ReceiptRenderer {
+    private static final DateTimeFormatter TIME_FORMAT =
+        DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    public static String official(Settlement settlement) {
+        ExitQuote q = settlement.getQuote();
+        double fines = q.getTotalFines();
+
+        StringBuilder sb = new StringBuilder(640);
+        sb.append("============= OFFICIAL RECEIPT =============\n");
+        if (settlement.getReceiptNo() > 0) {
+            sb.append("Receipt No:   ").append(settlement.getReceiptNo()).append("\n");
+        }
+        sb.append("Plate No:     ").append(q.getPlate()).append("\n");
+        sb.append("Spot ID:      ").append(q.getSpotID()).append("\n");
+        sb.append("Entry Time:   ").append(formatTime(q.getEntryTime())).append("\n");
+        sb.append("Exit Time:    ").append(formatTime(q.getExitTime())).append("\n");
+        sb.append("Duration:     ").append(String.format("%.2f", q.getHoursParked())).append(" hours\n");
+        sb.append("--------------------------------------------\n");
+        sb.append("Fee Breakdown:\n");
+        sb.append("  Rate:       RM ").append(String.format("%.2f", q.getRate())).append(" /hr\n");
+        sb.append("  Parking Fee: RM ").append(String.format("%6.2f", q.getParkingFee())).append("\n");
+
+        if (fines > 0) {
+            sb.append("  Fines Due:   RM ").append(String.format("%6.2f", fines)).append("\n");
+        }
+
+        sb.append("--------------------------------------------\n");
+        sb.append("Total Paid:   RM ").append(String.format("%6.2f", settlement.getAmountPaid())).append("\n");
+        sb.append("Method:       ").append(settlement.getMethod()).append("\n");
+
+        sb.append("Rem. Balance: RM ").append(String.format("%6.2f", settlement.getRemainingBalance())).append("\n");
+        sb.append("============================================");
+        return sb.toString();
+    }
+
+    public static String formatTime(long millis) {
+        return TIME_FORMAT.format(Instant.ofEpochMilli(millis));
+    }
+}
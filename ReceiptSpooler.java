@@ -0,0 +1,473 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+//Archives every settled exit's official receipt.
+//submit() only numbers the receipt and queues it; a background thread renders queued
+//receipts in batches and appends each batch as one gzip member to the current spool file
+//(receipts/receipts-<time>.gz), rotating by size or age. Every receipt gets a line in
+//receipts/index.txt (number, plate, exit time, file, member offset, offset, length), so a
+//receipt is found by number, by transaction (plate + exit time) or by plate without scanning.
+//Receipt numbers are reserved in blocks in receipts/next-receipt.txt (fsynced), so numbers of
+//receipts still queued at a crash are skipped, never reused. The first reservation is made at
+//startup; after that the spooler thread tops it up whenever less than a spare block is left, so
+//handing out a number never waits on the disk. A batch that fails to write is retried; if it keeps failing its receipts are
+//reported as not archived and awaitWritten() returns false.
+//
+//  -Dparking.receipts.dir=receipts  -Dparking.receipts.maxBytes=8388608
+//  -Dparking.receipts.rotateMillis=3600000  -Dparking.receipts.flushMillis=200
+public class ReceiptSpooler {
+    private static final int MAX_BATCH = 512;
+    private static final byte[] SEPARATOR = "\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final String INDEX_FILE = "index.txt";
+    private static final String HIGH_WATER_FILE = "next-receipt.txt";
+    private static final long RESERVE_BLOCK = 1000;
+    private static final int WRITE_ATTEMPTS = 3;
+    private static final long RETRY_MILLIS = 1000;
+    private static final DateTimeFormatter FILE_TIME =
+        DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneId.systemDefault());
+
+    private static volatile ReceiptSpooler instance;
+
+    //where a receipt sits in the archive
+    public static class Entry {
+        final long receiptNo;
+        final String plate;
+        final long exitTime;
+        final String file;
+        final long memberOffset;
+        final int offset;
+        final int length;
+
+        Entry(long receiptNo, String plate, long exitTime, String file, long memberOffset, int offset, int length) {
+            this.receiptNo = receiptNo;
+            this.plate = plate;
+            this.exitTime = exitTime;
+            this.file = file;
+            this.memberOffset = memberOffset;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public long getReceiptNo() { return receiptNo; }
+        public String getPlate() { return plate; }
+        public long getExitTime() { return exitTime; }
+        public String getFile() { return file; }
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    private final long rotateMillis;
+    private final long flushMillis;
+
+    private final LinkedBlockingQueue<Settlement> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Object progress = new Object();  // notified after every batch, written or failed
+
+    //numbers below reservedUpTo are on record in next-receipt.txt; only the constructor and
+    //the writer thread move reservedUpTo
+    private final AtomicLong nextReceiptNo = new AtomicLong(1);
+    private volatile long reservedUpTo = 1;
+
+    //indexes
+    private final Map<Long, Entry> byNumber = new ConcurrentHashMap<>();
+    private final Map<String, Long> byTransaction = new ConcurrentHashMap<>();
+    private final Map<String, List<Long>> byPlate = new ConcurrentHashMap<>();
+
+    //writer-thread state
+    private Thread writer;
+    private volatile boolean closed;
+    private File currentFile;
+    private long currentOpenedAt;
+    private BufferedWriter indexWriter;
+    private boolean indexTorn;  // a failed index write may have left half a line
+    private long lastReserveFailure;
+
+    ReceiptSpooler(File dir, long maxBytes, long rotateMillis, long flushMillis) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.rotateMillis = rotateMillis;
+        this.flushMillis = flushMillis;
+        loadIndex();
+        loadHighWater();
+        try {
+            reserveAhead();
+        } catch (IOException e) {
+            //the writer thread retries before it archives anything
+            System.err.println("Error reserving receipt numbers: " + e.getMessage());
+        }
+    }
+
+    public static ReceiptSpooler getInstance() {
+        if (instance == null) {
+            synchronized (ReceiptSpooler.class) {
+                if (instance == null) {
+                    instance = new ReceiptSpooler(
+                        new File(System.getProperty("parking.receipts.dir", "receipts")),
+                        Long.getLong("parking.receipts.maxBytes", 8L << 20),
+                        Long.getLong("parking.receipts.rotateMillis", 3_600_000L),
+                        Long.getLong("parking.receipts.flushMillis", 200L));
+                }
+            }
+        }
+        return instance;
+    }
+
+    //number for the next receipt (put into the Settlement before submitting it); never touches
+    //the disk. If the reservation has run out (the mark could not be written for a whole block)
+    //the number is still handed out, and recorded before any receipt carrying it is archived.
+    public long nextReceiptNo() {
+        long no = nextReceiptNo.getAndIncrement();
+        if (no == reservedUpTo) {
+            System.err.println("Error: receipt numbers from " + no + " are not reserved on disk yet.");
+        }
+        return no;
+    }
+
+    //queues the receipt for archiving; never blocks on disk
+    public void submit(Settlement settlement) {
+        if (closed) {
+            System.err.println("Receipt " + settlement.getReceiptNo() + " not archived: spooler is closed.");
+            return;
+        }
+        if (settlement.getReceiptNo() <= 0) {
+            System.err.println("Receipt for " + settlement.getTransaction().getPlate() + " not archived: it has no receipt number.");
+            return;
+        }
+        ensureWriter();
+        submitted.incrementAndGet();
+        queue.offer(settlement);
+    }
+
+    // ---- lookups (receipts still in the queue are not visible yet) ----
+
+    public Entry findByNumber(long receiptNo) {
+        return byNumber.get(receiptNo);
+    }
+
+    public Entry findByTransaction(String plate, long exitTime) {
+        Long no = byTransaction.get(transactionKey(plate, exitTime));
+        return no == null ? null : byNumber.get(no);
+    }
+
+    public List<Entry> findByPlate(String plate) {
+        List<Long> numbers = byPlate.get(normalizePlate(plate));
+        if (numbers == null) return Collections.emptyList();
+        List<Entry> entries = new ArrayList<>(numbers.size());
+        for (Long no : numbers) {
+            entries.add(byNumber.get(no));
+        }
+        return entries;
+    }
+
+    //receipt text read back from its spool file
+    public String read(Entry entry) {
+        try (InputStream file = new FileInputStream(new File(dir, entry.file))) {
+            skipFully(file, entry.memberOffset);
+            try (InputStream in = new GZIPInputStream(file)) {
+                skipFully(in, entry.offset);
+                byte[] bytes = in.readNBytes(entry.length);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading receipt " + entry.receiptNo + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    //waits until everything submitted so far has been handled; false on timeout or if any
+    //receipt failed to archive in the meantime
+    public boolean awaitWritten(long timeoutMillis) throws InterruptedException {
+        long target = submitted.get();
+        long failedBefore = failed.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (progress) {
+            while (written.get() + failed.get() < target) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) return false;
+                progress.wait(left);
+            }
+        }
+        return failed.get() == failedBefore;
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    //drains the queue and stops the writer (shutdown)
+    public void close() {
+        closed = true;
+        Thread t;
+        synchronized (this) {
+            t = writer;
+        }
+        if (t == null) return;
+        try {
+            t.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("System: Receipt spool closed (" + written.get() + " receipts archived this session"
+            + (failed.get() > 0 ? ", " + failed.get() + " failed" : "") + ").");
+    }
+
+    private synchronized void ensureWriter() {
+        if (writer != null) return;
+        writer = new Thread(this::runWriter, "receipt-spooler");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void runWriter() {
+        List<Settlement> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                topUpReservation();
+                Settlement first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                //let a burst collect so it lands in one gzip member
+                if (queue.size() < MAX_BATCH && !closed) Thread.sleep(flushMillis);
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                if (writeWithRetry(batch)) {
+                    written.addAndGet(batch.size());
+                } else {
+                    failed.addAndGet(batch.size());
+                    for (Settlement s : batch) {
+                        System.err.println("Receipt " + s.getReceiptNo() + " not archived.");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+                synchronized (progress) {
+                    progress.notifyAll();
+                }
+            }
+        }
+        try {
+            if (indexWriter != null) indexWriter.close();
+        } catch (IOException e) {
+            System.err.println("Error closing receipt index: " + e.getMessage());
+        }
+    }
+
+    //an IOException is retried in a fresh spool file; a rendering bug is not
+    private boolean writeWithRetry(List<Settlement> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeBatch(batch);
+                return true;
+            } catch (IOException e) {
+                System.err.println("Error writing receipts (attempt " + attempt + " of " + WRITE_ATTEMPTS + "): " + e.getMessage());
+                currentFile = null;
+                dropIndexWriter();
+                if (attempt == WRITE_ATTEMPTS) return false;
+                Thread.sleep(RETRY_MILLIS);
+            } catch (RuntimeException e) {
+                System.err.println("Error writing receipts: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private void writeBatch(List<Settlement> batch) throws IOException {
+        //a receipt is only archived once its number is on record
+        long highest = 0;
+        for (Settlement s : batch) {
+            highest = Math.max(highest, s.getReceiptNo());
+        }
+        if (highest >= reservedUpTo) reserveAhead();
+        rotateIfNeeded();
+        long memberOffset = currentFile.length();
+        List<Entry> entries = new ArrayList<>(batch.size());
+
+        try (FileOutputStream file = new FileOutputStream(currentFile, true);
+             GZIPOutputStream gzip = new GZIPOutputStream(file, 64 * 1024)) {
+            int offset = 0;
+            for (Settlement s : batch) {
+                byte[] text = ReceiptRenderer.official(s).getBytes(StandardCharsets.UTF_8);
+                gzip.write(text);
+                gzip.write(SEPARATOR);
+                Transaction t = s.getTransaction();
+                entries.add(new Entry(s.getReceiptNo(), t.getPlate(), t.getExitTimeMillis(),
+                    currentFile.getName(), memberOffset, offset, text.length));
+                offset += text.length + SEPARATOR.length;
+            }
+            gzip.finish();
+        }
+
+        BufferedWriter index = indexWriter();
+        for (Entry e : entries) {
+            index.write(e.receiptNo + "\t" + e.plate + "\t" + e.exitTime + "\t" + e.file + "\t"
+                + e.memberOffset + "\t" + e.offset + "\t" + e.length);
+            index.newLine();
+            addToIndex(e);
+        }
+        index.flush();
+    }
+
+    private void rotateIfNeeded() throws IOException {
+        long now = System.currentTimeMillis();
+        if (currentFile != null && currentFile.length() < maxBytes && now - currentOpenedAt < rotateMillis) return;
+
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        File next = new File(dir, "receipts-" + FILE_TIME.format(Instant.ofEpochMilli(now)) + ".gz");
+        for (int n = 1; next.exists(); n++) {
+            next = new File(dir, "receipts-" + FILE_TIME.format(Instant.ofEpochMilli(now)) + "-" + n + ".gz");
+        }
+        currentFile = next;
+        currentOpenedAt = now;
+    }
+
+    private BufferedWriter indexWriter() throws IOException {
+        if (indexWriter == null) {
+            if (!dir.exists() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+            indexWriter = Files.newBufferedWriter(new File(dir, INDEX_FILE).toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (indexTorn) {
+                //end any half-written line so the next entry starts on its own line
+                indexWriter.newLine();
+                indexTorn = false;
+            }
+        }
+        return indexWriter;
+    }
+
+    private void dropIndexWriter() {
+        if (indexWriter == null) return;
+        try {
+            indexWriter.close();
+        } catch (IOException e) {
+            //already failing; the retry reopens it
+        }
+        indexWriter = null;
+        indexTorn = true;
+    }
+
+    //next number to hand out after a restart: max(index, reserved high-water mark)
+    private void loadHighWater() {
+        long next = nextReceiptNo.get();
+        File file = new File(dir, HIGH_WATER_FILE);
+        if (file.exists()) {
+            try {
+                next = Math.max(next, Long.parseLong(Files.readString(file.toPath(), StandardCharsets.UTF_8).trim()));
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Error reading receipt high-water mark: " + e.getMessage());
+            }
+        }
+        nextReceiptNo.set(next);
+        reservedUpTo = next;
+    }
+
+    //writer thread: keeps at least a spare block of numbers reserved ahead of the ones handed out
+    private void topUpReservation() {
+        if (reservedUpTo - nextReceiptNo.get() >= RESERVE_BLOCK) return;
+        long now = System.currentTimeMillis();
+        if (now - lastReserveFailure < RETRY_MILLIS) return;
+        try {
+            reserveAhead();
+        } catch (IOException e) {
+            lastReserveFailure = now;
+            System.err.println("Error reserving receipt numbers: " + e.getMessage());
+        }
+    }
+
+    //records two blocks past the next number (the current one plus a spare)
+    private void reserveAhead() throws IOException {
+        long upTo = nextReceiptNo.get() + 2 * RESERVE_BLOCK;
+        writeHighWater(upTo);
+        reservedUpTo = upTo;
+    }
+
+    //write to a temp file, force it, then rename over the old mark
+    private void writeHighWater(long upTo) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+        File tmp = new File(dir, HIGH_WATER_FILE + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write((upTo + "\n").getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        try {
+            Files.move(tmp.toPath(), new File(dir, HIGH_WATER_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), new File(dir, HIGH_WATER_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void loadIndex() {
+        File file = new File(dir, INDEX_FILE);
+        if (!file.exists()) return;
+        long max = 0;
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                String[] f = line.split("\t");
+                if (f.length != 7) continue; // torn last line after a crash
+                Entry e = new Entry(Long.parseLong(f[0]), f[1], Long.parseLong(f[2]), f[3],
+                    Long.parseLong(f[4]), Integer.parseInt(f[5]), Integer.parseInt(f[6]));
+                addToIndex(e);
+                max = Math.max(max, e.receiptNo);
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Error loading receipt index: " + e.getMessage());
+        }
+        nextReceiptNo.set(max + 1);
+        System.out.println("System: Receipt index loaded (" + byNumber.size() + " receipts).");
+    }
+
+    //a batch retried after a partly written index may list a receipt twice
+    private void addToIndex(Entry e) {
+        if (byNumber.put(e.receiptNo, e) != null) {
+            byTransaction.put(transactionKey(e.plate, e.exitTime), e.receiptNo);
+            return;
+        }
+        byTransaction.put(transactionKey(e.plate, e.exitTime), e.receiptNo);
+        byPlate.computeIfAbsent(normalizePlate(e.plate), k -> new CopyOnWriteArrayList<>()).add(e.receiptNo);
+    }
+
+    private static String transactionKey(String plate, long exitTime) {
+        return normalizePlate(plate) + "@" + exitTime;
+    }
+
+    private static String normalizePlate(String plate) {
+        return plate == null ? "" : plate.trim().toUpperCase();
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new IOException("unexpected end of receipt file");
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
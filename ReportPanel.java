@@ -1,7 +1,7 @@
 import java.awt.*;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 
@@ -10,10 +10,24 @@ public class ReportPanel extends JPanel implements ParkingObserver {
     private JLabel labelOccupancyRate;
     private JProgressBar progressOccupancy;
     private JTable tableVehicles;
-    private DefaultTableModel vehicleModel;
+    private KeyedRowTableModel vehicleModel;
     private JTable tableFines;
-    private DefaultTableModel fineModel;
-    private DefaultTableModel historyModel;
+    private KeyedRowTableModel fineModel;
+    private HistoryTableModel historyModel;
+    private JComboBox<String> comboDimension;
+    private JComboBox<String> comboGranularity;
+    private JComboBox<String> comboRange;
+    private DefaultTableModel breakdownModel;
+    private JPanel breakdownPanel;
+    private final SimpleDateFormat sdf = new SimpleDateFormat("dd/MM HH:mm:ss");
+    private final SimpleDateFormat hourFormat = new SimpleDateFormat("dd/MM HH:00");
+    private final SimpleDateFormat dayFormat = new SimpleDateFormat("dd/MM/yyyy");
+
+    //new transactions only mark the breakdown stale; it is rebuilt at most once a second,
+    //and only while its tab is on screen (or when it comes back into view)
+    private static final int BREAKDOWN_REFRESH_MILLIS = 1000;
+    private boolean breakdownStale;
+    private final Timer breakdownTimer = new Timer(BREAKDOWN_REFRESH_MILLIS, e -> refreshBreakdownIfShown());
 
     public ReportPanel() {
         //1. Register as an Observer to receive real-time updates
@@ -25,10 +39,12 @@ public class ReportPanel extends JPanel implements ParkingObserver {
         JTabbedPane tabs = new JTabbedPane();
         tabs.addTab("Live Lot Status", createLiveStatusPanel());
         tabs.addTab("Financial Reports", createFinancialPanel());
+        tabs.addTab("Revenue Breakdown", createBreakdownPanel());
 
         add(tabs, BorderLayout.CENTER);
 
-        //Initial Data Load
+        //Initial Data Load (full table fill once, row-level updates afterwards)
+        loadTables();
         refreshData();
     }
 
@@ -51,7 +67,7 @@ public class ReportPanel extends JPanel implements ParkingObserver {
 
         //Vehicle List Table (Center)
         String[] columns = {"Spot ID", "License Plate", "Type", "Entry Time"};
-        vehicleModel = new DefaultTableModel(columns, 0);
+        vehicleModel = new KeyedRowTableModel(columns);
         tableVehicles = new JTable(vehicleModel);
         
         JScrollPane scroll = new JScrollPane(tableVehicles);
@@ -74,22 +90,62 @@ public class ReportPanel extends JPanel implements ParkingObserver {
         revenuePanel.setBorder(BorderFactory.createTitledBorder("Revenue Report"));
         panel.add(revenuePanel, BorderLayout.NORTH);
 
-        //2. Transaction History Table 
-        String[] historyCols = {"Time", "Plate", "Spot", "Method", "Amount (RM)"};
-        historyModel = new DefaultTableModel(historyCols, 0);
+        //2. Transaction History Table (virtual: filtering and sorting run in the store)
+        historyModel = new HistoryTableModel("dd/MM HH:mm:ss");
         JTable lableHistory = new JTable(historyModel);
+        lableHistory.getTableHeader().setReorderingAllowed(false);
+        lableHistory.getTableHeader().addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                int column = lableHistory.columnAtPoint(e.getPoint());
+                if (column >= 0) historyModel.sortByColumn(lableHistory.convertColumnIndexToModel(column));
+            }
+        });
         JScrollPane historyScroll = new JScrollPane(lableHistory);
-        historyScroll.setBorder(BorderFactory.createTitledBorder("Transaction History (Past & Present)"));
+
+        JPanel historyFilter = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JTextField fieldPlate = new JTextField(10);
+        JTextField fieldSpot = new JTextField(8);
+        JComboBox<String> comboMethod = new JComboBox<>(new String[]{"All", "Cash", "Debit/Credit Card"});
+        JComboBox<String> comboPeriod = new JComboBox<>(new String[]{"All Time", "Today", "Last 7 Days", "Last 30 Days"});
+        JButton btnFilter = new JButton("Apply");
+        historyFilter.add(new JLabel("Plate:"));
+        historyFilter.add(fieldPlate);
+        historyFilter.add(new JLabel("Spot:"));
+        historyFilter.add(fieldSpot);
+        historyFilter.add(comboMethod);
+        historyFilter.add(comboPeriod);
+        historyFilter.add(btnFilter);
+        Runnable applyFilter = () -> {
+            long[] days = {0, 1, 7, 30};
+            int period = comboPeriod.getSelectedIndex();
+            long from = Long.MIN_VALUE;
+            if (period == 1) {
+                from = java.time.LocalDate.now().atStartOfDay(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } else if (period > 1) {
+                from = System.currentTimeMillis() - days[period] * 86_400_000L;
+            }
+            String method = comboMethod.getSelectedIndex() == 0 ? null : (String) comboMethod.getSelectedItem();
+            historyModel.setFilter(new TransactionStore.Filter(fieldPlate.getText(), fieldSpot.getText(), method, from, Long.MAX_VALUE));
+        };
+        btnFilter.addActionListener(e -> applyFilter.run());
+        fieldPlate.addActionListener(e -> applyFilter.run());
+        fieldSpot.addActionListener(e -> applyFilter.run());
+
+        JPanel historyPanel = new JPanel(new BorderLayout());
+        historyPanel.add(historyFilter, BorderLayout.NORTH);
+        historyPanel.add(historyScroll, BorderLayout.CENTER);
+        historyPanel.setBorder(BorderFactory.createTitledBorder("Transaction History (Past & Present) - click a column to sort"));
 
         //3. Fine Report Table
         String[] fineCols = {"License Plate", "Outstanding Amount (RM)", "Status"};
-        fineModel = new DefaultTableModel(fineCols, 0); //
+        fineModel = new KeyedRowTableModel(fineCols);
         tableFines = new JTable(fineModel);
         JScrollPane fineScroll = new JScrollPane(tableFines);
         fineScroll.setBorder(BorderFactory.createTitledBorder("Outstanding Fines Report"));
 
         //4. Combine them (Split Panel)
-        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, historyScroll, fineScroll);
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, historyPanel, fineScroll);
         splitPane.setDividerLocation(300); // Give history half the space
         
         panel.add(splitPane, BorderLayout.CENTER);
@@ -97,6 +153,87 @@ public class ReportPanel extends JPanel implements ParkingObserver {
         return panel;
     }
 
+    //SUB-PANEL: REVENUE BREAKDOWN (read from the rollups, no history scan)
+    private JPanel createBreakdownPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        breakdownPanel = panel;
+        breakdownTimer.setRepeats(false);
+        panel.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & java.awt.event.HierarchyEvent.SHOWING_CHANGED) != 0) refreshBreakdownIfShown();
+        });
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        comboDimension = new JComboBox<>(new String[]{"Floor", "Spot Type", "Payment Method"});
+        comboGranularity = new JComboBox<>(new String[]{"Hourly", "Daily"});
+        comboRange = new JComboBox<>(new String[]{"Last 24 Hours", "Last 7 Days", "Last 30 Days", "Last 365 Days"});
+        comboGranularity.setSelectedIndex(1);
+        comboRange.setSelectedIndex(2);
+        controls.add(new JLabel("Revenue by:"));
+        controls.add(comboDimension);
+        controls.add(comboGranularity);
+        controls.add(comboRange);
+        comboDimension.addActionListener(e -> refreshBreakdown());
+        comboGranularity.addActionListener(e -> refreshBreakdown());
+        comboRange.addActionListener(e -> refreshBreakdown());
+        panel.add(controls, BorderLayout.NORTH);
+
+        breakdownModel = new DefaultTableModel() {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JScrollPane scroll = new JScrollPane(new JTable(breakdownModel));
+        scroll.setBorder(BorderFactory.createTitledBorder("Revenue (RM)"));
+        panel.add(scroll, BorderLayout.CENTER);
+
+        refreshBreakdown();
+        return panel;
+    }
+
+    private void refreshBreakdownIfShown() {
+        if (breakdownStale && breakdownPanel.isShowing()) refreshBreakdown();
+    }
+
+    //one row per bucket (newest first), one column per floor / type / method that earned anything
+    private void refreshBreakdown() {
+        if (breakdownModel == null) return;
+        breakdownStale = false;
+        Rollups.Dimension dimension = Rollups.Dimension.values()[comboDimension.getSelectedIndex()];
+        Rollups.Granularity granularity = comboGranularity.getSelectedIndex() == 0 ? Rollups.Granularity.HOUR : Rollups.Granularity.DAY;
+        long[] days = {1, 7, 30, 365};
+        long to = System.currentTimeMillis() + 1;
+        long from = to - days[comboRange.getSelectedIndex()] * 86_400_000L;
+
+        Rollups.Series series = ParkingLot.getInstance().getRollups().revenue(granularity, dimension, from, to);
+        long[] totals = series.totals();
+        List<Integer> keys = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        columns.add(granularity == Rollups.Granularity.HOUR ? "Hour" : "Day");
+        for (int k = 0; k < totals.length; k++) {
+            if (totals[k] != 0) {
+                keys.add(k);
+                columns.add(series.getKeys()[k]);
+            }
+        }
+        columns.add("Total");
+
+        SimpleDateFormat bucketFormat = granularity == Rollups.Granularity.HOUR ? hourFormat : dayFormat;
+        long[] bucketTotals = series.bucketTotals();
+        Object[][] rows = new Object[series.getBucketCount()][];
+        for (int b = 0; b < rows.length; b++) {
+            int bucket = rows.length - 1 - b;
+            Object[] row = new Object[columns.size()];
+            row[0] = bucketFormat.format(new java.util.Date(series.getBucketStart(bucket)));
+            for (int c = 0; c < keys.size(); c++) {
+                row[c + 1] = String.format("%.2f", series.get(bucket, keys.get(c)) / 100.0);
+            }
+            row[columns.size() - 1] = String.format("%.2f", bucketTotals[bucket] / 100.0);
+            rows[b] = row;
+        }
+        breakdownModel.setDataVector(rows, columns.toArray());
+    }
+
     //OBSERVER TRIGGER
     @Override
     public void onParkingDataChanged() {
@@ -104,75 +241,84 @@ public class ReportPanel extends JPanel implements ParkingObserver {
         SwingUtilities.invokeLater(this::refreshData);
     }
 
-    //DATA REFRESH LOGIC
+    //one EDT hop per batch of events
+    @Override
+    public void onParkingEvents(List<ParkingEvent> events) {
+        SwingUtilities.invokeLater(() -> {
+            boolean newTransactions = false;
+            for (ParkingEvent e : events) {
+                switch (e.getType()) {
+                    case VEHICLE_PARKED:
+                    case VEHICLE_EXITED:
+                        applySpot(e.getSpot());
+                        break;
+                    case TRANSACTION_RECORDED:
+                        newTransactions = true;
+                        break;
+                    case FINE_CHANGED:
+                        applyFine(e.getPlate());
+                        break;
+                }
+            }
+            if (newTransactions) {
+                historyModel.syncRowCount();
+                breakdownStale = true;
+                if (!breakdownTimer.isRunning()) breakdownTimer.start();
+            }
+            refreshData();
+        });
+    }
+
+    //SUMMARY REFRESH LOGIC (labels only, read from running counters)
     private void refreshData() {
         ParkingLot lot = ParkingLot.getInstance();
-        List<ParkingSpot> spots = lot.getAllSpots();
 
         //1. Update Occupancy Stats
-        long occupiedCount = spots.stream().filter(ParkingSpot::isOccupied).count();
-        int totalSpots = spots.size();
-        int percent = totalSpots > 0 ? (int)((occupiedCount * 100) / totalSpots) : 0;
+        int occupiedCount = lot.getOccupiedCount();
+        int totalSpots = lot.getSpots().size();
+        int percent = totalSpots > 0 ? (occupiedCount * 100) / totalSpots : 0;
 
         labelOccupancyRate.setText(String.format("Occupancy: %d / %d (%d%%)", occupiedCount, totalSpots, percent));
         progressOccupancy.setValue(percent);
 
         //2. Update Revenue Display
-        //Note: This now pulls the calculated total from your Transaction History list
         labelTotalRevenue.setText(String.format("Total Revenue Collected: RM %.2f", lot.getTotalRevenue()));
+    }
 
-        //3. Update Live Vehicle Table (Currently Parked Cars)
-        vehicleModel.setRowCount(0); 
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM HH:mm:ss"); 
-        
-        for (ParkingSpot s : spots) {
-            if (s.isOccupied() && s.getCurrentVehicle() != null) {
-                Vehicle v = s.getCurrentVehicle();
-                vehicleModel.addRow(new Object[]{
-                    s.getSpotID(),
-                    v.getLicensePlate(),
-                    v.getType(),
-                    sdf.format(new java.util.Date(v.getEntryTime()))
-                });
-            }
+    //one full fill of the live vehicle and fine tables at startup
+    private void loadTables() {
+        for (ParkingSpot s : ParkingLot.getInstance().getAllSpots()) {
+            applySpot(s);
         }
+        FineManager.getLedger().forEach((plate, cents) -> applyFine(plate));
+    }
 
-        //4. Update Transaction History Table (Past & Present Customers)
-        if (historyModel != null) {
-            historyModel.setRowCount(0); // Clear old data
-            List<Transaction> history = lot.getHistory();
-            
-            if (history != null) {
-                //Loop backwards so the NEWEST transaction appears at the TOP
-                for (int i = history.size() - 1; i >= 0; i--) {
-                    Transaction t = history.get(i);
-                    historyModel.addRow(new Object[]{
-                        sdf.format(t.getExitTime()),
-                        t.getPlate(),
-                        t.getSpotID(),
-                        t.getMethod(),
-                        String.format("%.2f", t.getAmount())
-                    });
-                }
-            }
+    //Live Vehicle Table (Currently Parked Cars): one row per occupied spot
+    private void applySpot(ParkingSpot s) {
+        Vehicle v = s.getCurrentVehicle();
+        if (s.isOccupied() && v != null) {
+            vehicleModel.put(s.getSpotID(), new Object[]{
+                s.getSpotID(),
+                v.getLicensePlate(),
+                v.getType(),
+                sdf.format(new java.util.Date(v.getEntryTime()))
+            });
+        } else {
+            vehicleModel.remove(s.getSpotID());
         }
-
-        //5. Update Fine Report
-        updateFineReport();
     }
 
-    private void updateFineReport() {
-        fineModel.setRowCount(0); //Clear table
-        
-        //Fetch Real Data from FineManager
-        Map<String, Double> realFines = FineManager.getAllOutstandingFines();
-
-        for (Map.Entry<String, Double> entry : realFines.entrySet()) {
-            fineModel.addRow(new Object[]{
-                entry.getKey(),
-                String.format("%.2f", entry.getValue()),
+    //Fine Report: one row per plate that still owes money
+    private void applyFine(String plate) {
+        double owed = FineManager.getUnpaidFines(plate);
+        if (owed > 0) {
+            fineModel.put(plate, new Object[]{
+                plate,
+                String.format("%.2f", owed),
                 "UNPAID"
             });
+        } else {
+            fineModel.remove(plate);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+
+//Running revenue totals, updated once per transaction instead of re-summing history
+public class RevenueAggregates {
+    private final DoubleAdder total = new DoubleAdder();
+    private final Map<String, DoubleAdder> byMethod = new ConcurrentHashMap<>();
+    private final Map<String, DoubleAdder> bySpotType = new ConcurrentHashMap<>();
+    private final Map<LocalDate, DoubleAdder> byDay = new ConcurrentHashMap<>();
+
+    public void record(Transaction t, String spotType) {
+        double amount = t.getAmount();
+        total.add(amount);
+        byMethod.computeIfAbsent(keyOf(t.getMethod()), k -> new DoubleAdder()).add(amount);
+        bySpotType.computeIfAbsent(keyOf(spotType), k -> new DoubleAdder()).add(amount);
+        byDay.computeIfAbsent(dayOf(t.getExitTimeMillis()), k -> new DoubleAdder()).add(amount);
+    }
+
+    //folds in the stored totals of a history file (records that are no longer in memory)
+    public void add(HistoryFile.Summary summary) {
+        total.add(summary.getCents() / 100.0);
+        for (Map.Entry<String, Long> e : summary.getByMethod().entrySet()) {
+            byMethod.computeIfAbsent(e.getKey(), k -> new DoubleAdder()).add(e.getValue() / 100.0);
+        }
+        for (Map.Entry<String, Long> e : summary.getBySpotType().entrySet()) {
+            bySpotType.computeIfAbsent(e.getKey(), k -> new DoubleAdder()).add(e.getValue() / 100.0);
+        }
+        for (Map.Entry<Long, Long> e : summary.getByEpochDay().entrySet()) {
+            byDay.computeIfAbsent(LocalDate.ofEpochDay(e.getKey()), k -> new DoubleAdder()).add(e.getValue() / 100.0);
+        }
+    }
+
+    public double getTotal() {
+        return total.sum();
+    }
+
+    public double getByMethod(String method) {
+        DoubleAdder sum = byMethod.get(keyOf(method));
+        return sum == null ? 0.0 : sum.sum();
+    }
+
+    public double getBySpotType(String spotType) {
+        DoubleAdder sum = bySpotType.get(keyOf(spotType));
+        return sum == null ? 0.0 : sum.sum();
+    }
+
+    public double getByDay(LocalDate day) {
+        DoubleAdder sum = byDay.get(day);
+        return sum == null ? 0.0 : sum.sum();
+    }
+
+    //snapshots for report screens (small maps: a handful of methods/types, one entry per day)
+    public Map<String, Double> getAllByMethod() {
+        return snapshot(byMethod);
+    }
+
+    public Map<String, Double> getAllBySpotType() {
+        return snapshot(bySpotType);
+    }
+
+    public Map<LocalDate, Double> getAllByDay() {
+        return snapshot(byDay);
+    }
+
+    private static <K> Map<K, Double> snapshot(Map<K, DoubleAdder> source) {
+        Map<K, Double> copy = new TreeMap<>();
+        for (Map.Entry<K, DoubleAdder> e : source.entrySet()) {
+            copy.put(e.getKey(), e.getValue().sum());
+        }
+        return copy;
+    }
+
+    private static String keyOf(String value) {
+        return value == null ? "Unknown" : value;
+    }
+
+    static LocalDate dayOf(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
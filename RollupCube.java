@@ -0,0 +1,95 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Ring of time buckets, each a row of counters (one per key, e.g. per floor).
+//Bucket b lives in slot b % length; a slot is reused once its bucket falls out of
+//the window, so memory is bounded by length x width and only touched buckets are allocated.
+//Adds are lock-free (CAS to install a row, then a striped LongAdder per cell, since every
+//gate hits the same few cells of the current bucket); values older than the window
+//relative to the newest bucket seen are dropped.
+public class RollupCube {
+    private final int width;
+    private final AtomicReferenceArray<Row> ring;
+    private final AtomicLong newest = new AtomicLong(Long.MIN_VALUE);
+
+    private static final class Row {
+        final long bucket;
+        final LongAdder[] cells;
+
+        Row(long bucket, int width) {
+            this.bucket = bucket;
+            this.cells = new LongAdder[width];
+            for (int k = 0; k < width; k++) cells[k] = new LongAdder();
+        }
+    }
+
+    public RollupCube(int length, int width) {
+        this.width = width;
+        this.ring = new AtomicReferenceArray<>(length);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getLength() {
+        return ring.length();
+    }
+
+    //false if the bucket is already outside the window
+    public boolean add(long bucket, int key, long delta) {
+        long top = newest.get();
+        while (bucket > top && !newest.compareAndSet(top, bucket)) {
+            top = newest.get();
+        }
+        if (bucket <= Math.max(top, bucket) - ring.length()) return false;
+
+        int slot = (int) Math.floorMod(bucket, (long) ring.length());
+        Row row = ring.get(slot);
+        while (row == null || row.bucket != bucket) {
+            if (row != null && row.bucket > bucket) return false; // slot already moved on
+            Row fresh = new Row(bucket, width);
+            if (ring.compareAndSet(slot, row, fresh)) {
+                row = fresh;
+                break;
+            }
+            row = ring.get(slot);
+        }
+        row.cells[key].add(delta);
+        return true;
+    }
+
+    public long get(long bucket, int key) {
+        Row row = rowFor(bucket);
+        return row != null ? row.cells[key].sum() : 0;
+    }
+
+    //adds every key of the bucket into out[0..width)
+    public void addTo(long bucket, long[] out) {
+        Row row = rowFor(bucket);
+        if (row == null) return;
+        for (int k = 0; k < width; k++) {
+            out[k] += row.cells[k].sum();
+        }
+    }
+
+    //the bucket's row, or null if it was never written or has left the window
+    //(a slot keeps its old row until a newer bucket claims it)
+    private Row rowFor(long bucket) {
+        if (bucket < getOldestBucket()) return null;
+        Row row = ring.get((int) Math.floorMod(bucket, (long) ring.length()));
+        return row != null && row.bucket == bucket ? row : null;
+    }
+
+    //newest bucket seen so far (Long.MIN_VALUE when empty)
+    public long getNewestBucket() {
+        return newest.get();
+    }
+
+    //oldest bucket still inside the window
+    public long getOldestBucket() {
+        long top = newest.get();
+        return top == Long.MIN_VALUE ? Long.MIN_VALUE : top - ring.length() + 1;
+    }
+}
@@ -0,0 +1,298 @@
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Revenue and occupancy rolled up by hour and by day, per floor, spot type and payment method.
+//Updated as each transaction, entry and exit happens (no history rescans), so a query like
+//"revenue per floor per hour over the last 30 days" only adds up a few hundred small rows.
+//
+//Revenue is kept in cents. Occupancy is kept as entries and as occupied spot-milliseconds;
+//a stay is spread over the buckets it covers when the vehicle exits.
+//
+//  -Dparking.rollup.hourlyDays=45  -Dparking.rollup.days=400
+public class Rollups {
+    public enum Dimension { FLOOR, SPOT_TYPE, METHOD }
+    public enum Granularity { HOUR, DAY }
+
+    public static final long HOUR_MILLIS = 3_600_000L;
+    private static final int MAX_METHODS = 8;
+    private static final String UNKNOWN = "Unknown";
+    private static final String OTHER = "Other";
+
+    //one query result: values[bucket][key]
+    public static class Series {
+        final Granularity granularity;
+        final long firstBucket;
+        final String[] keys;
+        final long[][] values;
+
+        Series(Granularity granularity, long firstBucket, String[] keys, long[][] values) {
+            this.granularity = granularity;
+            this.firstBucket = firstBucket;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        public int getBucketCount() { return values.length; }
+        public String[] getKeys() { return keys; }
+        public long get(int bucket, int key) { return values[bucket][key]; }
+
+        public long getBucketStart(int bucket) {
+            return Rollups.bucketStart(granularity, firstBucket + bucket);
+        }
+
+        //sum over all buckets, per key
+        public long[] totals() {
+            long[] totals = new long[keys.length];
+            for (long[] row : values) {
+                for (int k = 0; k < row.length; k++) totals[k] += row[k];
+            }
+            return totals;
+        }
+
+        //sum over all keys, per bucket
+        public long[] bucketTotals() {
+            long[] totals = new long[values.length];
+            for (int b = 0; b < values.length; b++) {
+                for (long v : values[b]) totals[b] += v;
+            }
+            return totals;
+        }
+    }
+
+    private final SpotTable table;
+    private final int[] rowFloor;        // row -> floor key (the row's level)
+    private final String[] floorKeys;    // floor key -> label ("Floor 1" / "B2 Floor 1", ..., Unknown)
+    private final String[] typeKeys;     // type code -> name, last = Unknown
+    private final String[] methodKeys = new String[MAX_METHODS];
+    private final Map<String, Integer> methodIndex = new ConcurrentHashMap<>();
+
+    //[granularity][dimension]
+    private final RollupCube[][] revenue = new RollupCube[2][3];
+    private final RollupCube[][] entries = new RollupCube[2][2];
+    private final RollupCube[][] occupiedMillis = new RollupCube[2][2];
+
+    //the last local day looked up, as [start, end, epochDay], so most lookups skip the time-zone math
+    private volatile long[] currentDay = {0, 0, 0};
+
+    //history rows [0, backfilledTo) were replayed by backfill(); see recordTransaction(int, Transaction)
+    private volatile int backfilledTo;
+
+    public Rollups(SpotTable table) {
+        this(table, Integer.getInteger("parking.rollup.hourlyDays", 45), Integer.getInteger("parking.rollup.days", 400));
+    }
+
+    public Rollups(SpotTable table, int hourlyDays, int days) {
+        this.table = table;
+
+        //one key per level, so the same floor number in two zones stays apart
+        floorKeys = new String[table.getLevelCount() + 1];
+        for (int l = 0; l < table.getLevelCount(); l++) floorKeys[l] = table.getLevelName(l);
+        floorKeys[table.getLevelCount()] = UNKNOWN;
+        rowFloor = new int[table.size()];
+        for (int i = 0; i < rowFloor.length; i++) rowFloor[i] = table.getLevel(i);
+
+        typeKeys = new String[table.getTypeCount() + 1];
+        for (int t = 0; t < table.getTypeCount(); t++) typeKeys[t] = table.getTypeName(t);
+        typeKeys[table.getTypeCount()] = UNKNOWN;
+
+        int[] lengths = {hourlyDays * 24, days};
+        for (int g = 0; g < 2; g++) {
+            revenue[g][Dimension.FLOOR.ordinal()] = new RollupCube(lengths[g], floorKeys.length);
+            revenue[g][Dimension.SPOT_TYPE.ordinal()] = new RollupCube(lengths[g], typeKeys.length);
+            revenue[g][Dimension.METHOD.ordinal()] = new RollupCube(lengths[g], MAX_METHODS);
+            for (int d = 0; d < 2; d++) {
+                int width = d == Dimension.FLOOR.ordinal() ? floorKeys.length : typeKeys.length;
+                entries[g][d] = new RollupCube(lengths[g], width);
+                occupiedMillis[g][d] = new RollupCube(lengths[g], width);
+            }
+        }
+    }
+
+    public boolean isBuiltFor(SpotTable t) {
+        return table == t;
+    }
+
+    // ---- updates ----
+
+    //for a transaction just appended to history at position index; rows the backfill
+    //already replayed are skipped so a rebuild racing an exit does not count it twice
+    public void recordTransaction(int index, Transaction t) {
+        if (index < backfilledTo) return;
+        recordTransaction(t);
+    }
+
+    public void recordTransaction(Transaction t) {
+        recordTransaction(table.indexOf(t.getSpotID()), t.getExitTimeMillis(),
+            FineLedger.toCents(t.getAmount()), t.getMethod());
+    }
+
+    public void recordTransaction(int row, long exitTime, long cents, String method) {
+        int floor = floorKey(row);
+        int type = typeKey(row);
+        int m = methodKey(method);
+        long hour = Math.floorDiv(exitTime, HOUR_MILLIS);
+        long day = dayOf(exitTime);
+        add(revenue, Dimension.FLOOR, hour, day, floor, cents);
+        add(revenue, Dimension.SPOT_TYPE, hour, day, type, cents);
+        add(revenue, Dimension.METHOD, hour, day, m, cents);
+    }
+
+    public void recordEntry(int row, long entryTime) {
+        long hour = Math.floorDiv(entryTime, HOUR_MILLIS);
+        long day = dayOf(entryTime);
+        add(entries, Dimension.FLOOR, hour, day, floorKey(row), 1);
+        add(entries, Dimension.SPOT_TYPE, hour, day, typeKey(row), 1);
+    }
+
+    //spreads [entryTime, exitTime) over the hour and day buckets it covers (within the windows)
+    public void recordExit(int row, long entryTime, long exitTime) {
+        if (exitTime <= entryTime) return;
+        int floor = floorKey(row);
+        int type = typeKey(row);
+
+        RollupCube[] hourly = occupiedMillis[Granularity.HOUR.ordinal()];
+        long from = Math.max(entryTime, (Math.floorDiv(exitTime, HOUR_MILLIS) - hourly[0].getLength() + 1) * HOUR_MILLIS);
+        for (long start = from; start < exitTime; ) {
+            long hour = Math.floorDiv(start, HOUR_MILLIS);
+            long end = Math.min(exitTime, (hour + 1) * HOUR_MILLIS);
+            hourly[Dimension.FLOOR.ordinal()].add(hour, floor, end - start);
+            hourly[Dimension.SPOT_TYPE.ordinal()].add(hour, type, end - start);
+            start = end;
+        }
+
+        RollupCube[] daily = occupiedMillis[Granularity.DAY.ordinal()];
+        long[] today = currentDay;
+        if (entryTime >= today[0] && exitTime <= today[1]) {
+            //the usual case: the whole stay falls inside the cached day
+            daily[Dimension.FLOOR.ordinal()].add(today[2], floor, exitTime - entryTime);
+            daily[Dimension.SPOT_TYPE.ordinal()].add(today[2], type, exitTime - entryTime);
+            return;
+        }
+        long firstDay = Math.max(dayOf(entryTime), dayOf(exitTime) - daily[0].getLength() + 1);
+        for (long day = firstDay, start = Math.max(entryTime, bucketStart(Granularity.DAY, firstDay)); start < exitTime; day++) {
+            long end = Math.min(exitTime, bucketStart(Granularity.DAY, day + 1));
+            daily[Dimension.FLOOR.ordinal()].add(day, floor, end - start);
+            daily[Dimension.SPOT_TYPE.ordinal()].add(day, type, end - start);
+            start = end;
+        }
+    }
+
+    //replays recorded history up to its current size, newest first, until it is older than the
+    //day window. The store lock is not held across the replay (old segments page in without it),
+    //so exits carry on meanwhile; anything they append lies past the captured size.
+    public void backfill(TransactionStore history) {
+        long cutoff = bucketStart(Granularity.DAY, dayOf(System.currentTimeMillis()) - revenue[1][0].getLength() + 1);
+        int end = history.size();
+        for (int i = end - 1; i >= 0; i--) {
+            long exitTime = history.getExitTimeMillis(i);
+            if (exitTime < cutoff) break;
+            recordTransaction(table.indexOf(history.getSpotID(i)), exitTime,
+                history.getAmountCents(i), history.getMethod(i));
+        }
+        backfilledTo = end;
+    }
+
+    // ---- queries (from inclusive, to exclusive, epoch millis) ----
+
+    public Series revenue(Granularity g, Dimension d, long from, long to) {
+        return query(revenue[g.ordinal()][d.ordinal()], g, keysOf(d), from, to);
+    }
+
+    public Series entries(Granularity g, Dimension d, long from, long to) {
+        return query(entries[g.ordinal()][occupancyIndex(d)], g, keysOf(d), from, to);
+    }
+
+    public Series occupiedMillis(Granularity g, Dimension d, long from, long to) {
+        return query(occupiedMillis[g.ordinal()][occupancyIndex(d)], g, keysOf(d), from, to);
+    }
+
+    //total revenue in cents over the range, per key of the dimension
+    public long[] revenueTotals(Granularity g, Dimension d, long from, long to) {
+        return revenue(g, d, from, to).totals();
+    }
+
+    public String[] keysOf(Dimension d) {
+        switch (d) {
+            case FLOOR: return floorKeys.clone();
+            case SPOT_TYPE: return typeKeys.clone();
+            default:
+                String[] keys = new String[MAX_METHODS];
+                for (int m = 0; m < MAX_METHODS; m++) keys[m] = methodKeys[m] == null ? "" : methodKeys[m];
+                return keys;
+        }
+    }
+
+    private Series query(RollupCube cube, Granularity g, String[] keys, long from, long to) {
+        long first = bucketOf(g, from);
+        long last = bucketOf(g, to - 1);
+        //clamp to what the cube still holds
+        long oldest = cube.getOldestBucket();
+        long newest = cube.getNewestBucket();
+        if (newest == Long.MIN_VALUE || to <= from) return new Series(g, first, keys, new long[0][]);
+        first = Math.max(first, oldest);
+        last = Math.min(last, newest);
+        int count = (int) Math.max(0, last - first + 1);
+        long[][] values = new long[count][cube.getWidth()];
+        for (int b = 0; b < count; b++) {
+            cube.addTo(first + b, values[b]);
+        }
+        return new Series(g, first, keys, values);
+    }
+
+    private static int occupancyIndex(Dimension d) {
+        if (d == Dimension.METHOD) throw new IllegalArgumentException("occupancy is kept per floor and spot type only");
+        return d.ordinal();
+    }
+
+    private static void add(RollupCube[][] cubes, Dimension d, long hour, long day, int key, long delta) {
+        cubes[Granularity.HOUR.ordinal()][d.ordinal()].add(hour, key, delta);
+        cubes[Granularity.DAY.ordinal()][d.ordinal()].add(day, key, delta);
+    }
+
+    private int floorKey(int row) {
+        return row >= 0 && row < rowFloor.length ? rowFloor[row] : floorKeys.length - 1;
+    }
+
+    private int typeKey(int row) {
+        return row >= 0 && row < table.size() ? table.getTypeCode(row) : typeKeys.length - 1;
+    }
+
+    //methods get keys in order of first use; the last key collects any beyond that
+    private int methodKey(String method) {
+        String name = method == null ? UNKNOWN : method;
+        Integer key = methodIndex.get(name);
+        if (key != null) return key;
+        synchronized (methodIndex) {
+            key = methodIndex.get(name);
+            if (key != null) return key;
+            int next = methodIndex.size();
+            if (next >= MAX_METHODS - 1) {
+                methodKeys[MAX_METHODS - 1] = OTHER;
+                return MAX_METHODS - 1;
+            }
+            methodKeys[next] = name;
+            methodIndex.put(name, next);
+            return next;
+        }
+    }
+
+    private long bucketOf(Granularity g, long millis) {
+        return g == Granularity.HOUR ? Math.floorDiv(millis, HOUR_MILLIS) : dayOf(millis);
+    }
+
+    //local epoch day of a timestamp
+    private long dayOf(long millis) {
+        long[] day = currentDay;
+        if (millis >= day[0] && millis < day[1]) return day[2];
+        long epochDay = RevenueAggregates.dayOf(millis).toEpochDay();
+        currentDay = new long[]{bucketStart(Granularity.DAY, epochDay), bucketStart(Granularity.DAY, epochDay + 1), epochDay};
+        return epochDay;
+    }
+
+    static long bucketStart(Granularity g, long bucket) {
+        if (g == Granularity.HOUR) return bucket * HOUR_MILLIS;
+        return LocalDate.ofEpochDay(bucket).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -1,10 +1,16 @@
 
 
 public class SUV extends Vehicle {
+    private static final long serialVersionUID = -2420921685961762419L;
+
     public SUV(String licensePlate) {
         super(licensePlate);
     }
 
+    public SUV(String licensePlate, long entryTime) {
+        super(licensePlate, entryTime);
+    }
+
     @Override
     public String getType() {
         return "SUV";
@@ -0,0 +1,35 @@
+//Outcome of ParkingEngine.settle: what was paid and what was left on the account
+public class Settlement {
+    private final ExitQuote quote;
+    private final String method;
+    private final boolean finesDeferred;
+    private final double amountPaid;
+    private final Transaction transaction;
+    private final long receiptNo;
+
+    public Settlement(ExitQuote quote, String method, boolean finesDeferred, double amountPaid, Transaction transaction) {
+        this(quote, method, finesDeferred, amountPaid, transaction, 0L);
+    }
+
+    public Settlement(ExitQuote quote, String method, boolean finesDeferred, double amountPaid, Transaction transaction,
+                      long receiptNo) {
+        this.quote = quote;
+        this.method = method;
+        this.finesDeferred = finesDeferred;
+        this.amountPaid = amountPaid;
+        this.transaction = transaction;
+        this.receiptNo = receiptNo;
+    }
+
+    public ExitQuote getQuote() { return quote; }
+    public String getMethod() { return method; }
+    public boolean isFinesDeferred() { return finesDeferred; }
+    public double getAmountPaid() { return amountPaid; }
+    public Transaction getTransaction() { return transaction; }
+    public long getReceiptNo() { return receiptNo; }
+
+    //fines still owed after this payment
+    public double getRemainingBalance() {
+        return finesDeferred ? quote.getTotalFines() : 0.0;
+    }
+}
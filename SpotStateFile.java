@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+//Memory-mapped occupancy file: one fixed-size slot per spot, written on every park/remove.
+//Layout: 16 byte header (magic, version, slot count, spot ID width, plate width) followed by
+//one slot per spot. The two widths are sized when the file is laid out: spot IDs from the
+//longest ID in the layout, plates from ParkingLot.MAX_PLATE_LENGTH (the lot turns longer plates
+//away) or the longest plate already parked. Values never get cut to fit; a slot that cannot
+//hold its value is refused. Files written before the widths were stored read as 16 and 20.
+//At startup the file is rewritten from the recovered checkpoint (see StateRecovery); its own
+//occupancy is only read when there is no checkpoint to restore from.
+public class SpotStateFile {
+    public static final String DEFAULT_FILE = "spot_state.map";
+
+    private static final int MAGIC = 0x50534C54; // "PSLT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    //slot layout: flags, then the plate, entry time and spot ID fields
+    private static final int OFF_OCCUPIED = 0;
+    private static final int OFF_VEHICLE_TYPE = 1;
+    private static final int OFF_PLATE_LEN = 2;
+    private static final int OFF_ID_LEN = 3;
+    private static final int OFF_PLATE = 4;
+    private static final int DEFAULT_SPOT_ID_WIDTH = 16;
+    private static final int DEFAULT_PLATE_WIDTH = 20;
+    private static final int MAX_WIDTH = Byte.MAX_VALUE; // lengths are stored in one byte
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int spotIdWidth;
+    private final int plateWidth;
+    private final int offEntryTime;
+    private final int offSpotID;
+    private final int recordSize;
+    private final boolean forceOnWrite;
+    private final boolean hadState;
+
+    private SpotStateFile(FileChannel channel, MappedByteBuffer buffer, int slotCount, int spotIdWidth, int plateWidth,
+                          boolean forceOnWrite, boolean hadState) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.spotIdWidth = spotIdWidth;
+        this.plateWidth = plateWidth;
+        this.offEntryTime = align8(OFF_PLATE + plateWidth);
+        this.offSpotID = offEntryTime + 8;
+        this.recordSize = recordSize(spotIdWidth, plateWidth);
+        this.forceOnWrite = forceOnWrite;
+        this.hadState = hadState;
+    }
+
+    //maps the file for the given spot layout; a missing or mismatched file is re-laid out from the spots
+    public static SpotStateFile open(String fileName, List<ParkingSpot> spots, boolean forceOnWrite) throws IOException {
+        Path path = Paths.get(fileName);
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        //keep the existing file if it was laid out for exactly these spots and its fields are wide enough
+        int spotIdWidth = DEFAULT_SPOT_ID_WIDTH;
+        int plateWidth = Math.max(DEFAULT_PLATE_WIDTH, ParkingLot.MAX_PLATE_LENGTH);
+        for (ParkingSpot spot : spots) {
+            spotIdWidth = Math.max(spotIdWidth, utf8(spot.getSpotID()).length);
+            Vehicle v = spot.getCurrentVehicle();
+            if (v != null) plateWidth = Math.max(plateWidth, utf8(v.getLicensePlate()).length);
+        }
+        if (spotIdWidth > MAX_WIDTH || plateWidth > MAX_WIDTH) {
+            channel.close();
+            throw new IOException("spot IDs or plates longer than " + MAX_WIDTH + " bytes");
+        }
+        if (channel.size() >= HEADER_SIZE) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            int storedId = header.getShort(12) == 0 ? DEFAULT_SPOT_ID_WIDTH : header.getShort(12);
+            int storedPlate = header.getShort(14) == 0 ? DEFAULT_PLATE_WIDTH : header.getShort(14);
+            if (header.getInt(0) == MAGIC && storedId >= spotIdWidth && storedPlate >= plateWidth
+                && storedId <= MAX_WIDTH && storedPlate <= MAX_WIDTH
+                && channel.size() == HEADER_SIZE + (long) spots.size() * recordSize(storedId, storedPlate)) {
+                SpotStateFile existing = map(channel, spots.size(), storedId, storedPlate, forceOnWrite, true);
+                if (existing.layoutMatches(spots)) return existing;
+            }
+        }
+
+        //new file or different lot layout: start from the current in-memory state
+        SpotStateFile file = map(channel, spots.size(), spotIdWidth, plateWidth, forceOnWrite, false);
+        channel.truncate(file.fileSize());
+        MappedByteBuffer buffer = file.buffer;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, spots.size());
+        buffer.putShort(12, (short) spotIdWidth);
+        buffer.putShort(14, (short) plateWidth);
+        for (int i = 0; i < spots.size(); i++) {
+            file.writeSlot(i, spots.get(i));
+        }
+        buffer.force();
+        return file;
+    }
+
+    private static SpotStateFile map(FileChannel channel, int slots, int spotIdWidth, int plateWidth,
+                                     boolean forceOnWrite, boolean hadState) throws IOException {
+        long size = HEADER_SIZE + (long) slots * recordSize(spotIdWidth, plateWidth);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new SpotStateFile(channel, buffer, slots, spotIdWidth, plateWidth, forceOnWrite, hadState);
+    }
+
+    private long fileSize() {
+        return HEADER_SIZE + (long) slotCount * recordSize;
+    }
+
+    private static int recordSize(int spotIdWidth, int plateWidth) {
+        return align8(align8(OFF_PLATE + plateWidth) + 8 + spotIdWidth);
+    }
+
+    private static int align8(int n) {
+        return (n + 7) & ~7;
+    }
+
+    //true when the file already held occupancy for this exact layout
+    public boolean hadState() {
+        return hadState;
+    }
+
+    private boolean layoutMatches(List<ParkingSpot> spots) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != spots.size()) {
+            return false;
+        }
+        for (int i = 0; i < spots.size(); i++) {
+            if (!spots.get(i).getSpotID().equals(readSpotID(i))) return false;
+        }
+        return true;
+    }
+
+    //applies the mapped occupancy to the lot's spots (no Java deserialization involved)
+    public void restoreInto(ParkingLot lot) {
+        List<ParkingSpot> spots = lot.getSpots();
+        int restored = 0;
+        for (int i = 0; i < slotCount && i < spots.size(); i++) {
+            ParkingSpot spot = spots.get(i);
+            int base = HEADER_SIZE + i * recordSize;
+
+            if (buffer.get(base + OFF_OCCUPIED) == 1) {
+                String plate = readString(base + OFF_PLATE, buffer.get(base + OFF_PLATE_LEN));
+                long entryTime = buffer.getLong(base + offEntryTime);
+                Vehicle v = SpotTable.vehicleFor(buffer.get(base + OFF_VEHICLE_TYPE), plate, entryTime);
+                if (v != null) {
+                    spot.park(v);
+                    restored++;
+                    continue;
+                }
+            }
+            spot.removeVehicle();
+        }
+        lot.setSpots(spots); // rebuild indexes and free pools
+        System.out.println("System: Spot state restored from mapped file (" + restored + " vehicles).");
+    }
+
+    //rewrites every slot from the given spots and forces the file (recovery brings it back to
+    //the state restored from a checkpoint)
+    public void writeAll(List<ParkingSpot> spots) {
+        for (int i = 0; i < slotCount && i < spots.size(); i++) {
+            writeSlot(i, spots.get(i));
+        }
+        buffer.force();
+    }
+
+    //writes a single slot; the occupied flag goes last so a torn write reads as empty.
+    //Slots are independent, but two writes of the same slot must not overlap: the lot calls
+    //this under the row's lock (SpotTable.lockFor) so the slot ends up with the latest state.
+    //A value wider than its field is refused (IllegalArgumentException) and the slot left empty.
+    public void writeSlot(int position, ParkingSpot spot) {
+        if (position < 0 || position >= slotCount) return;
+        int base = HEADER_SIZE + position * recordSize;
+
+        buffer.put(base + OFF_OCCUPIED, (byte) 0);
+
+        byte[] id = fit(spot.getSpotID(), spotIdWidth, "spot ID");
+        buffer.put(base + OFF_ID_LEN, (byte) id.length);
+        putBytes(base + offSpotID, id, spotIdWidth);
+
+        Vehicle v = spot.getCurrentVehicle();
+        if (spot.isOccupied() && v != null) {
+            byte[] plate = fit(v.getLicensePlate(), plateWidth, "plate");
+            buffer.put(base + OFF_PLATE_LEN, (byte) plate.length);
+            putBytes(base + OFF_PLATE, plate, plateWidth);
+            buffer.put(base + OFF_VEHICLE_TYPE, SpotTable.vehicleCode(v.getType()));
+            buffer.putLong(base + offEntryTime, v.getEntryTime());
+            buffer.put(base + OFF_OCCUPIED, (byte) 1);
+        } else {
+            buffer.put(base + OFF_PLATE_LEN, (byte) 0);
+            buffer.put(base + OFF_VEHICLE_TYPE, (byte) 0);
+            buffer.putLong(base + offEntryTime, 0L);
+        }
+
+        if (forceOnWrite) {
+            buffer.force(base, recordSize);
+        }
+    }
+
+    public void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing spot state file: " + e.getMessage());
+        }
+    }
+
+    private String readSpotID(int position) {
+        int base = HEADER_SIZE + position * recordSize;
+        return readString(base + offSpotID, buffer.get(base + OFF_ID_LEN));
+    }
+
+    private String readString(int offset, int length) {
+        byte[] bytes = new byte[Math.max(0, length)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void putBytes(int offset, byte[] bytes, int width) {
+        for (int i = 0; i < width; i++) {
+            buffer.put(offset + i, i < bytes.length ? bytes[i] : 0);
+        }
+    }
+
+    private static byte[] fit(String value, int width, String what) {
+        byte[] bytes = utf8(value);
+        if (bytes.length > width) {
+            throw new IllegalArgumentException(what + " " + value + " is longer than " + width + " bytes");
+        }
+        return bytes;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
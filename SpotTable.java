@@ -0,0 +1,392 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//All spots of the lot as parallel primitive arrays (one row per spot, in topology order).
+//Per spot: type code, rate index, occupied bit, plate handle, vehicle type and entry time,
+//about 15 bytes, so 200k bays fit in ~3 MB. Spot IDs are derived from the topology blocks
+//instead of being stored, and ParkingSpot objects are handed out as views onto a row.
+//
+//Row fields are only written under the row's stripe lock; the occupied bit can be read without it.
+public class SpotTable {
+    private static final int STRIPES = 256;
+
+    //block layout (from LotTopology)
+    private final int[] blockStart;
+    private final int[] blockFloor;
+    private final int[] blockFirstNumber;
+    private final String[] blockPrefix;
+    private final int[] blockWidth;
+    private final int[] blockLevel;
+    private final Map<String, Map<Integer, List<Integer>>> blocksByZoneFloor = new HashMap<>();
+
+    //levels: one per distinct zone/floor pair, sorted by zone then floor. Floor numbers repeat
+    //across zones (B1-F2 and B2-F2 are different places), so per-floor counts are kept per level.
+    private final String[] levelZone;
+    private final int[] levelFloor;
+
+    //lookup tables
+    private final String[] typeNames;
+    private final double[] rates;
+
+    //one row per spot
+    private final int size;
+    private final byte[] typeCode;
+    private final byte[] rateIndex;
+    private final AtomicLongArray occupied;
+    private final int[] plateHandle;
+    private final byte[] vehicleType;
+    private final long[] entryTime;
+
+    //plate strings live here once, rows keep a handle (0 = none); handles are recycled
+    private volatile String[] plates = new String[64];
+    private int[] freeHandles = new int[64];
+    private int freeHandleCount;
+    private int nextHandle = 1;
+
+    private final Object[] locks = new Object[STRIPES];
+    private final List<ParkingSpot> views = new SpotViews();
+
+    public SpotTable(LotTopology topology) {
+        List<LotTopology.Block> blocks = topology.getBlocks();
+        this.size = topology.getSpotCount();
+        this.blockStart = new int[blocks.size()];
+        this.blockFloor = new int[blocks.size()];
+        this.blockFirstNumber = new int[blocks.size()];
+        this.blockPrefix = new String[blocks.size()];
+        this.blockWidth = new int[blocks.size()];
+        this.blockLevel = new int[blocks.size()];
+
+        this.typeCode = new byte[size];
+        this.rateIndex = new byte[size];
+        this.occupied = new AtomicLongArray((size + 63) >>> 6);
+        this.plateHandle = new int[size];
+        this.vehicleType = new byte[size];
+        this.entryTime = new long[size];
+
+        //spots per zone/floor, to size the number field (S01 for 20 a floor, S001 for 100)
+        Map<String, Integer> perFloor = new HashMap<>();
+        Map<String, TreeSet<Integer>> zoneFloors = new TreeMap<>();
+        for (LotTopology.Block b : blocks) {
+            perFloor.merge(b.zone + "/" + b.floor, b.count, Integer::sum);
+            zoneFloors.computeIfAbsent(b.zone, k -> new TreeSet<>()).add(b.floor);
+        }
+
+        Map<String, Integer> levelIndex = new HashMap<>();
+        List<String> zones = new ArrayList<>();
+        List<Integer> floors = new ArrayList<>();
+        for (Map.Entry<String, TreeSet<Integer>> e : zoneFloors.entrySet()) {
+            for (int floor : e.getValue()) {
+                levelIndex.put(e.getKey() + "/" + floor, zones.size());
+                zones.add(e.getKey());
+                floors.add(floor);
+            }
+        }
+        this.levelZone = zones.toArray(new String[0]);
+        this.levelFloor = new int[floors.size()];
+        for (int i = 0; i < levelFloor.length; i++) {
+            levelFloor[i] = floors.get(i);
+        }
+
+        List<String> types = new ArrayList<>();
+        List<Double> rateList = new ArrayList<>();
+        Map<String, Integer> nextNumber = new HashMap<>();
+        int row = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            LotTopology.Block b = blocks.get(i);
+            String key = b.zone + "/" + b.floor;
+            blockStart[i] = row;
+            blockFloor[i] = b.floor;
+            blockFirstNumber[i] = nextNumber.getOrDefault(key, 1);
+            blockPrefix[i] = (LotTopology.NO_ZONE.equals(b.zone) ? "" : b.zone + "-") + "F" + b.floor + "-S";
+            blockWidth[i] = Math.max(2, String.valueOf(perFloor.get(key)).length());
+            blockLevel[i] = levelIndex.get(key);
+            nextNumber.put(key, blockFirstNumber[i] + b.count);
+            blocksByZoneFloor.computeIfAbsent(b.zone, k -> new HashMap<>())
+                .computeIfAbsent(b.floor, k -> new ArrayList<>()).add(i);
+
+            if (!types.contains(b.type)) types.add(b.type);
+            if (!rateList.contains(b.rate)) rateList.add(b.rate);
+            byte t = (byte) types.indexOf(b.type);
+            byte r = (byte) rateList.indexOf(b.rate);
+            for (int n = 0; n < b.count; n++, row++) {
+                typeCode[row] = t;
+                rateIndex[row] = r;
+            }
+        }
+        if (types.size() > Byte.MAX_VALUE || rateList.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("too many distinct spot types or rates");
+        }
+
+        this.typeNames = types.toArray(new String[0]);
+        this.rates = new double[rateList.size()];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = rateList.get(i);
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //ParkingSpot views over every row (created on access, nothing cached per spot)
+    public List<ParkingSpot> views() {
+        return views;
+    }
+
+    public ParkingSpot view(int index) {
+        return new ParkingSpot(this, index);
+    }
+
+    //lock guarding a row's plate/vehicle/entry fields
+    public Object lockFor(int index) {
+        return locks[index & (STRIPES - 1)];
+    }
+
+    // ---- layout ----
+
+    public String getSpotID(int index) {
+        int b = blockOf(index);
+        String number = String.valueOf(blockFirstNumber[b] + index - blockStart[b]);
+        StringBuilder id = new StringBuilder(blockPrefix[b]);
+        for (int pad = blockWidth[b] - number.length(); pad > 0; pad--) {
+            id.append('0');
+        }
+        return id.append(number).toString();
+    }
+
+    //"F2-S07" / "B2-F3-S007" -> row, or -1 if there is no such spot
+    public int indexOf(String spotID) {
+        if (spotID == null) return -1;
+        int s = spotID.lastIndexOf("-S");
+        int f = s < 0 ? -1 : spotID.lastIndexOf('F', s);
+        if (f < 0 || (f > 0 && spotID.charAt(f - 1) != '-')) return -1;
+
+        String zone = f == 0 ? LotTopology.NO_ZONE : spotID.substring(0, f - 1);
+        int floor, number;
+        try {
+            floor = Integer.parseInt(spotID.substring(f + 1, s));
+            number = Integer.parseInt(spotID.substring(s + 2));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        Map<Integer, List<Integer>> floors = blocksByZoneFloor.get(zone);
+        List<Integer> candidates = floors == null ? null : floors.get(floor);
+        if (candidates == null) return -1;
+        for (int b : candidates) {
+            int offset = number - blockFirstNumber[b];
+            int count = (b + 1 < blockStart.length ? blockStart[b + 1] : size) - blockStart[b];
+            if (offset >= 0 && offset < count) return blockStart[b] + offset;
+        }
+        return -1;
+    }
+
+    public int getFloor(int index) {
+        return blockFloor[blockOf(index)];
+    }
+
+    //zone/floor the spot is on, as an index into the lot's levels
+    public int getLevel(int index) {
+        return blockLevel[blockOf(index)];
+    }
+
+    public int getLevelCount() {
+        return levelFloor.length;
+    }
+
+    public String getLevelZone(int level) {
+        return levelZone[level];
+    }
+
+    public int getLevelFloor(int level) {
+        return levelFloor[level];
+    }
+
+    //"Floor 3" in a single-building lot, "B2 Floor 3" otherwise
+    public String getLevelName(int level) {
+        String floor = "Floor " + levelFloor[level];
+        return LotTopology.NO_ZONE.equals(levelZone[level]) ? floor : levelZone[level] + " " + floor;
+    }
+
+    //level index for a zone/floor pair, -1 if the lot has no such level
+    public int levelOf(String zone, int floor) {
+        for (int i = 0; i < levelFloor.length; i++) {
+            if (levelFloor[i] == floor && levelZone[i].equals(zone)) return i;
+        }
+        return -1;
+    }
+
+    public String getType(int index) {
+        return typeNames[typeCode[index]];
+    }
+
+    public int getTypeCode(int index) {
+        return typeCode[index];
+    }
+
+    //code for a spot type name, -1 if the lot has no such type
+    public int typeCodeOf(String type) {
+        for (int i = 0; i < typeNames.length; i++) {
+            if (typeNames[i].equals(type)) return i;
+        }
+        return -1;
+    }
+
+    public int getTypeCount() {
+        return typeNames.length;
+    }
+
+    public String getTypeName(int code) {
+        return typeNames[code];
+    }
+
+    public double getHourlyRate(int index) {
+        return rates[rateIndex[index]];
+    }
+
+    public int getRateIndex(int index) {
+        return rateIndex[index];
+    }
+
+    public int getRateCount() {
+        return rates.length;
+    }
+
+    public double getRate(int rateIdx) {
+        return rates[rateIdx];
+    }
+
+    private int blockOf(int index) {
+        int lo = 0, hi = blockStart.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (blockStart[mid] <= index) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    // ---- occupancy ----
+
+    public boolean isOccupied(int index) {
+        return (occupied.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public String getPlate(int index) {
+        synchronized (lockFor(index)) {
+            return isOccupied(index) ? plates[plateHandle[index]] : null;
+        }
+    }
+
+    //entry time of the current vehicle (0 when empty); hold lockFor(index) to pair it with getPlate
+    public long getEntryTime(int index) {
+        synchronized (lockFor(index)) {
+            return entryTime[index];
+        }
+    }
+
+    //a fresh Vehicle rebuilt from the row (null when empty)
+    public Vehicle getVehicle(int index) {
+        synchronized (lockFor(index)) {
+            if (!isOccupied(index)) return null;
+            return vehicleFor(vehicleType[index], plates[plateHandle[index]], entryTime[index]);
+        }
+    }
+
+    public void park(int index, Vehicle v) {
+        synchronized (lockFor(index)) {
+            if (isOccupied(index)) clear(index);
+            plateHandle[index] = allocatePlate(v.getLicensePlate());
+            vehicleType[index] = vehicleCode(v.getType());
+            entryTime[index] = v.getEntryTime();
+            setBit(index, true);
+        }
+    }
+
+    public void clear(int index) {
+        synchronized (lockFor(index)) {
+            if (!isOccupied(index)) return;
+            setBit(index, false);
+            releasePlate(plateHandle[index]);
+            plateHandle[index] = 0;
+            vehicleType[index] = 0;
+            entryTime[index] = 0L;
+        }
+    }
+
+    private void setBit(int index, boolean value) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long old;
+        do {
+            old = occupied.get(word);
+        } while (!occupied.compareAndSet(word, old, value ? old | mask : old & ~mask));
+    }
+
+    private synchronized int allocatePlate(String plate) {
+        int handle;
+        if (freeHandleCount > 0) {
+            handle = freeHandles[--freeHandleCount];
+        } else {
+            handle = nextHandle++;
+            if (handle >= plates.length) {
+                String[] grown = new String[plates.length * 2];
+                System.arraycopy(plates, 0, grown, 0, plates.length);
+                plates = grown;
+            }
+        }
+        plates[handle] = plate;
+        return handle;
+    }
+
+    private synchronized void releasePlate(int handle) {
+        if (handle == 0) return;
+        plates[handle] = null;
+        if (freeHandleCount == freeHandles.length) {
+            int[] grown = new int[freeHandles.length * 2];
+            System.arraycopy(freeHandles, 0, grown, 0, freeHandles.length);
+            freeHandles = grown;
+        }
+        freeHandles[freeHandleCount++] = handle;
+    }
+
+    //vehicle type codes (also used by SpotStateFile): Car=1, Motorcycle=2, SUV=3
+    static byte vehicleCode(String vehicleType) {
+        if (vehicleType.equalsIgnoreCase("Car")) return 1;
+        if (vehicleType.equalsIgnoreCase("Motorcycle")) return 2;
+        if (vehicleType.equalsIgnoreCase("SUV")) return 3;
+        return 0;
+    }
+
+    static Vehicle vehicleFor(byte code, String plate, long entryTime) {
+        switch (code) {
+            case 1: return new Car(plate, entryTime);
+            case 2: return new Motorcycle(plate, entryTime);
+            case 3: return new SUV(plate, entryTime);
+            default: return null;
+        }
+    }
+
+    private class SpotViews extends AbstractList<ParkingSpot> implements RandomAccess {
+        @Override
+        public ParkingSpot get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("spot " + index);
+            return view(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Startup restore of lot, history, fines and tickets from one consistent cut: the newest intact
+//checkpoint, else the files of a clean shutdown from an older version.
+//The history file and the mapped spot state file are brought back to that same cut. History
+//segments sealed after the checkpoint hold exits the checkpoint does not know about, so they
+//are dropped and the checkpoint's own tail is appended instead; the slot file is rewritten from
+//the restored lot. Only when there is nothing else to restore from (a crash before the first
+//checkpoint) is the slot file's occupancy used.
+public class StateRecovery {
+    private final HistoryFile historyFile;
+    private final SpotStateFile spotStateFile;
+
+    private StateRecovery(HistoryFile historyFile, SpotStateFile spotStateFile) {
+        this.historyFile = historyFile;
+        this.spotStateFile = spotStateFile;
+    }
+
+    //null if the file could not be opened (history then lives in memory only)
+    public HistoryFile getHistoryFile() {
+        return historyFile;
+    }
+
+    //null if the file could not be mapped
+    public SpotStateFile getSpotStateFile() {
+        return spotStateFile;
+    }
+
+    public static StateRecovery restore(ParkingLot lot, CheckpointManager checkpoints,
+                                        String historyFileName, String spotStateFileName, boolean forceSlotWrites) {
+        CheckpointManager.Snapshot checkpoint = checkpoints.recoverLatest();
+        List<ParkingSpot> savedSpots = checkpoint != null ? checkpoint.getSpots() : DataManager.loadState();
+        List<Transaction> savedHistory = checkpoint != null ? checkpoint.getHistory() : DataManager.loadHistory();
+        Map<String, Double> savedFines = checkpoint != null ? checkpoint.getFines() : DataManager.loadFines();
+        boolean haveSpots = savedSpots != null && !savedSpots.isEmpty();
+
+        //load Parking Spots (Occupancy & Reservations)
+        if (haveSpots) {
+            lot.setSpots(savedSpots);
+            System.out.println("System: Previous parking data loaded.");
+        }
+
+        //segmented history file: only its footer (segment index and totals) is read here;
+        //the checkpoint adds the records not yet sealed into it
+        HistoryFile historyFile = null;
+        try {
+            historyFile = HistoryFile.open(historyFileName, lot::spotTypeOf);
+            if (checkpoint != null && historyFile.getRecordCount() > checkpoint.getHistoryBase()) {
+                int dropped = historyFile.getRecordCount() - checkpoint.getHistoryBase();
+                historyFile.truncateTo(checkpoint.getHistoryBase(), lot::spotTypeOf);
+                System.out.println("System: Dropped " + dropped + " history records sealed after checkpoint "
+                    + checkpoint.getSeq() + ".");
+            }
+            lot.attachHistoryFile(historyFile);
+            if (checkpoint != null) {
+                lot.appendRecoveredHistory(checkpoint.getHistoryBase(), savedHistory);
+            } else if (historyFile.getRecordCount() == 0 && savedHistory != null && !savedHistory.isEmpty()) {
+                //one-time move of the old revenue file into the segment file
+                lot.appendRecoveredHistory(0, savedHistory);
+                System.out.println("System: Migrated " + savedHistory.size() + " transactions into " + historyFileName + ".");
+            }
+            System.out.println("System: Revenue history loaded (" + lot.getHistory().size() + " transactions, "
+                + historyFile.getSegmentCount() + " segments on disk).");
+        } catch (IOException e) {
+            System.err.println("Error opening history file: " + e.getMessage());
+            if (historyFile != null) historyFile.close();
+            historyFile = null;
+            if (savedHistory != null) lot.setHistory(savedHistory);
+        }
+
+        //load Financial Data (Unpaid Fines)
+        FineManager.setOutstandingFines(savedFines != null ? savedFines : new HashMap<>());
+        if (savedFines != null && !savedFines.isEmpty()) {
+            System.out.println("System: Previous fine records loaded.");
+        }
+
+        //map the per-spot occupancy file and bring it to the restored state
+        SpotStateFile spotStateFile = null;
+        try {
+            spotStateFile = SpotStateFile.open(spotStateFileName, lot.getSpots(), forceSlotWrites);
+            if (spotStateFile.hadState() && !haveSpots) {
+                spotStateFile.restoreInto(lot);
+            } else if (spotStateFile.hadState()) {
+                spotStateFile.writeAll(lot.getSpots());
+            }
+            lot.attachStateFile(spotStateFile);
+        } catch (IOException e) {
+            System.err.println("Error mapping spot state file: " + e.getMessage());
+        }
+
+        //tickets last, so only those matching the restored occupancy are kept
+        //(open tickets are only saved in checkpoints)
+        TicketRegistry.getInstance().restore(checkpoint != null ? checkpoint.getTickets() : new ArrayList<>(), lot);
+        return new StateRecovery(historyFile, spotStateFile);
+    }
+}
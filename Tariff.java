@@ -0,0 +1,124 @@
+//Immutable, precompiled pricing for one fine scheme and one spot table.
+//Spot types are resolved to an enum and rates to cents once, at compile time, so billing
+//a stay is integer arithmetic on primitives: no string compares, no doubles, no allocation.
+//BillingEngine holds the current instance and swaps in a new one when the scheme changes.
+public final class Tariff {
+    public enum SpotClass {
+        REGULAR, COMPACT, RESERVED, HANDICAPPED, MOTORCYCLE, OTHER;
+
+        public static SpotClass of(String spotType) {
+            if (spotType == null) return OTHER;
+            for (SpotClass c : values()) {
+                if (c.name().equalsIgnoreCase(spotType)) return c;
+            }
+            return OTHER;
+        }
+    }
+
+    //permit flags for quoteAll
+    public static final byte HANDICAPPED_PERMIT = 1;
+    public static final byte RESERVED_PERMIT = 2;
+
+    //fine parameters (cents)
+    private static final long FIXED_FINE = 5000;
+    private static final long[] PROGRESSIVE_TIERS = {5000, 15000, 30000, 50000}; // up to 24h, 48h, 72h, beyond
+    private static final long HOURLY_FINE = 2000;
+    private static final long OVERSTAY_HOURS = 24;
+
+    private final FineManager.FineScheme scheme;
+    private final SpotTable table;
+    private final SpotClass[] classByType; // SpotTable type code -> class
+    private final long[] rateCents;        // SpotTable rate index -> cents per hour
+
+    private Tariff(FineManager.FineScheme scheme, SpotTable table, SpotClass[] classByType, long[] rateCents) {
+        this.scheme = scheme;
+        this.table = table;
+        this.classByType = classByType;
+        this.rateCents = rateCents;
+    }
+
+    public static Tariff compile(FineManager.FineScheme scheme, SpotTable table) {
+        SpotClass[] classes = new SpotClass[table.getTypeCount()];
+        for (int t = 0; t < classes.length; t++) {
+            classes[t] = SpotClass.of(table.getTypeName(t));
+        }
+        long[] rates = new long[table.getRateCount()];
+        for (int r = 0; r < rates.length; r++) {
+            rates[r] = FineLedger.toCents(table.getRate(r));
+        }
+        return new Tariff(scheme, table, classes, rates);
+    }
+
+    public FineManager.FineScheme getScheme() {
+        return scheme;
+    }
+
+    public boolean isCompiledFor(SpotTable t) {
+        return table == t;
+    }
+
+    //billed hours: ceiling of the stay, minimum 1
+    public static long billedHours(long entryTime, long exitTime, long millisPerHour) {
+        long millis = exitTime - entryTime;
+        if (millis <= millisPerHour) return 1;
+        return (millis + millisPerHour - 1) / millisPerHour;
+    }
+
+    // ---- per-row billing (rows of the compiled spot table) ----
+
+    public SpotClass classOf(int row) {
+        return classByType[table.getTypeCode(row)];
+    }
+
+    public long rateCentsOf(int row) {
+        return rateCents[table.getRateIndex(row)];
+    }
+
+    public long parkingFeeCents(int row, long hours, boolean hasHandicappedCard) {
+        return parkingFeeCents(hours, rateCentsOf(row), classOf(row), hasHandicappedCard);
+    }
+
+    //a Reserved spot without a reserved permit is a violation
+    public long fineCents(int row, long hours, boolean hasReservedPermit) {
+        return fineCents(hours, classOf(row) == SpotClass.RESERVED && !hasReservedPermit);
+    }
+
+    // ---- generic billing ----
+
+    public long parkingFeeCents(long hours, long rateCents, SpotClass spotClass, boolean hasHandicappedCard) {
+        //free parking for valid permit holders in Handicapped spots
+        if (spotClass == SpotClass.HANDICAPPED && hasHandicappedCard) return 0;
+        return Math.max(1, hours) * rateCents;
+    }
+
+    public long fineCents(long hours, boolean isReservedViolation) {
+        boolean isOverstay = hours > OVERSTAY_HOURS;
+        if (!isOverstay && !isReservedViolation) return 0;
+
+        switch (scheme) {
+            case FIXED:
+                return FIXED_FINE;
+            case PROGRESSIVE:
+                if (hours <= 24) return PROGRESSIVE_TIERS[0];
+                if (hours <= 48) return PROGRESSIVE_TIERS[1];
+                if (hours <= 72) return PROGRESSIVE_TIERS[2];
+                return PROGRESSIVE_TIERS[3];
+            case HOURLY:
+                return (isReservedViolation ? hours : hours - OVERSTAY_HOURS) * HOURLY_FINE;
+            default:
+                return 0;
+        }
+    }
+
+    //bills count stays in one pass: stay i is rows[i] entered at entryTimes[i] with permit flags
+    //permits[i], leaving at exitTime; fees and fines go to feeOut[i] / fineOut[i] (cents)
+    public void quoteAll(int count, int[] rows, long[] entryTimes, byte[] permits, long exitTime,
+                         long millisPerHour, long[] feeOut, long[] fineOut) {
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            long hours = billedHours(entryTimes[i], exitTime, millisPerHour);
+            feeOut[i] = parkingFeeCents(row, hours, (permits[i] & HANDICAPPED_PERMIT) != 0);
+            fineOut[i] = fineCents(row, hours, (permits[i] & RESERVED_PERMIT) != 0);
+        }
+    }
+}
@@ -1,9 +1,16 @@
 
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 public class Ticket implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    //thread-safe, shared by all tickets
+    private static final DateTimeFormatter TIME_FORMAT =
+        DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
     private String ticketID;
     private String licensePlate;
     private String assignedSpotID;
@@ -17,19 +24,27 @@ public class Ticket implements Serializable {
         this.spotType = spotType;      
         this.vehicleType = vehicleType; 
         this.entryTime = entryTime;
-        this.ticketID = generateID();
+        this.ticketID = TicketIdGenerator.next();
     }
 
-    //generate ticket
-    private String generateID() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddHHmm");
-        return "T-" + licensePlate + "-" + sdf.format(new Date(entryTime));
+    //a ticket read back from a save file keeps its original ID
+    Ticket(String ticketID, String licensePlate, String assignedSpotID, String spotType, String vehicleType, long entryTime) {
+        this.ticketID = ticketID;
+        this.licensePlate = licensePlate;
+        this.assignedSpotID = assignedSpotID;
+        this.spotType = spotType;
+        this.vehicleType = vehicleType;
+        this.entryTime = entryTime;
     }
 
     public String getTicketID() { 
         return ticketID; 
     }
 
+    public String getLicensePlate() { 
+        return licensePlate; 
+    }
+
     public String getSpotID() { 
         return assignedSpotID; 
     }
@@ -47,8 +62,7 @@ public class Ticket implements Serializable {
     }
     
     public String getFormattedTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
-        return sdf.format(new Date(entryTime));
+        return TIME_FORMAT.format(Instant.ofEpochMilli(entryTime));
     }
 
     public String getTicketDetails() {
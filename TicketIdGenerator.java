@@ -0,0 +1,72 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+//Ticket IDs: "T-" + 12 base-36 digits of a 62-bit value laid out as
+//  [ms since 2024-01-01 : 44][sequence : 12][node : 6]
+//One CAS per ID and no locks or formatters. IDs are unique per node (-Dparking.nodeId=0..63,
+//one per gate machine), strictly increasing within a node, and fixed width, so a string sort
+//is a time sort. If more than 4096 IDs are issued in one millisecond, the counter runs ahead
+//of the clock rather than repeating.
+public class TicketIdGenerator {
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 6;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int WIDTH = 12;
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private static final long NODE = Long.getLong("parking.nodeId", 0L) & ((1L << NODE_BITS) - 1);
+
+    //last issued (time << SEQUENCE_BITS | sequence)
+    private static final AtomicLong last = new AtomicLong();
+
+    public static String next() {
+        return format(nextValue());
+    }
+
+    public static long nextValue() {
+        long floor = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+        long prev, next;
+        do {
+            prev = last.get();
+            next = Math.max(floor, prev + 1);
+        } while (!last.compareAndSet(prev, next));
+        return (next << NODE_BITS) | NODE;
+    }
+
+    //never issue an ID at or below one already handed out (after loading saved tickets)
+    public static void advancePast(String ticketID) {
+        long value = parse(ticketID);
+        if (value < 0) return;
+        long counter = value >>> NODE_BITS;
+        long prev;
+        do {
+            prev = last.get();
+            if (prev >= counter) return;
+        } while (!last.compareAndSet(prev, counter));
+    }
+
+    //issue time encoded in the ID, or -1 if it is not one of ours
+    public static long timeOf(String ticketID) {
+        long value = parse(ticketID);
+        return value < 0 ? -1 : (value >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    static String format(long value) {
+        char[] out = new char[2 + WIDTH];
+        out[0] = 'T';
+        out[1] = '-';
+        for (int i = out.length - 1; i >= 2; i--) {
+            out[i] = DIGITS[(int) (value % 36)];
+            value /= 36;
+        }
+        return new String(out);
+    }
+
+    static long parse(String ticketID) {
+        if (ticketID == null || ticketID.length() != 2 + WIDTH || !ticketID.startsWith("T-")) return -1;
+        try {
+            return Long.parseLong(ticketID.substring(2), 36);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
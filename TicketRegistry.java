@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Tickets of the vehicles currently in the lot, by ticket ID and by plate (both O(1)).
+//A ticket is registered when its spot is claimed and dropped when the vehicle leaves;
+//open tickets are saved in each checkpoint (see CheckpointManager).
+public class TicketRegistry {
+    private static volatile TicketRegistry instance;
+
+    private final Map<String, Ticket> byId = new ConcurrentHashMap<>();
+    private final Map<String, Ticket> byPlate = new ConcurrentHashMap<>();
+
+    private TicketRegistry() {
+    }
+
+    public static TicketRegistry getInstance() {
+        if (instance == null) {
+            synchronized (TicketRegistry.class) {
+                if (instance == null) {
+                    instance = new TicketRegistry();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public void register(Ticket ticket) {
+        Ticket previous = byPlate.put(normalizePlate(ticket.getLicensePlate()), ticket);
+        if (previous != null) byId.remove(previous.getTicketID(), previous);
+        byId.put(ticket.getTicketID(), ticket);
+    }
+
+    public Ticket findById(String ticketID) {
+        return ticketID == null ? null : byId.get(ticketID.trim().toUpperCase());
+    }
+
+    public Ticket findByPlate(String plate) {
+        return byPlate.get(normalizePlate(plate));
+    }
+
+    //vehicle left: drop its ticket (only if it is still the one on record)
+    public Ticket close(String plate) {
+        Ticket ticket = byPlate.remove(normalizePlate(plate));
+        if (ticket != null) byId.remove(ticket.getTicketID(), ticket);
+        return ticket;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public Collection<Ticket> getAll() {
+        return new ArrayList<>(byId.values());
+    }
+
+    //loads saved tickets, keeping only those whose vehicle is still parked at the ticketed spot
+    public void restore(List<Ticket> saved, ParkingLot lot) {
+        byId.clear();
+        byPlate.clear();
+        int dropped = 0;
+        for (Ticket t : saved) {
+            TicketIdGenerator.advancePast(t.getTicketID());
+            ParkingSpot spot = lot.findSpotByPlate(t.getLicensePlate());
+            if (spot != null && spot.getSpotID().equals(t.getSpotID())) {
+                register(t);
+            } else {
+                dropped++;
+            }
+        }
+        System.out.println("System: Tickets restored (" + byId.size() + " active, " + dropped + " stale).");
+    }
+
+    private static String normalizePlate(String plate) {
+        return plate == null ? "" : plate.trim().toUpperCase();
+    }
+}
@@ -19,10 +19,20 @@ public class Transaction implements Serializable {
         this.paymentMethod = paymentMethod;
     }
 
+    //rebuilds a stored record with its original exit time
+    public Transaction(String plate, String spotID, long exitTime, double amountPaid, String paymentMethod) {
+        this.plate = plate;
+        this.spotID = spotID;
+        this.exitTime = exitTime;
+        this.amountPaid = amountPaid;
+        this.paymentMethod = paymentMethod;
+    }
+
     //Getters
     public String getPlate() { return plate; }
     public String getSpotID() { return spotID; }
     public Date getExitTime() { return new Date(exitTime); }
+    public long getExitTimeMillis() { return exitTime; }
     public double getAmount() { return amountPaid; }
     public String getMethod() { return paymentMethod; }
 }
\ No newline at end of file
@@ -0,0 +1,593 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+//Columnar transaction history: one off-heap primitive column per field,
+//with plates, spot IDs and payment methods dictionary-encoded to int codes.
+//Rows are ~28 bytes off-heap; Transaction objects are only built on get(i).
+//All methods lock on the store, so callers may iterate inside synchronized (store) { ... }
+//over the in-memory rows; sealed rows are paged in outside the lock, so reach them without
+//holding it (or use select()/peek()). The store is append-only.
+//
+//With a HistoryFile attached, only the newest records (the tail) live in the columns:
+//every SEGMENT_SIZE records the tail is handed to a background sealer that writes it as a
+//file segment, and older rows are paged back in a segment at a time (small LRU) when get(i)
+//or a column accessor asks for them.
+public class TransactionStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    public static final int SEGMENT_SIZE = 4096;
+    private static final int CACHED_PAGES = 8;
+    private static final int ROW_BYTES = 8 + 8 + 4 + 4 + 4;
+    private static final long SEAL_RETRY_MILLIS = 1_000L;
+
+    public enum Column { TIME, PLATE, SPOT, METHOD, AMOUNT }
+
+    //row filter for select(); null/empty parts match everything
+    public static class Filter {
+        public static final Filter ALL = new Filter(null, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        final String plate;   // substring, any case
+        final String spotID;  // prefix, any case
+        final String method;  // exact
+        final long from;      // exit time, inclusive
+        final long to;        // exit time, exclusive
+
+        public Filter(String plate, String spotID, String method, long from, long to) {
+            this.plate = plate == null || plate.trim().isEmpty() ? null : plate.trim().toUpperCase();
+            this.spotID = spotID == null || spotID.trim().isEmpty() ? null : spotID.trim().toUpperCase();
+            this.method = method == null || method.isEmpty() ? null : method;
+            this.from = from;
+            this.to = to;
+        }
+
+        public boolean isAll() {
+            return plate == null && spotID == null && method == null && from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+        }
+
+        boolean matches(long exitTime, String plate, String spotID, String method) {
+            if (exitTime < from || exitTime >= to) return false;
+            if (this.method != null && !this.method.equals(method)) return false;
+            if (this.spotID != null && (spotID == null || !spotID.toUpperCase().startsWith(this.spotID))) return false;
+            return this.plate == null || (plate != null && plate.toUpperCase().contains(this.plate));
+        }
+    }
+
+    //in-memory rows, oldest first; the last chunk takes new records (see Chunk)
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    //sealed records on disk (null = everything in memory)
+    private final HistoryFile file;
+    private final Function<String, String> spotTypes;
+    private final ScheduledExecutorService sealer;
+    private int sealed;
+    private int[] segmentStarts = new int[0];
+    private final Map<Integer, HistoryFile.Page> pages = new LinkedHashMap<Integer, HistoryFile.Page>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, HistoryFile.Page> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    public TransactionStore() {
+        this(null, null);
+    }
+
+    //history backed by a segment file; only its footer has been read at this point
+    public TransactionStore(HistoryFile file, Function<String, String> spotTypes) {
+        this.file = file;
+        this.spotTypes = spotTypes;
+        if (file != null) {
+            sealed = file.getRecordCount();
+            segmentStarts = new int[file.getSegmentCount()];
+            int start = 0;
+            for (int i = 0; i < segmentStarts.length; i++) {
+                segmentStarts[i] = start;
+                start += file.getSegmentSize(i);
+            }
+            sealer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "history-sealer");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            sealer = null;
+        }
+        chunks.add(new Chunk(sealed));
+    }
+
+    //a full tail is handed to the sealer thread and a fresh one takes over, so the segment
+    //write never runs under the store lock (exits only ever pay for the in-memory append)
+    public synchronized void add(Transaction t) {
+        Chunk tail = tail();
+        tail.add(t);
+        if (file != null && tail.size >= SEGMENT_SIZE) {
+            chunks.add(new Chunk(tail.first + tail.size));
+            sealer.execute(this::sealFull);
+        }
+    }
+
+    //adds t and returns its position in the history
+    public synchronized int append(Transaction t) {
+        add(t);
+        return size() - 1;
+    }
+
+    //records held on disk (the in-memory rows start here)
+    public synchronized int getSealedCount() {
+        return sealed;
+    }
+
+    public HistoryFile getFile() {
+        return file;
+    }
+
+    //rows [from, to) as objects; rows are never changed once appended, so no lock is needed
+    //for a range below an earlier size() (sealed rows are paged in from the file)
+    public List<Transaction> getRange(int from, int to) {
+        List<Transaction> rows = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            rows.add(get(i));
+        }
+        return rows;
+    }
+
+    //waits until every full chunk has reached the file (shutdown); false on timeout
+    public synchronized boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (chunks.size() > 1) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return false;
+            wait(left);
+        }
+        return true;
+    }
+
+    //sealer thread: writes full chunks out oldest first. A chunk leaves memory only once its
+    //segment is in the file; if the write fails it stays readable and is retried shortly.
+    private void sealFull() {
+        while (true) {
+            Chunk chunk;
+            synchronized (this) {
+                if (chunks.size() < 2) return;
+                chunk = chunks.get(0);
+            }
+            HistoryFile.Page page = chunk.toPage(); // full chunks never change, no lock needed
+            try {
+                file.append(page, chunk.size, spotTypes);
+            } catch (IOException e) {
+                System.err.println("Error sealing history segment, retrying: " + e.getMessage());
+                sealer.schedule(this::sealFull, SEAL_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            synchronized (this) {
+                int segment = segmentStarts.length;
+                segmentStarts = Arrays.copyOf(segmentStarts, segment + 1);
+                segmentStarts[segment] = sealed;
+                pages.put(segment, page);
+                sealed += chunk.size;
+                chunks.remove(0);
+                notifyAll();
+            }
+        }
+    }
+
+    //not synchronized as a whole: a sealed row may need its segment read from the file, which
+    //the column accessors do outside the lock (rows never change once written)
+    public Transaction get(int index) {
+        checkIndex(index);
+        return new Transaction(
+            getPlate(index),
+            getSpotID(index),
+            getExitTimeMillis(index),
+            getAmountCents(index) / 100.0,
+            getMethod(index)
+        );
+    }
+
+    public synchronized int size() {
+        Chunk tail = tail();
+        return tail.first + tail.size;
+    }
+
+    //column accessors: read one field without building a Transaction. A sealed row whose
+    //segment is not cached is paged in outside the store lock and then looked up again.
+    public long getExitTimeMillis(int index) {
+        while (true) {
+            synchronized (this) {
+                checkIndex(index);
+                if (index >= sealed) {
+                    Chunk c = chunkOf(index);
+                    return c.exitTime(index - c.first);
+                }
+                HistoryFile.Page page = pages.get(segmentOf(index));
+                if (page != null) return page.exitTimes[index - segmentStart(index)];
+            }
+            pageIn(index);
+        }
+    }
+
+    public long getAmountCents(int index) {
+        while (true) {
+            synchronized (this) {
+                checkIndex(index);
+                if (index >= sealed) {
+                    Chunk c = chunkOf(index);
+                    return c.amountCents(index - c.first);
+                }
+                HistoryFile.Page page = pages.get(segmentOf(index));
+                if (page != null) return page.amountCents[index - segmentStart(index)];
+            }
+            pageIn(index);
+        }
+    }
+
+    public String getPlate(int index) {
+        while (true) {
+            synchronized (this) {
+                checkIndex(index);
+                if (index >= sealed) {
+                    Chunk c = chunkOf(index);
+                    return c.plate(index - c.first);
+                }
+                HistoryFile.Page page = pages.get(segmentOf(index));
+                if (page != null) return page.plates[index - segmentStart(index)];
+            }
+            pageIn(index);
+        }
+    }
+
+    public String getSpotID(int index) {
+        while (true) {
+            synchronized (this) {
+                checkIndex(index);
+                if (index >= sealed) {
+                    Chunk c = chunkOf(index);
+                    return c.spotID(index - c.first);
+                }
+                HistoryFile.Page page = pages.get(segmentOf(index));
+                if (page != null) return page.spotIDs[index - segmentStart(index)];
+            }
+            pageIn(index);
+        }
+    }
+
+    public String getMethod(int index) {
+        while (true) {
+            synchronized (this) {
+                checkIndex(index);
+                if (index >= sealed) {
+                    Chunk c = chunkOf(index);
+                    return c.method(index - c.first);
+                }
+                HistoryFile.Page page = pages.get(segmentOf(index));
+                if (page != null) return page.methods[index - segmentStart(index)];
+            }
+            pageIn(index);
+        }
+    }
+
+    //Indexes of the rows at or after fromIndex that pass the filter, ordered by sortBy
+    //(TIME is recording order, which is exit order). Sealed segments whose exit-time range
+    //misses the filter are skipped, the rest are read one at a time outside the store lock
+    //(bypassing the page cache), so a scan of a large file does not hold up new exits.
+    //Only the in-memory rows are scanned under the lock; if the sealer moved rows to the file
+    //while the segments were being read, those new segments are read the same way first.
+    public int[] select(Filter filter, Column sortBy, boolean descending, int fromIndex) {
+        Selection sel = new Selection(sortBy);
+        int scanned = Math.max(0, fromIndex);
+        while (true) {
+            int sealedNow;
+            int[] starts;
+            synchronized (this) {
+                if (scanned >= sealed) {
+                    for (int i = scanned, n = size(); i < n; i++) {
+                        Chunk c = chunkOf(i);
+                        int r = i - c.first;
+                        String plate = c.plate(r), spotID = c.spotID(r), method = c.method(r);
+                        if (filter.matches(c.exitTime(r), plate, spotID, method)) {
+                            sel.add(i, c.amountCents(r), plate, spotID, method);
+                        }
+                    }
+                    return sel.finish(descending);
+                }
+                sealedNow = sealed;
+                starts = segmentStarts;
+            }
+            scanSegments(filter, sel, starts, scanned, sealedNow);
+            scanned = sealedNow;
+        }
+    }
+
+    //adds the matching rows of [from, to) from sealed segments, without holding the store lock
+    private void scanSegments(Filter filter, Selection sel, int[] starts, int from, int to) {
+        for (int seg = 0; seg < starts.length; seg++) {
+            int segStart = starts[seg];
+            int segEnd = seg + 1 < starts.length ? starts[seg + 1] : to;
+            if (segEnd <= from || !file.segmentOverlaps(seg, filter.from, filter.to)) continue;
+            HistoryFile.Page page;
+            synchronized (this) {
+                page = pages.get(seg);
+            }
+            if (page == null) {
+                try {
+                    page = file.readSegment(seg);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            for (int i = Math.max(segStart, from); i < segEnd; i++) {
+                int j = i - segStart;
+                if (filter.matches(page.exitTimes[j], page.plates[j], page.spotIDs[j], page.methods[j])) {
+                    sel.add(i, page.amountCents[j], page.plates[j], page.spotIDs[j], page.methods[j]);
+                }
+            }
+        }
+    }
+
+    //matching rows plus their sort keys (amount in cents, or a code per distinct string)
+    private static final class Selection {
+        private final Column sortBy;
+        private int[] rows = new int[1024];
+        private long[] keys;
+        private int count;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        Selection(Column sortBy) {
+            this.sortBy = sortBy;
+            if (sortBy != Column.TIME) keys = new long[1024];
+        }
+
+        void add(int row, long cents, String plate, String spotID, String method) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+                if (keys != null) keys = Arrays.copyOf(keys, count * 2);
+            }
+            rows[count] = row;
+            switch (sortBy) {
+                case AMOUNT: keys[count] = Math.max(0, Math.min(cents, Integer.MAX_VALUE)); break;
+                case PLATE: keys[count] = code(plate); break;
+                case SPOT: keys[count] = code(spotID); break;
+                case METHOD: keys[count] = code(method); break;
+                default: break;
+            }
+            count++;
+        }
+
+        private int code(String value) {
+            String key = value == null ? "" : value;
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = values.size();
+                codes.put(key, code);
+                values.add(key);
+            }
+            return code;
+        }
+
+        //sorts by (key, recording order) packed into one long, so a plain primitive sort does it
+        int[] finish(boolean descending) {
+            int[] result = new int[count];
+            if (sortBy == Column.TIME) {
+                System.arraycopy(rows, 0, result, 0, count);
+            } else {
+                long[] rank = null;
+                if (sortBy != Column.AMOUNT) {
+                    //distinct strings in order -> rank
+                    String[] sorted = values.toArray(new String[0]);
+                    Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER);
+                    rank = new long[sorted.length];
+                    for (int r = 0; r < sorted.length; r++) rank[codes.get(sorted[r])] = r;
+                }
+                long[] packed = new long[count];
+                for (int i = 0; i < count; i++) {
+                    long key = rank == null ? keys[i] : rank[(int) keys[i]];
+                    packed[i] = (key << 32) | i;
+                }
+                Arrays.parallelSort(packed);
+                for (int i = 0; i < count; i++) result[i] = rows[(int) packed[i]];
+            }
+            if (descending) {
+                for (int i = 0, j = count - 1; i < j; i++, j--) {
+                    int t = result[i];
+                    result[i] = result[j];
+                    result[j] = t;
+                }
+            }
+            return result;
+        }
+    }
+
+    //segments currently paged in (for diagnostics)
+    public synchronized int getCachedPageCount() {
+        return pages.size();
+    }
+
+    private int segmentOf(int index) {
+        int lo = 0, hi = segmentStarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segmentStarts[mid] <= index) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private int segmentStart(int index) {
+        return segmentStarts[segmentOf(index)];
+    }
+
+    //reads the segment holding sealed row index into the page cache. The file read runs
+    //without the store lock, so paging old history in (table scrolling, reports) does not
+    //hold up exits; two readers of the same cold segment may both read it, which is harmless.
+    private void pageIn(int index) {
+        int segment;
+        synchronized (this) {
+            if (index >= sealed) return;
+            segment = segmentOf(index);
+            if (pages.containsKey(segment)) return;
+        }
+        HistoryFile.Page page;
+        try {
+            page = file.readSegment(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (this) {
+            pages.put(segment, page);
+        }
+    }
+
+    //the record if it can be had without reading the file (in memory or in a cached page), else null;
+    //lets the UI thread show what is at hand and fetch the rest in the background
+    public synchronized Transaction peek(int index) {
+        checkIndex(index);
+        if (index < sealed && !pages.containsKey(segmentOf(index))) return null;
+        return get(index);
+    }
+
+    //approximate off-heap bytes held by the columns
+    public synchronized long getColumnBytes() {
+        long bytes = 0;
+        for (Chunk c : chunks) bytes += (long) c.capacity * ROW_BYTES;
+        return bytes;
+    }
+
+    static long toCents(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    private void checkIndex(int index) {
+        int total = size();
+        if (index < 0 || index >= total) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + total);
+        }
+    }
+
+    private Chunk tail() {
+        return chunks.get(chunks.size() - 1);
+    }
+
+    //in-memory chunk holding index (index >= sealed); there are rarely more than two
+    private Chunk chunkOf(int index) {
+        for (int i = chunks.size() - 1; i > 0; i--) {
+            Chunk c = chunks.get(i);
+            if (index >= c.first) return c;
+        }
+        return chunks.get(0);
+    }
+
+    //A run of in-memory rows: one off-heap column per field (direct buffers, grown by doubling)
+    //plus the dictionaries for its string codes. Once a chunk is full and handed to the sealer
+    //nothing writes to it again.
+    private static final class Chunk {
+        final int first; // store index of row 0
+        ByteBuffer exitTimes;    // long
+        ByteBuffer amountCents;  // long
+        ByteBuffer plateCodes;   // int
+        ByteBuffer spotCodes;    // int
+        ByteBuffer methodCodes;  // int
+        int capacity;
+        int size;
+        final Dictionary plates = new Dictionary();
+        final Dictionary spotIDs = new Dictionary();
+        final Dictionary methods = new Dictionary();
+
+        Chunk(int first) {
+            this.first = first;
+            allocate(INITIAL_CAPACITY);
+        }
+
+        void add(Transaction t) {
+            if (size == capacity) allocate(capacity * 2);
+            exitTimes.putLong(size * 8, t.getExitTimeMillis());
+            amountCents.putLong(size * 8, toCents(t.getAmount()));
+            plateCodes.putInt(size * 4, plates.encode(t.getPlate()));
+            spotCodes.putInt(size * 4, spotIDs.encode(t.getSpotID()));
+            methodCodes.putInt(size * 4, methods.encode(t.getMethod()));
+            size++;
+        }
+
+        long exitTime(int row) {
+            return exitTimes.getLong(row * 8);
+        }
+
+        long amountCents(int row) {
+            return amountCents.getLong(row * 8);
+        }
+
+        String plate(int row) {
+            return plates.decode(plateCodes.getInt(row * 4));
+        }
+
+        String spotID(int row) {
+            return spotIDs.decode(spotCodes.getInt(row * 4));
+        }
+
+        String method(int row) {
+            return methods.decode(methodCodes.getInt(row * 4));
+        }
+
+        HistoryFile.Page toPage() {
+            HistoryFile.Page page = new HistoryFile.Page(size);
+            for (int i = 0; i < size; i++) {
+                page.exitTimes[i] = exitTime(i);
+                page.amountCents[i] = amountCents(i);
+                page.plates[i] = plate(i);
+                page.spotIDs[i] = spotID(i);
+                page.methods[i] = method(i);
+            }
+            return page;
+        }
+
+        private void allocate(int newCapacity) {
+            exitTimes = grow(exitTimes, newCapacity * 8, size * 8);
+            amountCents = grow(amountCents, newCapacity * 8, size * 8);
+            plateCodes = grow(plateCodes, newCapacity * 4, size * 4);
+            spotCodes = grow(spotCodes, newCapacity * 4, size * 4);
+            methodCodes = grow(methodCodes, newCapacity * 4, size * 4);
+            capacity = newCapacity;
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer old, int bytes, int used) {
+        ByteBuffer fresh = ByteBuffer.allocateDirect(bytes);
+        if (old != null) {
+            ByteBuffer src = old.duplicate();
+            src.position(0).limit(used);
+            fresh.put(src);
+            fresh.clear();
+        }
+        return fresh;
+    }
+
+    //String <-> int code table
+    private static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+    }
+}
@@ -2,6 +2,9 @@
 import java.io.Serializable;
 
 public abstract class Vehicle implements Serializable {
+    //value the class had before it was declared, so existing .dat files still load
+    private static final long serialVersionUID = 5767718716901537607L;
+
     protected String licensePlate;
     protected long entryTime;
 
@@ -10,6 +13,12 @@ public abstract class Vehicle implements Serializable {
         this.entryTime = System.currentTimeMillis(); // Capture entry time immediately
     }
 
+    //used when restoring a vehicle that entered before a restart
+    public Vehicle(String licensePlate, long entryTime) {
+        this.licensePlate = licensePlate;
+        this.entryTime = entryTime;
+    }
+
     public String getLicensePlate() {
         return licensePlate;
     }
@@ -0,0 +1,147 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Default-package side of bench.ParkingOps: builds a lot of the requested size and forwards each op
+public class ParkingOpsImpl implements bench.ParkingOps {
+    private static final int KEYS = 4096; // power of two, reused plates so the hot loop does not build strings
+
+    private ParkingLot lot;
+    private final String[] parkedPlates = new String[KEYS];
+    private final String[] arrivingPlates = new String[KEYS];
+    private final String[] finePlates = new String[KEYS];
+    private final String[] permitPlates = new String[KEYS];
+    private File serializedState;
+    private File serializedHistory;
+
+    @Override
+    public void init(int lotSize, int historySize, int fineLedgerSize, int permitCount) throws Exception {
+        lot = ParkingLot.getInstance();
+        lot.setTopology(LotTopology.generated(lotSize));
+
+        //half the lot occupied, so lookups hit and parking still finds space
+        int parked = lotSize / 2;
+        for (int i = 0; i < parked; i++) {
+            lot.parkVehicle(new Car("P" + i));
+        }
+        for (int i = 0; i < KEYS; i++) {
+            parkedPlates[i] = "P" + (parked == 0 ? 0 : i % parked);
+            arrivingPlates[i] = "B" + i;
+        }
+
+        List<Transaction> history = new ArrayList<>(historySize);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < historySize; i++) {
+            history.add(new Transaction("H" + (i % 50_000), "F2-S001", now - i * 60_000L, 5.0 * (1 + i % 4), i % 2 == 0 ? "Cash" : "Debit/Credit Card"));
+        }
+        lot.setHistory(history);
+        DataManager.saveHistory(history);
+
+        //the old format, for comparison
+        serializedState = File.createTempFile("state", ".dat");
+        serializedHistory = File.createTempFile("revenue", ".dat");
+        serializedState.deleteOnExit();
+        serializedHistory.deleteOnExit();
+        saveStateSerialized();
+        writeObject(serializedHistory, history);
+        DataManager.saveState(lot.getSpots());
+        System.out.println("File sizes: state " + new File("parking_system_data.bin").length() + " B binary vs "
+            + serializedState.length() + " B serialized, history " + new File("revenue.bin").length()
+            + " B binary vs " + serializedHistory.length() + " B serialized");
+
+        Map<String, Double> fines = new HashMap<>();
+        for (int i = 0; i < fineLedgerSize; i++) {
+            fines.put("D" + i, 50.0);
+        }
+        FineManager.setOutstandingFines(fines);
+        for (int i = 0; i < KEYS; i++) {
+            finePlates[i] = "D" + (fineLedgerSize == 0 ? 0 : i % fineLedgerSize);
+        }
+
+        if (permitCount > 0) {
+            DatabaseHelper.initializeDatabase();
+            File list = File.createTempFile("permits", ".txt");
+            try (PrintWriter out = new PrintWriter(list)) {
+                for (int i = 0; i < permitCount; i++) {
+                    out.println("HC" + i);
+                }
+            }
+            DatabaseHelper.importHandicappedPlates(list, null);
+            list.delete();
+            for (int i = 0; i < KEYS; i++) {
+                //every other lookup is a miss
+                permitPlates[i] = (i % 2 == 0 ? "HC" : "NO") + (i % permitCount);
+            }
+        }
+    }
+
+    @Override
+    public Object parkAndRemove(int i) {
+        Ticket t = lot.parkVehicle(new Car(arrivingPlates[i & (KEYS - 1)]));
+        if (t != null) lot.removeVehicle(t.getSpotID());
+        return t;
+    }
+
+    @Override
+    public Object findSpotByPlate(int i) {
+        return lot.findSpotByPlate(parkedPlates[i & (KEYS - 1)]);
+    }
+
+    @Override
+    public double calculateTotalDue(int i) {
+        return FineManager.calculateTotalDue(finePlates[i & (KEYS - 1)], 30.0, 5.0, false, "Regular", false);
+    }
+
+    @Override
+    public void saveState() {
+        DataManager.saveState(lot.getSpots());
+    }
+
+    @Override
+    public void saveStateSerialized() {
+        writeObject(serializedState, new ArrayList<>(lot.getSpots()));
+    }
+
+    @Override
+    public Object loadHistory() {
+        return DataManager.loadHistory();
+    }
+
+    @Override
+    public Object loadHistorySerialized() {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(serializedHistory))) {
+            return in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeObject(File file, Object value) {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean permitLookupDb(int i) {
+        return DatabaseHelper.hasHandicappedPermit(permitPlates[i & (KEYS - 1)]);
+    }
+
+    @Override
+    public boolean permitLookupCache(int i) {
+        return PermitCache.hasHandicappedPermit(permitPlates[i & (KEYS - 1)]);
+    }
+}
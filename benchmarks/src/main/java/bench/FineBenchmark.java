@@ -0,0 +1,30 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//FineManager.calculateTotalDue against fine ledgers of increasing size
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FineBenchmark {
+    @Param({"100", "10000", "1000000"})
+    public int fineLedgerSize;
+
+    private ParkingOps ops;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ops = ParkingOps.load();
+        ops.init(80, 0, fineLedgerSize, 0);
+    }
+
+    @Benchmark
+    public double calculateTotalDue() {
+        return ops.calculateTotalDue(counter++);
+    }
+}
@@ -0,0 +1,35 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//ParkingLot.parkVehicle (+ removeVehicle to keep occupancy steady) and findSpotByPlate by lot size
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LotBenchmark {
+    @Param({"80", "1000", "10000", "100000"})
+    public int lotSize;
+
+    private ParkingOps ops;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ops = ParkingOps.load();
+        ops.init(lotSize, 0, 0, 0);
+    }
+
+    @Benchmark
+    public Object parkVehicle() {
+        return ops.parkAndRemove(counter++);
+    }
+
+    @Benchmark
+    public Object findSpotByPlate() {
+        return ops.findSpotByPlate(counter++);
+    }
+}
@@ -0,0 +1,29 @@
+package bench;
+
+//Bridge to the parking core. The core classes live in the default package, which code in a
+//named package (JMH requires one) cannot reference, so the benchmarks call through this
+//interface and ParkingOpsImpl (default package) forwards to the real classes.
+public interface ParkingOps {
+    void init(int lotSize, int historySize, int fineLedgerSize, int permitCount) throws Exception;
+
+    //ParkingLot
+    Object parkAndRemove(int i);
+    Object findSpotByPlate(int i);
+
+    //FineManager
+    double calculateTotalDue(int i);
+
+    //DataManager (binary files) against plain Java serialization of the same data
+    void saveState();
+    void saveStateSerialized();
+    Object loadHistory();
+    Object loadHistorySerialized();
+
+    //DatabaseHelper / PermitCache
+    boolean permitLookupDb(int i);
+    boolean permitLookupCache(int i);
+
+    static ParkingOps load() throws Exception {
+        return (ParkingOps) Class.forName("ParkingOpsImpl").getDeclaredConstructor().newInstance();
+    }
+}
@@ -0,0 +1,41 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//Permit checks: SQLite query through DatabaseHelper vs the in-memory PermitCache (half hits, half misses)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermitBenchmark {
+    @Param({"1000", "100000"})
+    public int permitCount;
+
+    private ParkingOps ops;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ops = ParkingOps.load();
+        ops.init(80, 0, 0, permitCount);
+    }
+
+    @Benchmark
+    public boolean hasHandicappedPermitDb() {
+        return ops.permitLookupDb(counter++);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean hasHandicappedPermitDbConcurrent() {
+        return ops.permitLookupDb(counter++);
+    }
+
+    @Benchmark
+    public boolean hasHandicappedPermitCache() {
+        return ops.permitLookupCache(counter++);
+    }
+}
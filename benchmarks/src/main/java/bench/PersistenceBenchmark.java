@@ -0,0 +1,48 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//DataManager.saveState by lot size and loadHistory by history length, each against the
+//ObjectOutputStream format it replaced (file sizes of both are printed at setup)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    @Param({"80", "10000", "100000"})
+    public int lotSize;
+
+    @Param({"1000", "100000", "1000000"})
+    public int historySize;
+
+    private ParkingOps ops;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ops = ParkingOps.load();
+        ops.init(lotSize, historySize, 0, 0);
+    }
+
+    @Benchmark
+    public void saveState() {
+        ops.saveState();
+    }
+
+    @Benchmark
+    public void saveStateSerialized() {
+        ops.saveStateSerialized();
+    }
+
+    @Benchmark
+    public Object loadHistory() {
+        return ops.loadHistory();
+    }
+
+    @Benchmark
+    public Object loadHistorySerialized() {
+        return ops.loadHistorySerialized();
+    }
+}
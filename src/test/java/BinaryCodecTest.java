@@ -0,0 +1,207 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//Round trips and corruption checks for the varint / zigzag / CRC32 file format
+class BinaryCodecTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void finesRoundTripAcrossVarintWidths() throws IOException {
+        //cents around every 7-bit boundary, negative (zigzag) and zero
+        Map<String, Double> fines = new LinkedHashMap<>();
+        long[] cents = {0, 1, -1, 63, -64, 64, 127, 128, 8191, 8192, 16383, 16384, -16385,
+            2_097_151, 2_097_152, 268_435_455, 268_435_456, 1L << 40, -(1L << 40)};
+        for (int i = 0; i < cents.length; i++) {
+            fines.put("P" + i, cents[i] / 100.0);
+        }
+        File file = new File(dir, "fines.bin");
+        BinaryCodec.writeFines(file, fines);
+
+        Map<String, Double> read = BinaryCodec.readFines(file);
+        assertEquals(fines.size(), read.size());
+        for (Map.Entry<String, Double> e : fines.entrySet()) {
+            assertEquals(FineLedger.toCents(e.getValue()), FineLedger.toCents(read.get(e.getKey())), e.getKey());
+        }
+    }
+
+    @Test
+    void historyRoundTripWithBackwardTimesAndRepeatedStrings() throws IOException {
+        //exit times jump backwards and far forwards, so deltas are large and negative
+        long[] times = {0L, 1_700_000_000_000L, 1_600_000_000_000L, 1_600_000_000_001L, 5L, Long.MAX_VALUE / 4};
+        List<Transaction> history = new ArrayList<>();
+        for (int i = 0; i < times.length; i++) {
+            history.add(new Transaction("PL" + (i % 2), "F1-S0" + (i % 3), times[i], 5.25 * i,
+                i % 2 == 0 ? "Cash" : "Debit/Credit Card"));
+        }
+        history.add(new Transaction("ÜNÏ-ÇØDÉ", "B2-F3-S001", 42L, 0.0, "Cash"));
+        File file = new File(dir, "revenue.bin");
+        BinaryCodec.writeHistory(file, history);
+
+        List<Transaction> read = BinaryCodec.readHistory(file);
+        assertEquals(history.size(), read.size());
+        for (int i = 0; i < history.size(); i++) {
+            Transaction a = history.get(i);
+            Transaction b = read.get(i);
+            assertEquals(a.getExitTimeMillis(), b.getExitTimeMillis());
+            assertEquals(FineLedger.toCents(a.getAmount()), FineLedger.toCents(b.getAmount()));
+            assertEquals(a.getPlate(), b.getPlate());
+            assertEquals(a.getSpotID(), b.getSpotID());
+            assertEquals(a.getMethod(), b.getMethod());
+        }
+    }
+
+    @Test
+    void checkpointTicketsKeepTheirIds() throws IOException {
+        List<Ticket> tickets = Arrays.asList(
+            new Ticket("ABC123", "F1-S01", "Reserved", "Car", 1_700_000_000_000L),
+            new Ticket("XYZ9", "F4-S20", "Compact", "Motorcycle", 1_699_000_000_000L));
+        CheckpointManager.Snapshot snapshot = new CheckpointManager.Snapshot(new ArrayList<>(), new ArrayList<>(), 0,
+            new HashMap<>(), tickets);
+        File file = new File(dir, "checkpoint-000000000001.ckpt");
+        BinaryCodec.writeCheckpoint(file, snapshot);
+
+        List<Ticket> read = BinaryCodec.readCheckpoint(file).getTickets();
+        assertEquals(tickets.size(), read.size());
+        for (int i = 0; i < tickets.size(); i++) {
+            assertEquals(tickets.get(i).getTicketID(), read.get(i).getTicketID());
+            assertEquals(tickets.get(i).getLicensePlate(), read.get(i).getLicensePlate());
+            assertEquals(tickets.get(i).getSpotID(), read.get(i).getSpotID());
+            assertEquals(tickets.get(i).getSpotType(), read.get(i).getSpotType());
+            assertEquals(tickets.get(i).getVehicleType(), read.get(i).getVehicleType());
+            assertEquals(tickets.get(i).getEntryTime(), read.get(i).getEntryTime());
+        }
+    }
+
+    @Test
+    void checkpointRoundTrip() throws IOException {
+        List<ParkingSpot> spots = new ArrayList<>();
+        spots.add(new ParkingSpot("F1-S01", "Regular", 5.0));
+        ParkingSpot taken = new ParkingSpot("F1-S02", "Regular", 5.0);
+        taken.park(new Car("CKP1"));
+        spots.add(taken);
+        List<Transaction> history = new ArrayList<>();
+        history.add(new Transaction("OLD1", "F1-S01", 1_000L, 10.0, "Cash"));
+        Map<String, Double> fines = new HashMap<>();
+        fines.put("OLD1", 50.0);
+        List<Ticket> tickets = new ArrayList<>();
+        tickets.add(new Ticket("CKP1", "F1-S02", "Regular", "Car", taken.getCurrentVehicle().getEntryTime()));
+
+        CheckpointManager.Snapshot snapshot = new CheckpointManager.Snapshot(spots, history, 4096, fines, tickets);
+        snapshot.seq = 7;
+        snapshot.createdAt = 123_456L;
+        File file = new File(dir, "checkpoint-000000000007.ckpt");
+        BinaryCodec.writeCheckpoint(file, snapshot);
+        assertFalse(new File(dir, file.getName() + ".tmp").exists());
+
+        CheckpointManager.Snapshot read = BinaryCodec.readCheckpoint(file);
+        assertEquals(7, read.getSeq());
+        assertEquals(123_456L, read.getCreatedAt());
+        assertEquals(4096, read.getHistoryBase());
+        assertEquals(2, read.getSpots().size());
+        assertFalse(read.getSpots().get(0).isOccupied());
+        assertEquals("CKP1", read.getSpots().get(1).getCurrentVehicle().getLicensePlate());
+        assertEquals(1, read.getHistory().size());
+        assertEquals(5000, FineLedger.toCents(read.getFines().get("OLD1")));
+        assertEquals(tickets.get(0).getTicketID(), read.getTickets().get(0).getTicketID());
+    }
+
+    @Test
+    void flippedBodyByteFailsTheChecksum() throws IOException {
+        File file = writeSampleHistory();
+        flipByte(file, file.length() / 2);
+        assertThrows(IOException.class, () -> BinaryCodec.readHistory(file));
+    }
+
+    @Test
+    void flippedTrailerByteIsRejected() throws IOException {
+        File file = writeSampleHistory();
+        flipByte(file, file.length() - 6); // inside the stored CRC
+        assertThrows(IOException.class, () -> BinaryCodec.readHistory(file));
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        File file = writeSampleHistory();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        assertThrows(IOException.class, () -> BinaryCodec.readHistory(file));
+    }
+
+    @Test
+    void wrongKindIsRejected() throws IOException {
+        File file = writeSampleHistory();
+        assertThrows(IOException.class, () -> BinaryCodec.readFines(file));
+    }
+
+    @Test
+    void damagedCheckpointIsSkippedOnRecovery() throws IOException {
+        CheckpointManager manager = new CheckpointManager(dir, 60_000, 500, 3);
+        File good = new File(dir, "checkpoint-000000000001.ckpt");
+        File bad = new File(dir, "checkpoint-000000000002.ckpt");
+        BinaryCodec.writeCheckpoint(good, sampleSnapshot(1));
+        BinaryCodec.writeCheckpoint(bad, sampleSnapshot(2));
+        flipByte(bad, bad.length() / 2);
+
+        CheckpointManager.Snapshot recovered = manager.recoverLatest();
+        assertEquals(1, recovered.getSeq());
+
+        flipByte(good, good.length() / 2);
+        assertNull(manager.recoverLatest());
+    }
+
+    @Test
+    void nonBinaryFileIsRejected() throws IOException {
+        File file = new File(dir, "checkpoint-000000000001.ckpt");
+        Files.write(file.toPath(), "hello".getBytes());
+        assertThrows(IOException.class, () -> BinaryCodec.readCheckpoint(file));
+        assertNull(new CheckpointManager(dir, 60_000, 500, 3).recoverLatest());
+    }
+
+    private File writeSampleHistory() throws IOException {
+        List<Transaction> history = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            history.add(new Transaction("P" + (i % 97), "F2-S" + (i % 20), 1_700_000_000_000L + i * 60_000L,
+                5.0 * (1 + i % 4), i % 2 == 0 ? "Cash" : "Debit/Credit Card"));
+        }
+        File file = new File(dir, "history.bin");
+        BinaryCodec.writeHistory(file, history);
+        return file;
+    }
+
+    private static CheckpointManager.Snapshot sampleSnapshot(long seq) {
+        List<Transaction> history = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            history.add(new Transaction("P" + i, "F1-S01", 1_000L * i, 5.0, "Cash"));
+        }
+        CheckpointManager.Snapshot snapshot = new CheckpointManager.Snapshot(new ArrayList<>(), history, 0,
+            new HashMap<>(), new ArrayList<>());
+        snapshot.seq = seq;
+        return snapshot;
+    }
+
+    private static void flipByte(File file, long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0x5A);
+        }
+    }
+}
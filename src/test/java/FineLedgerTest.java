@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+//Open-addressing fine table: probe runs, wrap-around and backward-shift delete, checked against a HashMap
+class FineLedgerTest {
+
+    @Test
+    void identicalHashCodesShareOneProbeRun() {
+        //"Aa" and "BB" have the same hashCode, so every mix of them collides completely
+        List<String> plates = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int bit = 0; bit < 6; bit++) {
+                sb.append((i >> bit & 1) == 0 ? "Aa" : "BB");
+            }
+            plates.add(sb.toString());
+        }
+        FineLedger ledger = new FineLedger();
+        Map<String, Long> model = new HashMap<>();
+        for (int i = 0; i < plates.size(); i++) {
+            ledger.add(plates.get(i), 100L + i);
+            model.put(plates.get(i), 100L + i);
+        }
+        //clear from the front, middle and back of the run; the rest must stay reachable
+        for (int i = 0; i < plates.size(); i += 3) {
+            assertEquals(100L + i, ledger.clear(plates.get(i)));
+            model.remove(plates.get(i));
+            assertMatches(model, ledger);
+        }
+        assertEquals(0L, ledger.clear(plates.get(0)));
+    }
+
+    @Test
+    void deletesInsideWrappedRunsKeepEveryPlateReachable() {
+        //plates of a single stripe whose home slots sit at the end of a 16-slot table, so their
+        //probe runs wrap past slot 0; at most 12 live plates keep the stripe from growing
+        List<String> plates = new ArrayList<>();
+        for (int i = 0; plates.size() < 40; i++) {
+            String plate = "W" + i;
+            int h = hash(plate);
+            if ((h >>> 26 & 63) == 0 && (h & 15) >= 13) plates.add(plate);
+        }
+        Random random = new Random(16);
+        FineLedger ledger = new FineLedger();
+        Map<String, Long> model = new HashMap<>();
+        for (int step = 0; step < 5_000; step++) {
+            String plate = plates.get(random.nextInt(plates.size()));
+            if (model.containsKey(plate) && (model.size() >= 12 || random.nextBoolean())) {
+                assertEquals((long) model.remove(plate), ledger.clear(plate));
+            } else if (model.size() < 12 || model.containsKey(plate)) {
+                long cents = 1 + random.nextInt(10_000);
+                model.merge(plate, cents, Long::sum);
+                assertEquals((long) model.get(plate), ledger.add(plate, cents));
+            }
+            assertMatches(model, ledger);
+        }
+    }
+
+    @Test
+    void randomWorkloadAcrossGrowthMatchesModel() {
+        Random random = new Random(42);
+        FineLedger ledger = new FineLedger();
+        Map<String, Long> model = new HashMap<>();
+        for (int step = 0; step < 50_000; step++) {
+            String plate = "PL" + random.nextInt(3_000);
+            if (random.nextInt(3) == 0) {
+                Long owed = model.remove(plate);
+                assertEquals(owed == null ? 0L : owed, ledger.clear(plate));
+            } else {
+                long cents = random.nextInt(5_000);
+                model.merge(plate, cents, Long::sum);
+                ledger.add(plate, cents);
+            }
+        }
+        assertMatches(model, ledger);
+    }
+
+    @Test
+    void mapRoundTripRoundsToTheCent() {
+        Map<String, Double> fines = new HashMap<>();
+        fines.put("ABC123", 50.0);
+        fines.put("XYZ9", 0.1 + 0.2);
+        fines.put("NULL1", null);
+        FineLedger ledger = FineLedger.fromMap(fines);
+        assertEquals(2, ledger.size());
+        assertEquals(30L, ledger.get("XYZ9"));
+        assertEquals(5030L, ledger.getTotalCents());
+        assertEquals(0.3, ledger.toMap().get("XYZ9"));
+    }
+
+    private static void assertMatches(Map<String, Long> model, FineLedger ledger) {
+        assertEquals(model.size(), ledger.size());
+        long total = 0;
+        for (Map.Entry<String, Long> e : model.entrySet()) {
+            assertEquals((long) e.getValue(), ledger.get(e.getKey()), e.getKey());
+            total += e.getValue();
+        }
+        assertEquals(total, ledger.getTotalCents());
+        Map<String, Double> map = ledger.toMap();
+        assertEquals(model.size(), map.size());
+        for (Map.Entry<String, Long> e : model.entrySet()) {
+            assertEquals(e.getValue() / 100.0, map.get(e.getKey()), e.getKey());
+        }
+    }
+
+    //same spreading as FineLedger.hash
+    private static int hash(String plate) {
+        int h = plate.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
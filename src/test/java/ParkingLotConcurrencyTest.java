@@ -0,0 +1,201 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+//Striped claim/free protocol under contention: one spot per plate, one plate per spot, free
+//counters that match the rows, and checkpoint cuts in which tickets match the parked cars
+class ParkingLotConcurrencyTest {
+    private static final int GATES = 8;
+
+    private ParkingLot lot;
+    private ExecutorService gates;
+
+    @BeforeEach
+    void smallLot() {
+        lot = ParkingLot.getInstance();
+        lot.attachStateFile(null);
+        lot.setTopology(LotTopology.generated(20)); // 20 Reserved spots on floor 1
+        lot.setHistory(new ArrayList<>());
+        TicketRegistry.getInstance().restore(new ArrayList<>(), lot);
+        gates = Executors.newFixedThreadPool(GATES);
+    }
+
+    @AfterEach
+    void defaultLot() throws InterruptedException {
+        gates.shutdownNow();
+        gates.awaitTermination(10, TimeUnit.SECONDS);
+        lot.setTopology(LotTopology.defaultLayout());
+        TicketRegistry.getInstance().restore(new ArrayList<>(), lot);
+    }
+
+    @Test
+    void samePlateAtEveryGateParksOnce() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            String plate = "SAME" + round;
+            List<Ticket> tickets = race(gate -> gate % 2 == 0
+                ? lot.parkVehicle(new Car(plate))
+                : lot.parkVehicleAtSpot(lot.getSpots().get(gate).getSpotID(), new Car(plate)));
+
+            assertEquals(1, countNonNull(tickets), "round " + round);
+            assertEquals(1, lot.getOccupiedCount());
+            ParkingSpot spot = lot.findSpotByPlate(plate);
+            assertNotNull(spot);
+            assertEquals(plate, spot.getCurrentVehicle().getLicensePlate());
+            assertTrue(lot.removeVehicle(spot.getSpotID(), plate));
+            assertEquals(0, lot.getOccupiedCount());
+        }
+    }
+
+    @Test
+    void oneSpotGoesToOneCarAndIsFreedOnce() throws Exception {
+        String spotID = lot.getSpots().get(7).getSpotID();
+        for (int round = 0; round < 200; round++) {
+            int r = round;
+            List<Ticket> tickets = race(gate -> lot.parkVehicleAtSpot(spotID, new Car("R" + r + "G" + gate)));
+            assertEquals(1, countNonNull(tickets), "round " + round);
+            assertEquals(19, lot.getFreeCountByType("Reserved"));
+            String winner = lot.getSpotByID(spotID).getCurrentVehicle().getLicensePlate();
+            for (Ticket t : tickets) {
+                if (t != null) assertEquals(winner, t.getLicensePlate());
+            }
+
+            //every gate tries to settle the same stay; only one frees the spot
+            List<Boolean> freed = race(gate -> lot.removeVehicle(spotID, winner));
+            assertEquals(1, freed.stream().filter(Boolean::booleanValue).count());
+            assertEquals(20, lot.getFreeCountByType("Reserved"));
+            assertNull(lot.findSpotByPlate(winner));
+        }
+    }
+
+    @Test
+    void churnKeepsRowsIndexesAndCountersInStepWithConsistentCuts() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger parks = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int g = 0; g < GATES; g++) {
+            int gate = g;
+            workers.add(gates.submit(() -> {
+                //a few plates per gate, each also tried by the next gate, all competing for 20 spots
+                for (int i = 0; running.get(); i++) {
+                    String plate = "C" + ((gate + i % 2) % GATES) + "-" + (i % 5);
+                    ParkingSpot spot = lot.findSpotByPlate(plate);
+                    if (spot != null) {
+                        lot.removeVehicle(spot.getSpotID(), plate);
+                    } else if (lot.parkVehicle(new Car(plate)) != null) {
+                        parks.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        //checkpoint-style cuts while the gates run
+        int cuts = 0;
+        long deadline = System.currentTimeMillis() + 2_000;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Lock cut = lot.snapshotLock();
+                cut.lock();
+                try {
+                    assertConsistent();
+                } finally {
+                    cut.unlock();
+                }
+                cuts++;
+            }
+        } finally {
+            running.set(false);
+        }
+        for (Future<?> w : workers) {
+            w.get(30, TimeUnit.SECONDS);
+        }
+
+        assertTrue(parks.get() > 100, "gates made progress: " + parks.get());
+        assertTrue(cuts > 10);
+        assertConsistent();
+    }
+
+    //spots, plate index, free counters and open tickets all tell the same story
+    private void assertConsistent() {
+        List<ParkingSpot> spots = lot.copySpots();
+        Map<String, String> parked = new HashMap<>();
+        int freeRows = 0;
+        for (ParkingSpot spot : spots) {
+            if (!spot.isOccupied()) {
+                freeRows++;
+                continue;
+            }
+            String plate = spot.getCurrentVehicle().getLicensePlate();
+            assertNull(parked.put(plate, spot.getSpotID()), plate + " is parked twice");
+            ParkingSpot indexed = lot.findSpotByPlate(plate);
+            assertNotNull(indexed, plate + " missing from the plate index");
+            assertEquals(spot.getSpotID(), indexed.getSpotID());
+        }
+        assertEquals(freeRows, lot.getFreeCountByType("Reserved"));
+        assertEquals(spots.size() - freeRows, lot.getOccupiedCount());
+
+        Set<String> ticketed = new HashSet<>();
+        for (Ticket t : TicketRegistry.getInstance().getAll()) {
+            assertTrue(ticketed.add(t.getLicensePlate()));
+            assertEquals(parked.get(t.getLicensePlate()), t.getSpotID(), "ticket for " + t.getLicensePlate());
+        }
+        assertEquals(parked.keySet(), ticketed);
+    }
+
+    private interface Gate<T> {
+        T run(int gate) throws Exception;
+    }
+
+    //runs one call per gate, all released at once
+    private <T> List<T> race(Gate<T> body) throws Exception {
+        CountDownLatch ready = new CountDownLatch(GATES);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int g = 0; g < GATES; g++) {
+            int gate = g;
+            Callable<T> task = () -> {
+                ready.countDown();
+                go.await();
+                return body.run(gate);
+            };
+            futures.add(gates.submit(task));
+        }
+        ready.await();
+        go.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> f : futures) {
+            results.add(f.get(10, TimeUnit.SECONDS));
+        }
+        assertFalse(results.isEmpty());
+        return results;
+    }
+
+    private static int countNonNull(List<?> values) {
+        int n = 0;
+        for (Object v : values) {
+            if (v != null) n++;
+        }
+        return n;
+    }
+}
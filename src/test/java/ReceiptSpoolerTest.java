@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//Receipt numbering: reserved ahead on disk, never reused after a restart, never refused
+class ReceiptSpoolerTest {
+    @TempDir
+    File dir;
+
+    @Test
+    void startupReservesAheadSoNumbersNeedNoDisk() throws IOException {
+        ReceiptSpooler spooler = new ReceiptSpooler(dir, 1 << 20, 60_000, 10);
+        long mark = highWater();
+        assertTrue(mark >= 1001, "startup keeps a spare block reserved");
+
+        //the spooler's directory disappears: numbers inside the reservation still come at once
+        File moved = new File(dir.getParentFile(), dir.getName() + "-moved");
+        assertTrue(dir.renameTo(moved));
+        for (long expected = 1; expected < 500; expected++) {
+            assertEquals(expected, spooler.nextReceiptNo());
+        }
+        assertTrue(moved.renameTo(dir));
+    }
+
+    @Test
+    void restartSkipsEveryReservedNumber() throws IOException {
+        ReceiptSpooler first = new ReceiptSpooler(dir, 1 << 20, 60_000, 10);
+        long last = 0;
+        for (int i = 0; i < 10; i++) {
+            last = first.nextReceiptNo();
+        }
+        //"crash": nothing was archived, the next process reads only the mark
+        ReceiptSpooler second = new ReceiptSpooler(dir, 1 << 20, 60_000, 10);
+        long next = second.nextReceiptNo();
+        assertTrue(next > last);
+        assertTrue(highWater() > next);
+    }
+
+    @Test
+    void writerTopsUpAndArchivesPastTheFirstBlock() throws Exception {
+        ReceiptSpooler spooler = new ReceiptSpooler(dir, 1 << 20, 60_000, 10);
+        long startMark = highWater();
+        Set<Long> numbers = new HashSet<>();
+        for (int i = 0; i < 2_500; i++) {
+            long no = spooler.nextReceiptNo();
+            assertTrue(no > 0);
+            assertTrue(numbers.add(no));
+            spooler.submit(settlement("PL" + i, 1_700_000_000_000L + i, no));
+        }
+        assertTrue(spooler.awaitWritten(30_000));
+        assertEquals(0, spooler.getFailedCount());
+        assertTrue(highWater() > startMark);
+        assertTrue(highWater() > 2_500);
+
+        ReceiptSpooler.Entry entry = spooler.findByNumber(2_500);
+        assertNotNull(entry);
+        assertTrue(spooler.read(entry).contains("Receipt No:   2500"));
+        spooler.close();
+    }
+
+    @Test
+    void unreservableNumbersAreStillHandedOut() throws IOException {
+        //the receipts "directory" is a plain file, so nothing can be reserved
+        File blocked = new File(dir, "receipts");
+        Files.write(blocked.toPath(), new byte[0]);
+        ReceiptSpooler spooler = new ReceiptSpooler(blocked, 1 << 20, 60_000, 10);
+        assertEquals(1, spooler.nextReceiptNo());
+        assertEquals(2, spooler.nextReceiptNo());
+    }
+
+    private long highWater() throws IOException {
+        File file = new File(dir, "next-receipt.txt");
+        return Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+    }
+
+    private static Settlement settlement(String plate, long exitTime, long receiptNo) {
+        ExitQuote quote = new ExitQuote(plate, "F2-S01", "Regular", exitTime - 3_600_000L, exitTime,
+            1.0, 5.0, 5.0, 0.0, 0.0);
+        Transaction t = new Transaction(plate, "F2-S01", exitTime, 5.0, "Cash");
+        return new Settlement(quote, "Cash", false, 5.0, t, receiptNo);
+    }
+}
@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+//Ring of time buckets: window rollover, late and stale adds, concurrent adds into the same cells
+class RollupCubeTest {
+
+    @Test
+    void emptyCubeHasNoWindow() {
+        RollupCube cube = new RollupCube(4, 2);
+        assertEquals(Long.MIN_VALUE, cube.getNewestBucket());
+        assertEquals(Long.MIN_VALUE, cube.getOldestBucket());
+        assertEquals(0, cube.get(0, 0));
+    }
+
+    @Test
+    void slotIsReusedOnceItsBucketLeavesTheWindow() {
+        RollupCube cube = new RollupCube(4, 3);
+        for (long b = 100; b < 104; b++) {
+            assertTrue(cube.add(b, (int) (b % 3), b));
+        }
+        assertEquals(100, cube.getOldestBucket());
+        assertEquals(100, cube.get(100, 1));
+
+        //bucket 104 takes bucket 100's slot and moves the window on
+        assertTrue(cube.add(104, 2, 7));
+        assertEquals(104, cube.getNewestBucket());
+        assertEquals(101, cube.getOldestBucket());
+        assertEquals(0, cube.get(100, 1));
+        assertEquals(7, cube.get(104, 2));
+        assertEquals(101, cube.get(101, 2));
+
+        //late adds inside the window land, older ones are dropped
+        assertTrue(cube.add(101, 0, 5));
+        assertEquals(5, cube.get(101, 0));
+        assertFalse(cube.add(100, 0, 5));
+        assertEquals(0, cube.get(100, 0));
+        assertEquals(0, cube.get(104, 0));
+    }
+
+    @Test
+    void jumpFarAheadDropsTheWholeOldWindow() {
+        RollupCube cube = new RollupCube(8, 1);
+        for (long b = 0; b < 8; b++) {
+            cube.add(b, 0, 1);
+        }
+        assertTrue(cube.add(1_000, 0, 9));
+        for (long b = 0; b < 8; b++) {
+            assertEquals(0, cube.get(b, 0));
+            assertFalse(cube.add(b, 0, 1));
+        }
+        long[] out = new long[1];
+        cube.addTo(1_000, out);
+        cube.addTo(999, out); // not written, adds nothing
+        assertArrayEquals(new long[] {9}, out);
+    }
+
+    @Test
+    void negativeBucketsRollOverToo() {
+        RollupCube cube = new RollupCube(3, 1);
+        assertTrue(cube.add(-5, 0, 1));
+        assertTrue(cube.add(-3, 0, 2));
+        assertEquals(1, cube.get(-5, 0));
+        assertTrue(cube.add(-2, 0, 3)); // same slot as -5
+        assertEquals(0, cube.get(-5, 0));
+        assertEquals(3, cube.get(-2, 0));
+        assertEquals(-4, cube.getOldestBucket());
+    }
+
+    @Test
+    void concurrentAddsWhileTheWindowMovesLoseNothingInside() throws InterruptedException {
+        int threads = 4;
+        int buckets = 200;
+        int perBucket = 50;
+        RollupCube cube = new RollupCube(buckets, 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long b = 0; b < 2 * buckets; b++) {
+                    for (int i = 0; i < perBucket; i++) {
+                        cube.add(b, i & 1, 1);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        //every bucket of the final window got all of its adds; the ones before it are gone
+        assertEquals(buckets, cube.getOldestBucket());
+        for (long b = buckets; b < 2 * buckets; b++) {
+            long[] out = new long[2];
+            cube.addTo(b, out);
+            assertArrayEquals(new long[] {threads * perBucket / 2, threads * perBucket / 2}, out, "bucket " + b);
+        }
+        assertEquals(0, cube.get(buckets - 1, 0));
+    }
+}
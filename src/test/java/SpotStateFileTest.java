@@ -0,0 +1,156 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//Round trips and re-layout checks for the memory-mapped spot state file
+class SpotStateFileTest {
+    @TempDir
+    File dir;
+
+    @AfterEach
+    void resetLot() {
+        ParkingLot.getInstance().setTopology(LotTopology.defaultLayout());
+    }
+
+    @Test
+    void occupancyRoundTripsThroughReopen() throws IOException {
+        ParkingLot lot = ParkingLot.getInstance();
+        lot.setTopology(LotTopology.generated(6));
+        String fileName = new File(dir, "spots.map").getPath();
+
+        SpotStateFile file = SpotStateFile.open(fileName, lot.getSpots(), false);
+        assertFalse(file.hadState());
+        ParkingSpot first = lot.getSpots().get(1).detachedCopy();
+        first.park(new Car("RT-001", 1_700_000_000_000L));
+        ParkingSpot second = lot.getSpots().get(4).detachedCopy();
+        second.park(new SUV("ÜNÏ-4", 1_700_000_060_000L));
+        file.writeSlot(1, first);
+        file.writeSlot(4, second);
+        file.close();
+
+        lot.setTopology(LotTopology.generated(6));
+        SpotStateFile reopened = SpotStateFile.open(fileName, lot.getSpots(), false);
+        assertTrue(reopened.hadState());
+        reopened.restoreInto(lot);
+        reopened.close();
+
+        List<ParkingSpot> spots = lot.getSpots();
+        assertEquals("RT-001", spots.get(1).getCurrentVehicle().getLicensePlate());
+        assertEquals(1_700_000_000_000L, spots.get(1).getCurrentVehicle().getEntryTime());
+        assertEquals("ÜNÏ-4", spots.get(4).getCurrentVehicle().getLicensePlate());
+        assertEquals("SUV", spots.get(4).getCurrentVehicle().getType());
+        assertEquals(2, lot.getOccupiedCount());
+        assertFalse(spots.get(0).isOccupied());
+    }
+
+    @Test
+    void freedSlotReadsAsEmpty() throws IOException {
+        ParkingLot lot = ParkingLot.getInstance();
+        lot.setTopology(LotTopology.generated(3));
+        String fileName = new File(dir, "spots.map").getPath();
+
+        SpotStateFile file = SpotStateFile.open(fileName, lot.getSpots(), false);
+        ParkingSpot spot = lot.getSpots().get(2).detachedCopy();
+        spot.park(new Car("GONE-1"));
+        file.writeSlot(2, spot);
+        spot.removeVehicle();
+        file.writeSlot(2, spot);
+        file.close();
+
+        SpotStateFile reopened = SpotStateFile.open(fileName, lot.getSpots(), false);
+        reopened.restoreInto(lot);
+        reopened.close();
+        assertEquals(0, lot.getOccupiedCount());
+    }
+
+    @Test
+    void tooLongPlateIsRefusedNotCut() throws IOException {
+        List<ParkingSpot> spots = standaloneSpots("F1-S01", "F1-S02");
+        SpotStateFile file = SpotStateFile.open(new File(dir, "spots.map").getPath(), spots, false);
+        ParkingSpot spot = new ParkingSpot("F1-S02", "Regular", 5.0);
+        spot.park(new Car("X".repeat(ParkingLot.MAX_PLATE_LENGTH + 1)));
+        assertThrows(IllegalArgumentException.class, () -> file.writeSlot(1, spot));
+        file.close();
+    }
+
+    @Test
+    void widthsAreSizedFromTheLongestSpotId() throws IOException {
+        String longId = "ZONE-NORTH-BASEMENT-2-F12-S0001-EXTENDED-BAY";
+        List<ParkingSpot> spots = standaloneSpots("F1-S01", longId);
+        File map = new File(dir, "spots.map");
+        SpotStateFile file = SpotStateFile.open(map.getPath(), spots, false);
+        file.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(map, "r")) {
+            raf.seek(12);
+            assertEquals(longId.length(), raf.readShort());
+            assertEquals(ParkingLot.MAX_PLATE_LENGTH, raf.readShort());
+        }
+        //same layout again keeps the file
+        SpotStateFile reopened = SpotStateFile.open(map.getPath(), spots, false);
+        assertTrue(reopened.hadState());
+        reopened.close();
+    }
+
+    @Test
+    void spotIdWiderThanAnyFieldIsRejected() {
+        List<ParkingSpot> spots = standaloneSpots("S".repeat(200));
+        assertThrows(IOException.class,
+            () -> SpotStateFile.open(new File(dir, "spots.map").getPath(), spots, false));
+    }
+
+    @Test
+    void differentLayoutIsLaidOutAgain() throws IOException {
+        String fileName = new File(dir, "spots.map").getPath();
+        SpotStateFile.open(fileName, standaloneSpots("A1", "A2", "A3"), false).close();
+
+        SpotStateFile renamed = SpotStateFile.open(fileName, standaloneSpots("A1", "B2", "A3"), false);
+        assertFalse(renamed.hadState());
+        renamed.close();
+
+        SpotStateFile shorter = SpotStateFile.open(fileName, standaloneSpots("A1", "B2"), false);
+        assertFalse(shorter.hadState());
+        shorter.close();
+    }
+
+    @Test
+    void corruptHeaderIsLaidOutAgain() throws IOException {
+        ParkingLot lot = ParkingLot.getInstance();
+        lot.setTopology(LotTopology.generated(4));
+        File map = new File(dir, "spots.map");
+        SpotStateFile file = SpotStateFile.open(map.getPath(), lot.getSpots(), false);
+        ParkingSpot spot = lot.getSpots().get(0).detachedCopy();
+        spot.park(new Car("LOST-1"));
+        file.writeSlot(0, spot);
+        file.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(map, "rw")) {
+            raf.writeInt(0xDEADBEEF); // magic
+        }
+        SpotStateFile reopened = SpotStateFile.open(map.getPath(), lot.getSpots(), false);
+        assertFalse(reopened.hadState());
+        reopened.restoreInto(lot);
+        reopened.close();
+        assertNull(lot.getSpots().get(0).getCurrentVehicle());
+    }
+
+    private static List<ParkingSpot> standaloneSpots(String... ids) {
+        List<ParkingSpot> spots = new ArrayList<>();
+        for (String id : Arrays.asList(ids)) {
+            spots.add(new ParkingSpot(id, "Regular", 5.0));
+        }
+        return spots;
+    }
+}
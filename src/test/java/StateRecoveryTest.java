@@ -0,0 +1,157 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//Checkpoint, keep parking and leaving, "crash", recover: everything comes back as of the checkpoint
+class StateRecoveryTest {
+    private static final int SPOTS = 300;
+
+    @TempDir
+    static File receipts;
+
+    @TempDir
+    File dir;
+
+    private ParkingLot lot;
+    private ParkingEngine engine;
+
+    @BeforeAll
+    static void quietReceipts() {
+        System.setProperty("parking.receipts.dir", receipts.getPath());
+        PermitCache.loadFrom(new HashSet<>(), new HashSet<>());
+    }
+
+    @BeforeEach
+    void emptyLot() {
+        lot = ParkingLot.getInstance();
+        engine = new ParkingEngine(lot, ParkingEngine.DEFAULT_MILLIS_PER_HOUR);
+        resetProcessState();
+    }
+
+    @AfterEach
+    void detachFiles() {
+        resetProcessState();
+        lot.setTopology(LotTopology.defaultLayout());
+    }
+
+    @Test
+    void recoveryIsOneCutAtTheCheckpoint() throws Exception {
+        File checkpointDir = new File(dir, "checkpoints");
+        String historyName = new File(dir, "history.seg").getPath();
+        String slotName = new File(dir, "spot_state.map").getPath();
+        HistoryFile history = HistoryFile.open(historyName, lot::spotTypeOf);
+        lot.attachHistoryFile(history);
+        SpotStateFile slots = SpotStateFile.open(slotName, lot.getSpots(), false);
+        lot.attachStateFile(slots);
+
+        //before the checkpoint: five stays, one car with an unpaid fine, one finished exit
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(engine.enter("KEEP" + i, "Car", null));
+        }
+        assertNotNull(engine.enter("FINE1", "Car", null));
+        FineManager.addFineToAccount("FINE1", 50.0);
+        assertNotNull(engine.enter("EARLY1", "Car", null));
+        assertNotNull(engine.settle("EARLY1", "Cash", false));
+        assertTrue(new CheckpointManager(checkpointDir, 60_000, 500, 3).checkpoint());
+
+        //after it: the fined car pays and leaves, a new car parks, and enough exits go by
+        //that a full history segment is sealed into the file
+        assertNotNull(engine.settle("FINE1", "Cash", false));
+        assertEquals(0, FineManager.getUnpaidFineCents("FINE1"));
+        assertNotNull(engine.enter("NEW1", "Car", null));
+        for (int i = 0; i < TransactionStore.SEGMENT_SIZE + 50; i++) {
+            assertNotNull(engine.enter("CYC" + i, "Car", null));
+            assertNotNull(engine.settle("CYC" + i, "Cash", false));
+        }
+        assertTrue(lot.getHistory().flush(10_000));
+        assertEquals(TransactionStore.SEGMENT_SIZE, history.getRecordCount());
+
+        //crash: nothing else is saved, the next process starts empty
+        history.close();
+        slots.close();
+        resetProcessState();
+
+        StateRecovery recovered = StateRecovery.restore(lot, new CheckpointManager(checkpointDir, 60_000, 500, 3),
+            historyName, slotName, false);
+        assertNotNull(recovered.getHistoryFile());
+        assertNotNull(recovered.getSpotStateFile());
+
+        assertEquals(6, lot.getOccupiedCount());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(lot.findSpotByPlate("KEEP" + i));
+            assertNotNull(TicketRegistry.getInstance().findByPlate("KEEP" + i));
+        }
+        assertNotNull(lot.findSpotByPlate("FINE1"));
+        assertNotNull(TicketRegistry.getInstance().findByPlate("FINE1"));
+        assertEquals(5000, FineManager.getUnpaidFineCents("FINE1"));
+        assertNull(lot.findSpotByPlate("NEW1"));
+        assertNull(TicketRegistry.getInstance().findByPlate("NEW1"));
+        assertEquals(6, TicketRegistry.getInstance().size());
+
+        //history holds exactly the one exit the checkpoint knew about, in memory and in the file totals
+        assertEquals(1, lot.getHistory().size());
+        assertEquals("EARLY1", lot.getHistory().get(0).getPlate());
+        assertEquals(0, recovered.getHistoryFile().getRecordCount());
+        assertEquals(0, recovered.getHistoryFile().getSummary().getCents());
+
+        //the slot file was rewritten to the same cut
+        recovered.getHistoryFile().close();
+        recovered.getSpotStateFile().close();
+        resetProcessState();
+        SpotStateFile reopened = SpotStateFile.open(slotName, lot.getSpots(), false);
+        assertTrue(reopened.hadState());
+        reopened.restoreInto(lot);
+        reopened.close();
+        assertEquals(6, lot.getOccupiedCount());
+        assertNotNull(lot.findSpotByPlate("FINE1"));
+        assertNull(lot.findSpotByPlate("NEW1"));
+    }
+
+    @Test
+    void historyFileIsTruncatedOnlyToASegmentBoundary() throws IOException {
+        HistoryFile history = HistoryFile.open(new File(dir, "history.seg").getPath(), lot::spotTypeOf);
+        lot.attachHistoryFile(history);
+        TransactionStore store = lot.getHistory();
+        for (int i = 0; i < 2 * TransactionStore.SEGMENT_SIZE; i++) {
+            store.add(new Transaction("P" + i, "F2-S01", 1_700_000_000_000L + i, 5.0, i % 2 == 0 ? "Cash" : "Debit/Credit Card"));
+        }
+        try {
+            assertTrue(store.flush(10_000));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        long firstSegmentCents = 500L * TransactionStore.SEGMENT_SIZE;
+
+        history.truncateTo(TransactionStore.SEGMENT_SIZE, lot::spotTypeOf);
+        assertEquals(1, history.getSegmentCount());
+        assertEquals(firstSegmentCents, history.getSummary().getCents());
+        assertEquals(firstSegmentCents / 2, (long) history.getSummary().getByMethod().get("Cash"));
+        history.close();
+
+        HistoryFile reopened = HistoryFile.open(new File(dir, "history.seg").getPath(), lot::spotTypeOf);
+        assertEquals(TransactionStore.SEGMENT_SIZE, reopened.getRecordCount());
+        assertEquals(firstSegmentCents, reopened.getSummary().getCents());
+        reopened.close();
+    }
+
+    //what a fresh process starts with
+    private void resetProcessState() {
+        lot.attachStateFile(null);
+        lot.setTopology(LotTopology.generated(SPOTS));
+        lot.setHistory(new ArrayList<>());
+        FineManager.setOutstandingFines(new HashMap<>());
+        TicketRegistry.getInstance().restore(new ArrayList<>(), lot);
+    }
+}
@@ -0,0 +1,165 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//Segment paging of the columnar history: sealing to history.seg, paging back in, reopening
+class TransactionStoreTest {
+    private static final int ROWS = 2 * TransactionStore.SEGMENT_SIZE + 100;
+    private static final Function<String, String> SPOT_TYPES = id -> id.startsWith("F1") ? "Reserved" : "Regular";
+
+    @TempDir
+    File dir;
+
+    @Test
+    void sealedRowsArePagedBackIn() throws Exception {
+        HistoryFile file = HistoryFile.open(new File(dir, "history.seg").getPath(), SPOT_TYPES);
+        TransactionStore store = new TransactionStore(file, SPOT_TYPES);
+        fill(store, 0, ROWS);
+        assertTrue(store.flush(10_000));
+
+        assertEquals(ROWS, store.size());
+        assertEquals(2 * TransactionStore.SEGMENT_SIZE, store.getSealedCount());
+        assertEquals(2, file.getSegmentCount());
+        for (int i = 0; i < ROWS; i += 97) {
+            assertRow(i, store.get(i));
+            assertEquals(expectedCents(i), store.getAmountCents(i));
+            assertEquals(plate(i), store.getPlate(i));
+        }
+        assertTrue(store.getCachedPageCount() <= 8);
+
+        //a range spanning both segments and the in-memory tail
+        int from = TransactionStore.SEGMENT_SIZE - 5;
+        List<Transaction> range = store.getRange(from, ROWS);
+        assertEquals(ROWS - from, range.size());
+        for (int i = 0; i < range.size(); i++) {
+            assertRow(from + i, range.get(i));
+        }
+        file.close();
+    }
+
+    @Test
+    void selectCoversSealedAndInMemoryRows() throws Exception {
+        HistoryFile file = HistoryFile.open(new File(dir, "history.seg").getPath(), SPOT_TYPES);
+        TransactionStore store = new TransactionStore(file, SPOT_TYPES);
+        fill(store, 0, ROWS);
+        assertTrue(store.flush(10_000));
+
+        TransactionStore.Filter filter = new TransactionStore.Filter("p7", null, "Cash", Long.MIN_VALUE, Long.MAX_VALUE);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            if (plate(i).contains("P7") && method(i).equals("Cash")) expected.add(i);
+        }
+        int[] rows = store.select(filter, TransactionStore.Column.TIME, false, 0);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), rows);
+
+        //an exit-time window inside the second segment only
+        long from = time(TransactionStore.SEGMENT_SIZE + 10);
+        long to = time(TransactionStore.SEGMENT_SIZE + 20);
+        int[] window = store.select(new TransactionStore.Filter(null, null, null, from, to),
+            TransactionStore.Column.TIME, false, 0);
+        assertEquals(10, window.length);
+        assertEquals(TransactionStore.SEGMENT_SIZE + 10, window[0]);
+        file.close();
+    }
+
+    @Test
+    void reopenedFileKeepsSealedHistory() throws Exception {
+        String fileName = new File(dir, "history.seg").getPath();
+        HistoryFile file = HistoryFile.open(fileName, SPOT_TYPES);
+        TransactionStore store = new TransactionStore(file, SPOT_TYPES);
+        fill(store, 0, ROWS);
+        assertTrue(store.flush(10_000));
+        long cents = file.getSummary().getCents();
+        file.close();
+
+        HistoryFile reopened = HistoryFile.open(fileName, SPOT_TYPES);
+        assertEquals(2 * TransactionStore.SEGMENT_SIZE, reopened.getRecordCount());
+        assertEquals(cents, reopened.getSummary().getCents());
+        TransactionStore restored = new TransactionStore(reopened, SPOT_TYPES);
+        assertEquals(2 * TransactionStore.SEGMENT_SIZE, restored.size());
+        assertRow(0, restored.get(0));
+        assertRow(TransactionStore.SEGMENT_SIZE + 1, restored.get(TransactionStore.SEGMENT_SIZE + 1));
+
+        //new rows carry on after the sealed ones
+        fill(restored, restored.size(), ROWS);
+        assertTrue(restored.flush(10_000));
+        assertEquals(ROWS, restored.size());
+        assertRow(ROWS - 1, restored.get(ROWS - 1));
+        reopened.close();
+    }
+
+    @Test
+    void damagedFooterIsRebuiltFromSegments() throws Exception {
+        String fileName = new File(dir, "history.seg").getPath();
+        HistoryFile file = HistoryFile.open(fileName, SPOT_TYPES);
+        TransactionStore store = new TransactionStore(file, SPOT_TYPES);
+        fill(store, 0, ROWS);
+        assertTrue(store.flush(10_000));
+        long cents = file.getSummary().getCents();
+        file.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(fileName, "rw")) {
+            raf.setLength(raf.length() - 5); // cut into the trailer
+        }
+        HistoryFile rebuilt = HistoryFile.open(fileName, SPOT_TYPES);
+        assertEquals(2, rebuilt.getSegmentCount());
+        assertEquals(2 * TransactionStore.SEGMENT_SIZE, rebuilt.getRecordCount());
+        assertEquals(cents, rebuilt.getSummary().getCents());
+        assertRow(TransactionStore.SEGMENT_SIZE * 2 - 1,
+            new TransactionStore(rebuilt, SPOT_TYPES).get(TransactionStore.SEGMENT_SIZE * 2 - 1));
+        rebuilt.close();
+    }
+
+    @Test
+    void inMemoryStoreNeverSeals() {
+        TransactionStore store = new TransactionStore();
+        fill(store, 0, TransactionStore.SEGMENT_SIZE + 10);
+        assertEquals(0, store.getSealedCount());
+        assertNull(store.getFile());
+        assertRow(TransactionStore.SEGMENT_SIZE + 9, store.peek(TransactionStore.SEGMENT_SIZE + 9));
+    }
+
+    private static void fill(TransactionStore store, int from, int to) {
+        for (int i = from; i < to; i++) {
+            store.add(new Transaction(plate(i), spot(i), time(i), expectedCents(i) / 100.0, method(i)));
+        }
+    }
+
+    private static void assertRow(int i, Transaction t) {
+        assertEquals(time(i), t.getExitTimeMillis(), "row " + i);
+        assertEquals(plate(i), t.getPlate(), "row " + i);
+        assertEquals(spot(i), t.getSpotID(), "row " + i);
+        assertEquals(method(i), t.getMethod(), "row " + i);
+        assertEquals(expectedCents(i), FineLedger.toCents(t.getAmount()), "row " + i);
+    }
+
+    private static String plate(int i) {
+        return "P" + (i % 131);
+    }
+
+    private static String spot(int i) {
+        return "F" + (1 + i % 4) + "-S" + (i % 20);
+    }
+
+    private static long time(int i) {
+        return 1_700_000_000_000L + i * 60_000L;
+    }
+
+    private static String method(int i) {
+        return i % 3 == 0 ? "Cash" : "Debit/Credit Card";
+    }
+
+    private static long expectedCents(int i) {
+        return 500L * (1 + i % 4) + i % 100;
+    }
+}